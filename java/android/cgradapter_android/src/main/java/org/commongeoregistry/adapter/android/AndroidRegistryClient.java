@@ -1,19 +1,20 @@
 package org.commongeoregistry.adapter.android;
 
 import android.content.Context;
-import com.google.gson.JsonObject;
 
 import org.commongeoregistry.adapter.HttpRegistryClient;
 import org.commongeoregistry.adapter.action.AbstractActionDTO;
 import org.commongeoregistry.adapter.constants.RegistryUrls;
 import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTime;
 import org.commongeoregistry.adapter.http.AuthenticationException;
+import org.commongeoregistry.adapter.http.BodyWriter;
 import org.commongeoregistry.adapter.http.Connector;
 import org.commongeoregistry.adapter.http.HttpResponse;
 import org.commongeoregistry.adapter.http.ResponseProcessor;
 import org.commongeoregistry.adapter.http.ServerResponseException;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Date;
 import java.util.List;
 
@@ -68,14 +69,22 @@ public class AndroidRegistryClient extends HttpRegistryClient
    * common geo-registry.
    */
   public void pushObjectsToRegistry() throws AuthenticationException, ServerResponseException, IOException {
-    List<AbstractActionDTO> actions = this.localObjectCache.getUnpushedActionHistory();
+    final List<AbstractActionDTO> actions = this.localObjectCache.getUnpushedActionHistory();
 
-    String sActions = AbstractActionDTO.serializeActions(actions).toString();
-
-    JsonObject params = new JsonObject();
-    params.addProperty(RegistryUrls.SUBMIT_CHANGE_REQUEST_PARAM_ACTIONS, sActions);
-
-    HttpResponse resp = this.getConnector().httpPost(RegistryUrls.SUBMIT_CHANGE_REQUEST, params.toString());
+    HttpResponse resp = this.httpPost(RegistryUrls.SUBMIT_CHANGE_REQUEST, new BodyWriter()
+    {
+      @Override
+      public void write(Writer writer) throws IOException
+      {
+        /*
+         * The server expects the actions as the text of a JSON array, which is
+         * escaped into the body as it is written
+         */
+        writer.write("{\"" + RegistryUrls.SUBMIT_CHANGE_REQUEST_PARAM_ACTIONS + "\":");
+        AbstractActionDTO.serializeActionsAsString(actions, writer);
+        writer.write("}");
+      }
+    });
     ResponseProcessor.validateStatusCode(resp);
 
     this.localObjectCache.saveLastPushDate(new Date().getTime());
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.commongeoregistry.adapter.dataaccess.ChildTreeNode;
+import org.commongeoregistry.adapter.dataaccess.GeoObject;
+import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTime;
+import org.commongeoregistry.adapter.dataaccess.ParentTreeNode;
+import org.commongeoregistry.adapter.http.AsyncConnector;
+import org.commongeoregistry.adapter.http.Callback;
+import org.commongeoregistry.adapter.id.AdapterIdServiceIF;
+
+/**
+ * Companion of {@link HttpRegistryClient} whose requests can be executed
+ * without blocking the calling thread. Each asynchronous method returns a
+ * {@link Future} of the same result as its blocking counterpart and notifies
+ * the optional {@link Callback} once the request has completed. The requests
+ * share the bounded workers of the {@link AsyncConnector}.
+ * 
+ * The blocking methods of {@link HttpRegistryClient} remain available and use
+ * the same metadata cache.
+ */
+public class AsyncRegistryClient extends HttpRegistryClient
+{
+  private static final long serialVersionUID = 4163350985230547126L;
+
+  private AsyncConnector    asyncConnector;
+
+  public AsyncRegistryClient(AsyncConnector connector)
+  {
+    super(connector);
+
+    this.asyncConnector = connector;
+  }
+
+  public AsyncRegistryClient(AsyncConnector connector, AdapterIdServiceIF idService)
+  {
+    super(connector, idService);
+
+    this.asyncConnector = connector;
+  }
+
+  public AsyncConnector getAsyncConnector()
+  {
+    return this.asyncConnector;
+  }
+
+  /**
+   * Asynchronous version of {@link #getGeoObject(String, String)}
+   */
+  public Future<GeoObject> getGeoObjectAsync(final String id, final String typeCode, Callback<GeoObject> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObject>()
+    {
+      @Override
+      public GeoObject call() throws Exception
+      {
+        return getGeoObject(id, typeCode);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #getGeoObjectByCode(String, String)}
+   */
+  public Future<GeoObject> getGeoObjectByCodeAsync(final String code, final String typeCode, Callback<GeoObject> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObject>()
+    {
+      @Override
+      public GeoObject call() throws Exception
+      {
+        return getGeoObjectByCode(code, typeCode);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #getGeoObjectOverTime(String, String)}
+   */
+  public Future<GeoObjectOverTime> getGeoObjectOverTimeAsync(final String id, final String typeCode, Callback<GeoObjectOverTime> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObjectOverTime>()
+    {
+      @Override
+      public GeoObjectOverTime call() throws Exception
+      {
+        return getGeoObjectOverTime(id, typeCode);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #getGeoObjectOverTimeByCode(String, String)}
+   */
+  public Future<GeoObjectOverTime> getGeoObjectOverTimeByCodeAsync(final String code, final String typeCode, Callback<GeoObjectOverTime> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObjectOverTime>()
+    {
+      @Override
+      public GeoObjectOverTime call() throws Exception
+      {
+        return getGeoObjectOverTimeByCode(code, typeCode);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #createGeoObject(GeoObject)}
+   */
+  public Future<GeoObject> createGeoObjectAsync(final GeoObject geoObject, Callback<GeoObject> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObject>()
+    {
+      @Override
+      public GeoObject call() throws Exception
+      {
+        return createGeoObject(geoObject);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #createGeoObjectOverTime(GeoObjectOverTime)}
+   */
+  public Future<GeoObjectOverTime> createGeoObjectOverTimeAsync(final GeoObjectOverTime geoObject, Callback<GeoObjectOverTime> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObjectOverTime>()
+    {
+      @Override
+      public GeoObjectOverTime call() throws Exception
+      {
+        return createGeoObjectOverTime(geoObject);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #updateGeoObject(GeoObject)}
+   */
+  public Future<GeoObject> updateGeoObjectAsync(final GeoObject geoObject, Callback<GeoObject> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObject>()
+    {
+      @Override
+      public GeoObject call() throws Exception
+      {
+        return updateGeoObject(geoObject);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of {@link #updateGeoObjectOverTime(GeoObjectOverTime)}
+   */
+  public Future<GeoObjectOverTime> updateGeoObjectOverTimeAsync(final GeoObjectOverTime geoObject, Callback<GeoObjectOverTime> callback)
+  {
+    return this.asyncConnector.submit(new Callable<GeoObjectOverTime>()
+    {
+      @Override
+      public GeoObjectOverTime call() throws Exception
+      {
+        return updateGeoObjectOverTime(geoObject);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link #getChildGeoObjects(String, String, String[], Boolean, Date)}
+   */
+  public Future<ChildTreeNode> getChildGeoObjectsAsync(final String parentCode, final String parentTypeCode, final String[] childrenTypes, final Boolean recursive, final Date date, Callback<ChildTreeNode> callback)
+  {
+    return this.asyncConnector.submit(new Callable<ChildTreeNode>()
+    {
+      @Override
+      public ChildTreeNode call() throws Exception
+      {
+        return getChildGeoObjects(parentCode, parentTypeCode, childrenTypes, recursive, date);
+      }
+    }, callback);
+  }
+
+  /**
+   * Asynchronous version of
+   * {@link #getParentGeoObjects(String, String, String[], Boolean, Date)}
+   */
+  public Future<ParentTreeNode> getParentGeoObjectsAsync(final String childCode, final String childTypeCode, final String[] parentTypes, final Boolean recursive, final Date date, Callback<ParentTreeNode> callback)
+  {
+    return this.asyncConnector.submit(new Callable<ParentTreeNode>()
+    {
+      @Override
+      public ParentTreeNode call() throws Exception
+      {
+        return getParentGeoObjects(childCode, childTypeCode, parentTypes, recursive, date);
+      }
+    }, callback);
+  }
+}
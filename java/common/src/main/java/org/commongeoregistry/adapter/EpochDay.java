@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Calendar arithmetic on dates represented as the number of days since
+ * 1970-01-01 in UTC. Conversions and the yyyy-MM-dd parser and formatter are
+ * done with integer arithmetic instead of a {@link java.util.Calendar} or a
+ * new {@link SimpleDateFormat} for every call.
+ * 
+ * Days before the start of the Gregorian calendar on 1582-10-15 are parsed and
+ * formatted with {@link SimpleDateFormat} so that the Julian dates it produces
+ * are preserved.
+ */
+public final class EpochDay
+{
+  public static final long    MILLIS_PER_DAY    = 24L * 60 * 60 * 1000;
+
+  /**
+   * Epoch day of 1582-10-15, the first day of the Gregorian calendar
+   */
+  private static final long   GREGORIAN_CUTOVER = -141427;
+
+  private static final String PATTERN           = "yyyy-MM-dd";
+
+  private EpochDay()
+  {
+  }
+
+  /**
+   * @return The epoch day which contains the given time in UTC
+   */
+  public static long of(long millis)
+  {
+    return floorDiv(millis, MILLIS_PER_DAY);
+  }
+
+  /**
+   * @return The epoch day which contains the given date in UTC
+   */
+  public static long of(Date date)
+  {
+    return of(date.getTime());
+  }
+
+  /**
+   * Returns the epoch day of the given proleptic Gregorian date. Months and
+   * days outside of their normal range roll over into the neighbouring months
+   * and years, as with a lenient {@link java.util.Calendar}.
+   * 
+   * @param month
+   *          1 based month of the year
+   * @param day
+   *          1 based day of the month
+   */
+  public static long of(long year, long month, long day)
+  {
+    year += floorDiv(month - 1, 12);
+    month = floorMod(month - 1, 12) + 1;
+
+    // Shift the year to start in March so that the leap day is the last day
+    // of the year
+    if (month <= 2)
+    {
+      year--;
+    }
+
+    long era = floorDiv(year, 400);
+    long yearOfEra = year - era * 400;
+    long dayOfYear = ( 153 * ( month > 2 ? month - 3 : month + 9 ) + 2 ) / 5;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+    return era * 146097 + dayOfEra - 719468 + ( day - 1 );
+  }
+
+  /**
+   * @return A new {@link Date} at midnight UTC of the given epoch day
+   */
+  public static Date toDate(long epochDay)
+  {
+    return new Date(toMillis(epochDay));
+  }
+
+  public static long toMillis(long epochDay)
+  {
+    return epochDay * MILLIS_PER_DAY;
+  }
+
+  /**
+   * Parses a yyyy-MM-dd date with the same rules as a lenient
+   * {@link SimpleDateFormat} in UTC. Text after the day is ignored.
+   */
+  public static long parse(String text) throws ParseException
+  {
+    int length = text.length();
+    long year = 0;
+    long month = 0;
+    long day = 0;
+    int position = 0;
+
+    for (int field = 0; field < 3; field++)
+    {
+      if (field > 0)
+      {
+        if (position >= length || text.charAt(position) != '-')
+        {
+          return parseJulian(text);
+        }
+
+        position++;
+      }
+
+      int start = position;
+      long value = 0;
+
+      while (position < length && position - start < 9)
+      {
+        char c = text.charAt(position);
+
+        if (c < '0' || c > '9')
+        {
+          break;
+        }
+
+        value = value * 10 + ( c - '0' );
+        position++;
+      }
+
+      if (position == start || ( position < length && Character.isDigit(text.charAt(position)) ))
+      {
+        return parseJulian(text);
+      }
+
+      if (field == 0)
+      {
+        year = value;
+      }
+      else if (field == 1)
+      {
+        month = value;
+      }
+      else
+      {
+        day = value;
+      }
+    }
+
+    long epochDay = of(year, month, day);
+
+    if (epochDay < GREGORIAN_CUTOVER)
+    {
+      return parseJulian(text);
+    }
+
+    return epochDay;
+  }
+
+  /**
+   * Formats the epoch day as yyyy-MM-dd, the inverse of {@link #parse(String)}
+   */
+  public static String format(long epochDay)
+  {
+    if (epochDay < GREGORIAN_CUTOVER)
+    {
+      return newFormat().format(toDate(epochDay));
+    }
+
+    StringBuilder builder = new StringBuilder(10);
+
+    appendTo(builder, epochDay);
+
+    return builder.toString();
+  }
+
+  /**
+   * Appends the epoch day formatted as yyyy-MM-dd to the builder
+   */
+  public static void appendTo(StringBuilder builder, long epochDay)
+  {
+    if (epochDay < GREGORIAN_CUTOVER)
+    {
+      builder.append(newFormat().format(toDate(epochDay)));
+
+      return;
+    }
+
+    long dayOfEpoch = epochDay + 719468;
+    long era = floorDiv(dayOfEpoch, 146097);
+    long dayOfEra = dayOfEpoch - era * 146097;
+    long yearOfEra = ( dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096 ) / 365;
+    long dayOfYear = dayOfEra - ( 365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100 );
+    long shiftedMonth = ( 5 * dayOfYear + 2 ) / 153;
+
+    long day = dayOfYear - ( 153 * shiftedMonth + 2 ) / 5 + 1;
+    long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + ( month <= 2 ? 1 : 0 );
+
+    appendPadded(builder, year, 4);
+    builder.append('-');
+    appendPadded(builder, month, 2);
+    builder.append('-');
+    appendPadded(builder, day, 2);
+  }
+
+  private static void appendPadded(StringBuilder builder, long value, int width)
+  {
+    for (long limit = 10; width > 1; width--, limit *= 10)
+    {
+      if (value < limit)
+      {
+        builder.append('0');
+      }
+    }
+
+    builder.append(value);
+  }
+
+  private static long parseJulian(String text) throws ParseException
+  {
+    return of(newFormat().parse(text));
+  }
+
+  private static SimpleDateFormat newFormat()
+  {
+    SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+    return format;
+  }
+
+  private static long floorDiv(long x, long y)
+  {
+    long quotient = x / y;
+
+    return ( ( x % y ) != 0 && ( ( x ^ y ) < 0 ) ) ? quotient - 1 : quotient;
+  }
+
+  private static long floorMod(long x, long y)
+  {
+    return x - floorDiv(x, y) * y;
+  }
+}
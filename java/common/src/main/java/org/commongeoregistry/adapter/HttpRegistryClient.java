@@ -18,11 +18,27 @@
  */
 package org.commongeoregistry.adapter;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.commongeoregistry.adapter.constants.RegistryUrls;
 import org.commongeoregistry.adapter.dataaccess.ChildTreeNode;
@@ -30,17 +46,24 @@ import org.commongeoregistry.adapter.dataaccess.GeoObject;
 import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTime;
 import org.commongeoregistry.adapter.dataaccess.ParentTreeNode;
 import org.commongeoregistry.adapter.http.AuthenticationException;
+import org.commongeoregistry.adapter.http.BodyWriter;
 import org.commongeoregistry.adapter.http.Connector;
 import org.commongeoregistry.adapter.http.HttpResponse;
 import org.commongeoregistry.adapter.http.ResponseProcessor;
 import org.commongeoregistry.adapter.http.ServerResponseException;
+import org.commongeoregistry.adapter.http.StreamingConnector;
 import org.commongeoregistry.adapter.id.AdapterIdServiceIF;
 import org.commongeoregistry.adapter.id.MemoryOnlyIdService;
+import org.commongeoregistry.adapter.metadata.AttributeClassificationType;
+import org.commongeoregistry.adapter.metadata.AttributeTermType;
+import org.commongeoregistry.adapter.metadata.AttributeType;
 import org.commongeoregistry.adapter.metadata.GeoObjectType;
 import org.commongeoregistry.adapter.metadata.HierarchyType;
+import org.commongeoregistry.adapter.metadata.MetadataCache;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * This class is used by remote systems wishing to interface with the Common
@@ -60,6 +83,18 @@ public class HttpRegistryClient extends RegistryAdapter
 
   private Connector         connector;
 
+  private boolean           lazyDecoding;
+
+  private transient volatile MetadataRefreshScheduler refreshScheduler;
+
+  private transient ExecutorService metadataExecutor;
+
+  /**
+   * Flag denoting if the metadata requests of a refresh are made one after
+   * another on the calling thread
+   */
+  private boolean           sequentialMetadata;
+
   /**
    * 
    * 
@@ -86,6 +121,96 @@ public class HttpRegistryClient extends RegistryAdapter
     }
   }
 
+  /**
+   * When enabled the {@link GeoObject}s of tree responses keep their raw JSON
+   * and decode their attributes and geometry on first access. This is much
+   * cheaper for traversals which only read a few attributes, such as the code
+   * and the display label. Disabled by default.
+   * 
+   * @see GeoObject#fromJSON(RegistryAdapter, String, boolean)
+   */
+  public void setLazyDecoding(boolean lazyDecoding)
+  {
+    this.lazyDecoding = lazyDecoding;
+  }
+
+  public boolean isLazyDecoding()
+  {
+    return this.lazyDecoding;
+  }
+
+  /**
+   * Sets the executor on which {@link #refreshMetadataCache()} fetches the
+   * hierarchy types while the {@link GeoObjectType}s are fetched and decoded
+   * on the calling thread. By default a small pool of daemon threads shared by
+   * all clients is used. With a null executor the metadata is fetched one
+   * request after another.
+   */
+  public void setMetadataExecutor(ExecutorService metadataExecutor)
+  {
+    this.metadataExecutor = metadataExecutor;
+    this.sequentialMetadata = ( metadataExecutor == null );
+  }
+
+  /**
+   * @return The executor of the concurrent metadata requests, or null if they
+   *         are made on the calling thread
+   */
+  public ExecutorService getMetadataExecutor()
+  {
+    if (this.sequentialMetadata)
+    {
+      return null;
+    }
+
+    ExecutorService executor = this.metadataExecutor;
+
+    return executor != null ? executor : DefaultMetadataExecutor.INSTANCE;
+  }
+
+  /**
+   * Submits a metadata request which runs concurrently with the other
+   * metadata requests of a refresh.
+   * 
+   * @return The future of the task, or null if it should run on the calling
+   *         thread
+   */
+  protected <T> Future<T> submitMetadataTask(Callable<T> task)
+  {
+    ExecutorService executor = this.getMetadataExecutor();
+
+    return executor != null ? executor.submit(task) : null;
+  }
+
+  /**
+   * @return The started {@link MetadataRefreshScheduler} of this client, or
+   *         null if there is none
+   */
+  public MetadataRefreshScheduler getRefreshScheduler()
+  {
+    return this.refreshScheduler;
+  }
+
+  void setRefreshScheduler(MetadataRefreshScheduler refreshScheduler)
+  {
+    this.refreshScheduler = refreshScheduler;
+  }
+
+  /**
+   * Triggers a background refresh of the metadata cache when a
+   * {@link MetadataRefreshScheduler} is started.
+   */
+  @Override
+  protected void geoObjectTypeNotFound(String geoObjectTypeCode)
+  {
+    MetadataRefreshScheduler scheduler = this.refreshScheduler;
+
+    if (scheduler != null)
+    {
+      scheduler.geoObjectTypeNotFound(geoObjectTypeCode);
+    }
+  }
+
   /**
    * Returns the HTTP connector used for making custom requests to the geo
    * registry server.
@@ -97,8 +222,88 @@ public class HttpRegistryClient extends RegistryAdapter
   }
 
   /**
-   * Clears the metadata cache and populates it with the metadata from the
-   * common geo-registry.
+   * Executes a GET request whose response body is streamed from the connection
+   * when the connector supports it. The response must be closed.
+   */
+  private HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpGetStream(url, params);
+    }
+
+    return this.connector.httpGet(url, params);
+  }
+
+  /**
+   * Executes a POST request whose body is written directly to the connection
+   * when the connector supports it.
+   */
+  protected HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpPost(url, body);
+    }
+
+    StringWriter writer = new StringWriter();
+    body.write(writer);
+
+    return this.connector.httpPost(url, writer.toString());
+  }
+
+  /**
+   * Request body of a JSON object with a single property holding the given
+   * {@link GeoObject}.
+   */
+  private static BodyWriter body(final String name, final GeoObject geoObject)
+  {
+    return new BodyWriter()
+    {
+      @Override
+      public void write(Writer writer) throws IOException
+      {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name(name);
+        geoObject.toJSON(json);
+        json.endObject();
+        json.flush();
+      }
+    };
+  }
+
+  /**
+   * Request body of a JSON object with a single property holding the given
+   * {@link GeoObjectOverTime}.
+   */
+  private static BodyWriter body(final String name, final GeoObjectOverTime geoObject)
+  {
+    return new BodyWriter()
+    {
+      @Override
+      public void write(Writer writer) throws IOException
+      {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name(name);
+        geoObject.toJSON(json);
+        json.endObject();
+        json.flush();
+      }
+    };
+  }
+
+  /**
+   * Refreshes the metadata cache with the metadata from the common
+   * geo-registry. Only the types, hierarchies and terms which were added,
+   * changed or removed on the registry are replaced, and the changes are
+   * published to the cache in a single step so that lookups never fail while
+   * the cache is being refreshed. The hierarchy type request overlaps with
+   * fetching and decoding the {@link GeoObjectType}s, unless the metadata
+   * executor was set to null with {@link #setMetadataExecutor(ExecutorService)},
+   * in which case all requests are made one after another on the calling
+   * thread.
    * 
    * @throws AuthenticationException
    * @throws ServerResponseException
@@ -107,20 +312,168 @@ public class HttpRegistryClient extends RegistryAdapter
    */
   public void refreshMetadataCache() throws AuthenticationException, ServerResponseException, IOException
   {
-    this.getMetadataCache().rebuild();
+    MetadataCache.Update update = this.getMetadataCache().update();
+
+    // The hierarchies are requested while the types are fetched and decoded,
+    // but are only linked to the types once all of them are staged
+    Future<String> pending = this.submitMetadataTask(new Callable<String>()
+    {
+      @Override
+      public String call() throws Exception
+      {
+        return fetchHierarchyTypes(new String[] {});
+      }
+    });
+
+    boolean complete = false;
+
+    try
+    {
+      GeoObjectType[] gots = this.getGeoObjectTypes(new String[] {}, new String[] {});
+
+      update.replaceGeoObjectTypes(Arrays.asList(gots));
+
+      Map<String, Term> terms = new HashMap<String, Term>();
+
+      for (GeoObjectType got : gots)
+      {
+        for (AttributeType attributeType : got.getAttributeMap().values())
+        {
+          if (attributeType instanceof AttributeTermType)
+          {
+            addTerms(( (AttributeTermType) attributeType ).getRootTerm(), terms);
+          }
+          else if (attributeType instanceof AttributeClassificationType)
+          {
+            addTerms(( (AttributeClassificationType) attributeType ).getRootTerm(), terms);
+          }
+        }
+      }
+
+      update.replaceTerms(terms.values());
+
+      String hierarchies = ( pending != null ? await(pending) : this.fetchHierarchyTypes(new String[] {}) );
+
+      HierarchyType[] hts = HierarchyType.fromJSONArray(hierarchies, this, update);
+
+      update.replaceHierarchyTypes(Arrays.asList(hts));
+
+      complete = true;
+    }
+    finally
+    {
+      if (!complete && pending != null)
+      {
+        pending.cancel(true);
+      }
+    }
+
+    update.publish();
+  }
+
+  /**
+   * Populates the metadata cache from a file written by
+   * {@link MetadataCache#save(File)} and reconciles it with the common
+   * geo-registry in the background, writing the refreshed metadata back to the
+   * file. If the file does not exist or cannot be read, the cache is
+   * refreshed from the registry and saved before returning.
+   * 
+   * @param file
+   *          File of the metadata snapshot
+   * @return The background refresh, which completes when the cache has been
+   *         reconciled with the registry
+   * @throws AuthenticationException
+   * @throws ServerResponseException
+   * @throws IOException
+   */
+  public Future<Void> initMetadataCache(File file) throws AuthenticationException, ServerResponseException, IOException
+  {
+    return this.initMetadataCache(file, null);
+  }
 
-    GeoObjectType[] gots = this.getGeoObjectTypes(new String[] {}, new String[] {});
+  /**
+   * @param file
+   *          File of the metadata snapshot
+   * @param executor
+   *          Executor of the background refresh, or null to refresh on a new
+   *          daemon thread
+   * @see #initMetadataCache(File)
+   */
+  public Future<Void> initMetadataCache(final File file, ExecutorService executor) throws AuthenticationException, ServerResponseException, IOException
+  {
+    final MetadataCache cache = this.getMetadataCache();
+    boolean loaded;
 
-    for (GeoObjectType got : gots)
+    try
+    {
+      loaded = cache.load(file);
+    }
+    catch (IOException e)
     {
-      this.getMetadataCache().addGeoObjectType(got);
+      loaded = false;
     }
 
-    HierarchyType[] hts = this.getHierarchyTypes(new String[] {});
+    if (!loaded)
+    {
+      this.refreshMetadataCache();
+
+      cache.save(file);
+
+      // The cache is already current, so the returned refresh is complete
+      FutureTask<Void> done = new FutureTask<Void>(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+        }
+      }, null);
+      done.run();
+
+      return done;
+    }
+
+    final long loadedVersion = cache.getVersion();
+
+    FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception
+      {
+        refreshMetadataCache();
+
+        if (cache.getVersion() != loadedVersion)
+        {
+          cache.save(file);
+        }
+
+        return null;
+      }
+    });
 
-    for (HierarchyType ht : hts)
+    if (executor != null)
     {
-      this.getMetadataCache().addHierarchyType(ht);
+      executor.execute(task);
+    }
+    else
+    {
+      Thread thread = new Thread(task, "registry-metadata-refresh");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    return task;
+  }
+
+  private static void addTerms(Term term, Map<String, Term> terms)
+  {
+    if (term != null)
+    {
+      terms.put(term.getCode(), term);
+
+      for (Term child : term.getChildren())
+      {
+        addTerms(child, terms);
+      }
     }
   }
 
@@ -277,12 +630,7 @@ public class HttpRegistryClient extends RegistryAdapter
       throw new RequiredParameterException(RegistryUrls.GEO_OBJECT_CREATE, RegistryUrls.GEO_OBJECT_CREATE_PARAM_GEOOBJECT);
     }
 
-    JsonObject jsonObject = _geoObject.toJSON();
-
-    JsonObject params = new JsonObject();
-    params.add(RegistryUrls.GEO_OBJECT_CREATE_PARAM_GEOOBJECT, jsonObject);
-
-    HttpResponse resp = this.connector.httpPost(RegistryUrls.GEO_OBJECT_CREATE, params.toString());
+    HttpResponse resp = this.httpPost(RegistryUrls.GEO_OBJECT_CREATE, body(RegistryUrls.GEO_OBJECT_CREATE_PARAM_GEOOBJECT, _geoObject));
     ResponseProcessor.validateStatusCode(resp);
 
     GeoObject retGeo = GeoObject.fromJSON(this, resp.getAsString());
@@ -307,12 +655,7 @@ public class HttpRegistryClient extends RegistryAdapter
       throw new RequiredParameterException(RegistryUrls.GEO_OBJECT_TIME_CREATE, RegistryUrls.GEO_OBJECT_TIME_CREATE_PARAM_GEOOBJECT);
     }
 
-    JsonObject jsonObject = _geoObject.toJSON();
-
-    JsonObject params = new JsonObject();
-    params.add(RegistryUrls.GEO_OBJECT_TIME_CREATE_PARAM_GEOOBJECT, jsonObject);
-
-    HttpResponse resp = this.connector.httpPost(RegistryUrls.GEO_OBJECT_TIME_CREATE, params.toString());
+    HttpResponse resp = this.httpPost(RegistryUrls.GEO_OBJECT_TIME_CREATE, body(RegistryUrls.GEO_OBJECT_TIME_CREATE_PARAM_GEOOBJECT, _geoObject));
     ResponseProcessor.validateStatusCode(resp);
 
     GeoObjectOverTime retGeo = GeoObjectOverTime.fromJSON(this, resp.getAsString());
@@ -401,12 +744,7 @@ public class HttpRegistryClient extends RegistryAdapter
       throw new RequiredParameterException(RegistryUrls.GEO_OBJECT_UPDATE, RegistryUrls.GEO_OBJECT_UPDATE_PARAM_GEOOBJECT);
     }
 
-    JsonObject jsonObject = _geoObject.toJSON();
-
-    JsonObject params = new JsonObject();
-    params.add(RegistryUrls.GEO_OBJECT_UPDATE_PARAM_GEOOBJECT, jsonObject);
-
-    HttpResponse resp = this.connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, params.toString());
+    HttpResponse resp = this.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, body(RegistryUrls.GEO_OBJECT_UPDATE_PARAM_GEOOBJECT, _geoObject));
     ResponseProcessor.validateStatusCode(resp);
 
     GeoObject retGeo = GeoObject.fromJSON(this, resp.getAsString());
@@ -431,12 +769,7 @@ public class HttpRegistryClient extends RegistryAdapter
       throw new RequiredParameterException(RegistryUrls.GEO_OBJECT_TIME_UPDATE, RegistryUrls.GEO_OBJECT_TIME_UPDATE_PARAM_GEOOBJECT);
     }
 
-    JsonObject jsonObject = _geoObject.toJSON();
-
-    JsonObject params = new JsonObject();
-    params.add(RegistryUrls.GEO_OBJECT_TIME_UPDATE_PARAM_GEOOBJECT, jsonObject);
-
-    HttpResponse resp = this.connector.httpPost(RegistryUrls.GEO_OBJECT_TIME_UPDATE, params.toString());
+    HttpResponse resp = this.httpPost(RegistryUrls.GEO_OBJECT_TIME_UPDATE, body(RegistryUrls.GEO_OBJECT_TIME_UPDATE_PARAM_GEOOBJECT, _geoObject));
     ResponseProcessor.validateStatusCode(resp);
 
     GeoObjectOverTime retGeo = GeoObjectOverTime.fromJSON(this, resp.getAsString());
@@ -502,12 +835,14 @@ public class HttpRegistryClient extends RegistryAdapter
       params.put(RegistryUrls.GEO_OBJECT_GET_CHILDREN_PARAM_DATE, JsonDateUtil.format(date));
     }
 
-    HttpResponse resp = this.connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CHILDREN, params);
-    ResponseProcessor.validateStatusCode(resp);
+    try (HttpResponse resp = this.httpGetStream(RegistryUrls.GEO_OBJECT_GET_CHILDREN, params))
+    {
+      ResponseProcessor.validateStatusCode(resp);
 
-    ChildTreeNode tn = ChildTreeNode.fromJSON(resp.getAsString(), this);
+      ChildTreeNode tn = ChildTreeNode.fromJSON(resp.getAsJsonReader(), this, this.lazyDecoding);
 
-    return tn;
+      return tn;
+    }
   }
 
   /**
@@ -571,12 +906,14 @@ public class HttpRegistryClient extends RegistryAdapter
       params.put(RegistryUrls.GEO_OBJECT_GET_PARENTS_PARAM_DATE, JsonDateUtil.format(date));
     }
 
-    HttpResponse resp = this.connector.httpGet(RegistryUrls.GEO_OBJECT_GET_PARENTS, params);
-    ResponseProcessor.validateStatusCode(resp);
+    try (HttpResponse resp = this.httpGetStream(RegistryUrls.GEO_OBJECT_GET_PARENTS, params))
+    {
+      ResponseProcessor.validateStatusCode(resp);
 
-    ParentTreeNode tn = ParentTreeNode.fromJSON(resp.getAsString(), this);
+      ParentTreeNode tn = ParentTreeNode.fromJSON(resp.getAsJsonReader(), this, this.lazyDecoding);
 
-    return tn;
+      return tn;
+    }
   }
 
   /**
@@ -695,8 +1032,8 @@ public class HttpRegistryClient extends RegistryAdapter
   }
 
   /**
-   * Returns an array of {@link HierarchyType} that define the given list of
-   * types. If no types are provided then all will be returned.
+   * Returns the JSON of the {@link HierarchyType}s with the given codes. If
+   * no types are provided then all will be returned.
    * 
    * @param types
    *          An array of HierarchyType codes that will be retrieved.
@@ -704,7 +1041,7 @@ public class HttpRegistryClient extends RegistryAdapter
    * @throws ServerResponseException
    * @throws IOException
    */
-  private HierarchyType[] getHierarchyTypes(String[] types) throws AuthenticationException, ServerResponseException, IOException
+  private String fetchHierarchyTypes(String[] types) throws AuthenticationException, ServerResponseException, IOException
   {
     if (types == null)
     {
@@ -723,8 +1060,79 @@ public class HttpRegistryClient extends RegistryAdapter
     HttpResponse resp = this.connector.httpGet(RegistryUrls.HIERARCHY_TYPE_GET_ALL, params);
     ResponseProcessor.validateStatusCode(resp);
 
-    HierarchyType[] hts = HierarchyType.fromJSONArray(resp.getAsString(), this);
+    return resp.getAsString();
+  }
+
+  private static <T> T await(Future<T> future) throws AuthenticationException, ServerResponseException, IOException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      InterruptedIOException ex = new InterruptedIOException();
+      ex.initCause(e);
 
-    return hts;
+      throw ex;
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof AuthenticationException)
+      {
+        throw (AuthenticationException) cause;
+      }
+      else if (cause instanceof ServerResponseException)
+      {
+        throw (ServerResponseException) cause;
+      }
+      else if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Holder of the default metadata executor, which is only created when a
+   * client first refreshes its metadata
+   */
+  private static class DefaultMetadataExecutor
+  {
+    private static final ExecutorService INSTANCE = create();
+
+    private static ExecutorService create()
+    {
+      final AtomicInteger count = new AtomicInteger();
+
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+      {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+          Thread thread = new Thread(r, "registry-metadata-" + count.incrementAndGet());
+          thread.setDaemon(true);
+
+          return thread;
+        }
+      });
+      executor.allowCoreThreadTimeOut(true);
+
+      return executor;
+    }
   }
 }
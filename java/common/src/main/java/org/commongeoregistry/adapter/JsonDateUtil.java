@@ -19,9 +19,7 @@
 package org.commongeoregistry.adapter;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
 
 public class JsonDateUtil
 {
@@ -29,12 +27,9 @@ public class JsonDateUtil
   {
     if (dateStr != null)
     {
-      SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
-      formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-
       try
       {
-        return formatter.parse(dateStr);
+        return EpochDay.toDate(EpochDay.parse(dateStr));
       }
       catch (ParseException e)
       {
@@ -49,11 +44,7 @@ public class JsonDateUtil
   {
     if (date != null)
     {
-
-      SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
-      formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-      return formatter.format(date);
+      return EpochDay.format(EpochDay.of(date));
     }
 
     return null;
@@ -0,0 +1,350 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+import org.commongeoregistry.adapter.metadata.MetadataCache;
+
+/**
+ * Refreshes the {@link MetadataCache} of a {@link HttpRegistryClient} in the
+ * background on a fixed interval. The cache keeps serving its current
+ * metadata while a refresh runs, as a refresh publishes the changed metadata
+ * in a single step once it has been fetched.
+ * 
+ * While the scheduler is started, a request for a {@link GeoObjectType}
+ * which is not cached (see {@link GeoObjectTypeNotFoundException}) also
+ * triggers a refresh, at most once per trigger interval. Only one refresh
+ * runs at a time: refreshes requested while one is running are dropped.
+ */
+public class MetadataRefreshScheduler
+{
+  public static final long         DEFAULT_TRIGGER_INTERVAL = 30000;
+
+  private HttpRegistryClient       client;
+
+  private volatile ScheduledExecutorService executor;
+
+  private boolean                  ownsExecutor;
+
+  private long                     interval;
+
+  private volatile long            triggerInterval;
+
+  private ScheduledFuture<?>       scheduled;
+
+  private final AtomicBoolean      running;
+
+  private final AtomicLong         refreshCount;
+
+  private final AtomicLong         failureCount;
+
+  private final AtomicLong         lastAttempt;
+
+  private volatile long            lastRefresh;
+
+  private volatile long            lastDuration;
+
+  private volatile Throwable       lastFailure;
+
+  /**
+   * @param client
+   *          Client whose metadata cache is refreshed
+   * @param interval
+   *          Delay between the end of a refresh and the start of the next
+   * @param unit
+   *          Unit of the interval
+   */
+  public MetadataRefreshScheduler(HttpRegistryClient client, long interval, TimeUnit unit)
+  {
+    this(client, interval, unit, createExecutor());
+
+    this.ownsExecutor = true;
+  }
+
+  /**
+   * @param client
+   *          Client whose metadata cache is refreshed
+   * @param interval
+   *          Delay between the end of a refresh and the start of the next
+   * @param unit
+   *          Unit of the interval
+   * @param executor
+   *          Executor which runs the refreshes
+   */
+  public MetadataRefreshScheduler(HttpRegistryClient client, long interval, TimeUnit unit, ScheduledExecutorService executor)
+  {
+    this.client = client;
+    this.interval = unit.toMillis(interval);
+    this.executor = executor;
+    this.ownsExecutor = false;
+    this.triggerInterval = DEFAULT_TRIGGER_INTERVAL;
+    this.running = new AtomicBoolean();
+    this.refreshCount = new AtomicLong();
+    this.failureCount = new AtomicLong();
+    this.lastAttempt = new AtomicLong();
+  }
+
+  public HttpRegistryClient getClient()
+  {
+    return client;
+  }
+
+  public ScheduledExecutorService getExecutor()
+  {
+    return executor;
+  }
+
+  /**
+   * @return The interval between refreshes in milliseconds
+   */
+  public long getInterval()
+  {
+    return interval;
+  }
+
+  /**
+   * @return The minimum time in milliseconds between two refreshes triggered
+   *         by a missing {@link GeoObjectType}
+   */
+  public long getTriggerInterval()
+  {
+    return triggerInterval;
+  }
+
+  public void setTriggerInterval(long triggerInterval)
+  {
+    this.triggerInterval = triggerInterval;
+  }
+
+  /**
+   * Schedules the periodic refresh, the first of which runs after one
+   * interval, and registers the scheduler with the client. A scheduler which
+   * created its own executor creates a new one when it is started again after
+   * {@link #stop()}.
+   */
+  public synchronized void start()
+  {
+    if (this.scheduled == null)
+    {
+      if (this.ownsExecutor && this.executor.isShutdown())
+      {
+        this.executor = createExecutor();
+      }
+
+      this.scheduled = this.executor.scheduleWithFixedDelay(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          refresh();
+        }
+      }, this.interval, this.interval, TimeUnit.MILLISECONDS);
+
+      this.client.setRefreshScheduler(this);
+    }
+  }
+
+  /**
+   * Cancels the periodic refresh. A refresh which is running is allowed to
+   * complete. The executor is shut down if it was created by the scheduler.
+   */
+  public synchronized void stop()
+  {
+    if (this.scheduled != null)
+    {
+      this.scheduled.cancel(false);
+      this.scheduled = null;
+
+      this.client.setRefreshScheduler(null);
+    }
+
+    if (this.ownsExecutor)
+    {
+      this.executor.shutdown();
+    }
+  }
+
+  public synchronized boolean isStarted()
+  {
+    return this.scheduled != null;
+  }
+
+  /**
+   * Refreshes the metadata cache on the calling thread, unless a refresh is
+   * already running.
+   * 
+   * @return true if the cache was refreshed by this call
+   */
+  public boolean refresh()
+  {
+    if (!this.running.compareAndSet(false, true))
+    {
+      return false;
+    }
+
+    long start = System.nanoTime();
+    this.lastAttempt.set(System.currentTimeMillis());
+
+    try
+    {
+      this.client.refreshMetadataCache();
+
+      this.lastRefresh = System.currentTimeMillis();
+      this.lastFailure = null;
+      this.refreshCount.incrementAndGet();
+
+      return true;
+    }
+    catch (Exception e)
+    {
+      this.lastFailure = e;
+      this.failureCount.incrementAndGet();
+
+      return false;
+    }
+    finally
+    {
+      this.lastDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      this.running.set(false);
+    }
+  }
+
+  /**
+   * Submits a refresh to the executor.
+   * 
+   * @return Future of the refresh, whose value is false if the refresh failed
+   *         or another refresh was already running
+   */
+  public Future<Boolean> requestRefresh()
+  {
+    return this.executor.submit(new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call()
+      {
+        return refresh();
+      }
+    });
+  }
+
+  /**
+   * Requests a refresh because a {@link GeoObjectType} is missing from the
+   * cache, unless a refresh started within the trigger interval.
+   * 
+   * @return true if a refresh was requested
+   */
+  public boolean geoObjectTypeNotFound(String typeCode)
+  {
+    long now = System.currentTimeMillis();
+    long lastAttempt = this.lastAttempt.get();
+
+    // Claims the trigger so that concurrent misses request a single refresh
+    if (this.running.get() || now - lastAttempt < this.triggerInterval || !this.lastAttempt.compareAndSet(lastAttempt, now))
+    {
+      return false;
+    }
+
+    this.requestRefresh();
+
+    return true;
+  }
+
+  /**
+   * @return true while a refresh is running
+   */
+  public boolean isRefreshing()
+  {
+    return this.running.get();
+  }
+
+  /**
+   * @return The age in milliseconds of the cached metadata, measured from
+   *         the end of the last successful refresh, or -1 if the scheduler
+   *         has not refreshed the cache yet
+   */
+  public long getFreshnessAge()
+  {
+    long lastRefresh = this.lastRefresh;
+
+    return lastRefresh != 0 ? System.currentTimeMillis() - lastRefresh : -1;
+  }
+
+  /**
+   * @return The time of the end of the last successful refresh in
+   *         milliseconds since the epoch, or 0 if there was none
+   */
+  public long getLastRefreshTime()
+  {
+    return lastRefresh;
+  }
+
+  /**
+   * @return The duration in milliseconds of the last refresh, successful or
+   *         not
+   */
+  public long getLastRefreshDuration()
+  {
+    return lastDuration;
+  }
+
+  public long getRefreshCount()
+  {
+    return refreshCount.get();
+  }
+
+  public long getFailureCount()
+  {
+    return failureCount.get();
+  }
+
+  /**
+   * @return The error of the last refresh, or null if it succeeded
+   */
+  public Throwable getLastFailure()
+  {
+    return lastFailure;
+  }
+
+  private static ScheduledExecutorService createExecutor()
+  {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread thread = new Thread(r, "registry-metadata-refresh");
+        thread.setDaemon(true);
+
+        return thread;
+      }
+    });
+
+    return executor;
+  }
+}
@@ -60,6 +60,37 @@ public abstract class RegistryAdapter implements Serializable
     return this.idService;
   }
 
+  /**
+   * Returns the cached {@link GeoObjectType} with the given code.
+   * 
+   * @throws GeoObjectTypeNotFoundException
+   *           if the type is not in the metadata cache
+   */
+  protected GeoObjectType getGeoObjectType(String geoObjectTypeCode)
+  {
+    Optional<GeoObjectType> opGOT = this.getMetadataCache().getGeoObjectType(geoObjectTypeCode);
+    
+    if (!opGOT.isPresent())
+    {
+      this.geoObjectTypeNotFound(geoObjectTypeCode);
+      
+      throw new GeoObjectTypeNotFoundException(geoObjectTypeCode);
+    }
+    
+    return opGOT.get();
+  }
+  
+  /**
+   * Called when a {@link GeoObjectType} is requested which is not in the
+   * metadata cache, before the {@link GeoObjectTypeNotFoundException} is
+   * thrown. Subclasses may use it to refresh the cache.
+   * 
+   * @param geoObjectTypeCode
+   */
+  protected void geoObjectTypeNotFound(String geoObjectTypeCode)
+  {
+  }
+  
   /**
    * Creates a new local {@link GeoObject} instance of the given type. If the
    * local id cache is empty, an EmptyIdCacheException is thrown.
@@ -82,14 +113,7 @@ public abstract class RegistryAdapter implements Serializable
    */
   public GeoObject newGeoObjectInstance(String geoObjectTypeCode, boolean genId) throws EmptyIdCacheException
   {
-    Optional<GeoObjectType> opGOT = this.getMetadataCache().getGeoObjectType(geoObjectTypeCode);
-    
-    if (!opGOT.isPresent())
-    {
-      throw new GeoObjectTypeNotFoundException(geoObjectTypeCode);
-    }
-    
-    GeoObjectType geoObjectType = opGOT.get();
+    GeoObjectType geoObjectType = this.getGeoObjectType(geoObjectTypeCode);
 
     Map<String, Attribute> attributeMap = GeoObject.buildAttributeMap(geoObjectType);
 
@@ -135,7 +159,7 @@ public abstract class RegistryAdapter implements Serializable
   {
     final Date createDate = new Date();
     
-    GeoObjectType geoObjectType = this.getMetadataCache().getGeoObjectType(geoObjectTypeCode).get();
+    GeoObjectType geoObjectType = this.getGeoObjectType(geoObjectTypeCode);
 
     Map<String, ValueOverTimeCollectionDTO> votAttributeMap = GeoObjectOverTime.buildVotAttributeMap(geoObjectType);
     Map<String, Attribute> attributeMap = GeoObjectOverTime.buildAttributeMap(geoObjectType);
@@ -18,15 +18,21 @@
  */
 package org.commongeoregistry.adapter.action;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import org.commongeoregistry.adapter.constants.CGRAdapterProperties;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 
 abstract public class AbstractActionDTO
 {
@@ -40,6 +46,8 @@ abstract public class AbstractActionDTO
   
   public static final String MAINTAINER_NOTES = "maintainerNotes";
   
+  private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+  
   private String apiVersion;
   
   private Date createActionDate;
@@ -70,6 +78,52 @@ abstract public class AbstractActionDTO
     return ja;
   }
   
+  /**
+   * Writes the given actions as a JSON array directly to the writer, one
+   * property at a time. Null properties are written like
+   * {@link #serializeActions(List)} does.
+   */
+  public static void serializeActions(List<AbstractActionDTO> actions, JsonWriter writer) throws IOException
+  {
+    boolean serializeNulls = writer.getSerializeNulls();
+    writer.setSerializeNulls(true);
+    
+    try
+    {
+      writer.beginArray();
+      
+      for (int i = 0; i < actions.size(); ++i)
+      {
+        writer.beginObject();
+        
+        actions.get(i).writeJson(writer);
+        
+        writer.endObject();
+      }
+      
+      writer.endArray();
+    }
+    finally
+    {
+      writer.setSerializeNulls(serializeNulls);
+    }
+  }
+  
+  /**
+   * Writes the given actions as a JSON string whose content is the JSON array
+   * of the actions, escaping the array as it is written.
+   */
+  public static void serializeActionsAsString(List<AbstractActionDTO> actions, Writer writer) throws IOException
+  {
+    writer.write('"');
+    
+    JsonWriter array = new JsonWriter(new EscapingWriter(writer));
+    serializeActions(actions, array);
+    array.flush();
+    
+    writer.write('"');
+  }
+  
   public static List<AbstractActionDTO> parseActions(String jsonArray) {
     JsonParser parser = new JsonParser();
 
@@ -138,6 +192,37 @@ abstract public class AbstractActionDTO
     json.addProperty(MAINTAINER_NOTES, this.maintainerNotes);
   }
   
+  /**
+   * Writes the same properties as {@link #buildJson(JsonObject)} to the
+   * writer, which is positioned inside the object of the action.
+   */
+  protected void writeJson(JsonWriter writer) throws IOException
+  {
+    writer.name(ACTION_TYPE).value(this.actionType);
+    
+    writer.name(API_VERSION).value(this.apiVersion);
+    
+    writer.name(CREATE_ACTION_DATE).value(String.valueOf(this.createActionDate.getTime()));
+    
+    writer.name(CONTRIBUTOR_NOTES).value(this.contributorNotes);
+    
+    writer.name(MAINTAINER_NOTES).value(this.maintainerNotes);
+  }
+  
+  protected static void writeElement(JsonWriter writer, String name, JsonElement element) throws IOException
+  {
+    writer.name(name);
+    
+    if (element != null)
+    {
+      GSON.toJson(element, writer);
+    }
+    else
+    {
+      writer.nullValue();
+    }
+  }
+  
   public String getMaintainerNotes()
   {
     return maintainerNotes;
@@ -182,4 +267,52 @@ abstract public class AbstractActionDTO
   {
     return this.actionType;
   }
+  
+  /**
+   * Escapes the characters written to it as the content of a JSON string
+   */
+  private static class EscapingWriter extends Writer
+  {
+    private Writer writer;
+    
+    public EscapingWriter(Writer writer)
+    {
+      this.writer = writer;
+    }
+    
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException
+    {
+      for (int i = off; i < off + len; i++)
+      {
+        char c = cbuf[i];
+        
+        if (c == '"' || c == '\\')
+        {
+          this.writer.write('\\');
+          this.writer.write(c);
+        }
+        else if (c < 0x20 || c == '\u2028' || c == '\u2029')
+        {
+          this.writer.write(String.format("\\u%04x", (int) c));
+        }
+        else
+        {
+          this.writer.write(c);
+        }
+      }
+    }
+    
+    @Override
+    public void flush() throws IOException
+    {
+      this.writer.flush();
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+      // The underlying writer is still being written to
+    }
+  }
 }
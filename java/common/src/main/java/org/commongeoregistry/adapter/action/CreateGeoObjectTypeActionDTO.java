@@ -18,9 +18,12 @@
  */
 package org.commongeoregistry.adapter.action;
 
+import java.io.IOException;
+
 import org.commongeoregistry.adapter.constants.RegistryUrls;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 public class CreateGeoObjectTypeActionDTO extends AbstractActionDTO
 {
@@ -39,6 +42,14 @@ public class CreateGeoObjectTypeActionDTO extends AbstractActionDTO
     json.add(RegistryUrls.GEO_OBJECT_TYPE_CREATE_PARAM_GOT, this.geoObjectType);
   }
   
+  @Override
+  protected void writeJson(JsonWriter writer) throws IOException
+  {
+    super.writeJson(writer);
+    
+    writeElement(writer, RegistryUrls.GEO_OBJECT_TYPE_CREATE_PARAM_GOT, this.geoObjectType);
+  }
+  
   @Override
   protected void buildFromJson(JsonObject json)
   {
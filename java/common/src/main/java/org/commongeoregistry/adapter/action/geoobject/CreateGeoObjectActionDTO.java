@@ -18,10 +18,13 @@
  */
 package org.commongeoregistry.adapter.action.geoobject;
 
+import java.io.IOException;
+
 import org.commongeoregistry.adapter.action.AbstractActionDTO;
 import org.commongeoregistry.adapter.constants.RegistryUrls;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 public class CreateGeoObjectActionDTO extends AbstractActionDTO
 {
@@ -40,6 +43,14 @@ public class CreateGeoObjectActionDTO extends AbstractActionDTO
     json.add(RegistryUrls.GEO_OBJECT_CREATE_PARAM_GEOOBJECT, this.geoObject);
   }
   
+  @Override
+  protected void writeJson(JsonWriter writer) throws IOException
+  {
+    super.writeJson(writer);
+    
+    writeElement(writer, RegistryUrls.GEO_OBJECT_CREATE_PARAM_GEOOBJECT, this.geoObject);
+  }
+  
   @Override
   protected void buildFromJson(JsonObject json)
   {
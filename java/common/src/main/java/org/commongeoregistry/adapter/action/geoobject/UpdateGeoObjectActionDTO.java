@@ -18,10 +18,13 @@
  */
 package org.commongeoregistry.adapter.action.geoobject;
 
+import java.io.IOException;
+
 import org.commongeoregistry.adapter.action.AbstractActionDTO;
 import org.commongeoregistry.adapter.constants.RegistryUrls;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 public class UpdateGeoObjectActionDTO extends AbstractActionDTO
 {
@@ -40,6 +43,14 @@ public class UpdateGeoObjectActionDTO extends AbstractActionDTO
     json.add(RegistryUrls.GEO_OBJECT_UPDATE_PARAM_GEOOBJECT, this.geoObject);
   }
   
+  @Override
+  protected void writeJson(JsonWriter writer) throws IOException
+  {
+    super.writeJson(writer);
+    
+    writeElement(writer, RegistryUrls.GEO_OBJECT_UPDATE_PARAM_GEOOBJECT, this.geoObject);
+  }
+  
   @Override
   protected void buildFromJson(JsonObject json)
   {
@@ -18,6 +18,7 @@
  */
 package org.commongeoregistry.adapter.action.tree;
 
+import java.io.IOException;
 import java.util.Date;
 
 import org.commongeoregistry.adapter.JsonDateUtil;
@@ -25,6 +26,7 @@ import org.commongeoregistry.adapter.action.AbstractActionDTO;
 import org.commongeoregistry.adapter.constants.RegistryUrls;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 public class RemoveChildActionDTO extends AbstractActionDTO
 {
@@ -61,6 +63,20 @@ public class RemoveChildActionDTO extends AbstractActionDTO
     json.addProperty(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_END_DATE, JsonDateUtil.format(endDate));
   }
 
+  @Override
+  protected void writeJson(JsonWriter writer) throws IOException
+  {
+    super.writeJson(writer);
+
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_CHILDCODE).value(this.childCode);
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_CHILD_TYPE_CODE).value(this.childTypeCode);
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_PARENTCODE).value(this.parentCode);
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_PARENT_TYPE_CODE).value(this.parentTypeCode);
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_HIERARCHY_CODE).value(this.hierarchyCode);
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_START_DATE).value(JsonDateUtil.format(startDate));
+    writer.name(RegistryUrls.GEO_OBJECT_REMOVE_CHILD_PARAM_END_DATE).value(JsonDateUtil.format(endDate));
+  }
+
   @Override
   protected void buildFromJson(JsonObject json)
   {
@@ -79,6 +79,11 @@ public class AttributeClassification extends Attribute
     this.label = label;
   }
 
+  public LocalizedValue getLabel()
+  {
+    return this.label;
+  }
+
   @Override
   public Object getValue()
   {
@@ -111,9 +116,12 @@ public class AttributeClassification extends Attribute
     else if (jValue.isJsonObject())
     {
       JsonObject object = jValue.getAsJsonObject();
-      String termCode = object.get("code").getAsString();
 
-      this.setCode(termCode);
+      // The code is omitted from the JSON when the classification is not set
+      if (object.has("code") && !object.get("code").isJsonNull())
+      {
+        this.setCode(object.get("code").getAsString());
+      }
 
       if (object.has("label"))
       {
@@ -0,0 +1,653 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.commongeoregistry.adapter.EpochDay;
+import org.commongeoregistry.adapter.RegistryAdapter;
+import org.commongeoregistry.adapter.metadata.CustomSerializer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Encodes the value of one kind of {@link Attribute} in the JSON and binary
+ * forms. Codecs are stateless and resolved once per attribute slot of a
+ * {@link SerializationPlan}, so the encoders do not need to dispatch on the
+ * class of each attribute.
+ * 
+ * Attribute kinds without a dedicated codec are encoded through
+ * {@link Attribute#toJSON(CustomSerializer)} and
+ * {@link Attribute#fromJSON(JsonElement, RegistryAdapter)}, which keeps the
+ * {@link CustomSerializer} hook in place.
+ */
+abstract class AttributeCodec
+{
+  /**
+   * Writes the attribute as the property with the given name of the current
+   * object. Attributes without a value are omitted.
+   */
+  public abstract void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException;
+
+  /**
+   * Reads the non-null value at the current position of the reader into the
+   * attribute.
+   */
+  public abstract void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException;
+
+  /**
+   * @return The value to write in the binary form, or null if the attribute is
+   *         omitted. The same attributes are omitted as in the JSON form.
+   */
+  public abstract Object prepare(Attribute attribute) throws IOException;
+
+  public abstract void write(DataOutputStream out, Attribute attribute, Object value) throws IOException;
+
+  public abstract void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException;
+
+  protected static void readTree(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+  {
+    attribute.fromJSON(new JsonParser().parse(in), registry);
+  }
+
+  protected static boolean isScalar(JsonToken token)
+  {
+    return token == JsonToken.STRING || token == JsonToken.NUMBER;
+  }
+
+  public static final AttributeCodec CHARACTER = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      Object value = attribute.getValue();
+
+      if (value != null)
+      {
+        out.name(name).value(value.toString());
+      }
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      if (isScalar(in.peek()))
+      {
+        attribute.setValue(in.nextString());
+      }
+      else
+      {
+        readTree(in, attribute, registry);
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      BinaryGeoObjectCodec.writeString(out, (String) value);
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      attribute.setValue(BinaryGeoObjectCodec.readString(in));
+    }
+  };
+
+  public static final AttributeCodec INTEGER = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      CHARACTER.write(out, name, attribute, serializer);
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      if (isScalar(in.peek()))
+      {
+        attribute.setValue(in.nextLong());
+      }
+      else
+      {
+        readTree(in, attribute, registry);
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      BinaryGeoObjectCodec.writeZigZag(out, (Long) value);
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      attribute.setValue(BinaryGeoObjectCodec.readZigZag(in));
+    }
+  };
+
+  public static final AttributeCodec FLOAT = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      CHARACTER.write(out, name, attribute, serializer);
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      if (isScalar(in.peek()))
+      {
+        attribute.setValue(in.nextDouble());
+      }
+      else
+      {
+        readTree(in, attribute, registry);
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      out.writeDouble((Double) value);
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      attribute.setValue(in.readDouble());
+    }
+  };
+
+  public static final AttributeCodec BOOLEAN = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      Boolean value = (Boolean) attribute.getValue();
+
+      if (value != null)
+      {
+        out.name(name).value(value.booleanValue());
+      }
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      JsonToken token = in.peek();
+
+      if (token == JsonToken.BOOLEAN)
+      {
+        attribute.setValue(in.nextBoolean());
+      }
+      else if (token == JsonToken.STRING)
+      {
+        attribute.setValue(Boolean.valueOf(in.nextString()));
+      }
+      else
+      {
+        readTree(in, attribute, registry);
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      out.writeBoolean((Boolean) value);
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      attribute.setValue(in.readBoolean());
+    }
+  };
+
+  public static final AttributeCodec DATE = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      Date value = (Date) attribute.getValue();
+
+      if (value != null)
+      {
+        out.name(name).value(value.getTime());
+      }
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      if (isScalar(in.peek()))
+      {
+        attribute.setValue(new Date(in.nextLong()));
+      }
+      else
+      {
+        readTree(in, attribute, registry);
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      long time = ( (Date) value ).getTime();
+
+      // The low bit distinguishes epoch days from epoch milliseconds
+      if (time % EpochDay.MILLIS_PER_DAY == 0)
+      {
+        BinaryGeoObjectCodec.writeZigZag(out, ( time / EpochDay.MILLIS_PER_DAY ) << 1);
+      }
+      else
+      {
+        BinaryGeoObjectCodec.writeZigZag(out, ( time << 1 ) | 1);
+      }
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      long value = BinaryGeoObjectCodec.readZigZag(in);
+
+      if ( ( value & 1 ) == 0)
+      {
+        attribute.setValue(EpochDay.toDate(value >> 1));
+      }
+      else
+      {
+        attribute.setValue(new Date(value >> 1));
+      }
+    }
+  };
+
+  public static final AttributeCodec TERM = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      out.name(name);
+      out.beginArray();
+
+      Iterator<String> codes = ( (AttributeTerm) attribute ).getValue();
+
+      while (codes.hasNext())
+      {
+        out.value(codes.next());
+      }
+
+      out.endArray();
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      AttributeTerm term = (AttributeTerm) attribute;
+      term.clearTerms();
+
+      JsonToken token = in.peek();
+
+      if (token == JsonToken.STRING)
+      {
+        term.addTerm(in.nextString());
+      }
+      else if (token == JsonToken.BEGIN_ARRAY)
+      {
+        in.beginArray();
+
+        while (in.hasNext())
+        {
+          if (in.peek() == JsonToken.NULL)
+          {
+            in.nextNull();
+          }
+          else
+          {
+            term.addTerm(in.nextString());
+          }
+        }
+
+        in.endArray();
+      }
+      else
+      {
+        in.skipValue();
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      List<String> codes = new ArrayList<String>();
+      Iterator<String> iterator = ( (AttributeTerm) attribute ).getValue();
+
+      while (iterator.hasNext())
+      {
+        codes.add(iterator.next());
+      }
+
+      return codes;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      List<String> codes = (List<String>) value;
+
+      BinaryGeoObjectCodec.writeVarLong(out, codes.size());
+
+      for (String code : codes)
+      {
+        BinaryGeoObjectCodec.writeNullableString(out, code);
+      }
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      AttributeTerm term = (AttributeTerm) attribute;
+      term.clearTerms();
+
+      long count = BinaryGeoObjectCodec.readVarLong(in);
+
+      for (long i = 0; i < count; i++)
+      {
+        String code = BinaryGeoObjectCodec.readNullableString(in);
+
+        if (code != null)
+        {
+          term.addTerm(code);
+        }
+      }
+    }
+  };
+
+  public static final AttributeCodec GEOMETRY = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      Geometry value = (Geometry) attribute.getValue();
+
+      if (value != null)
+      {
+        out.name(name);
+        GeoJsonGeometryAdapter.INSTANCE.write(out, value);
+      }
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      if (in.peek() == JsonToken.BEGIN_OBJECT)
+      {
+        attribute.setValue(GeoJsonGeometryAdapter.INSTANCE.read(in));
+      }
+      else
+      {
+        readTree(in, attribute, registry);
+      }
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      writeGeometry(out, (Geometry) value);
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      attribute.setValue(readGeometry(in, factory));
+    }
+  };
+
+  public static final AttributeCodec LOCAL = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      JSON.write(out, name, attribute, serializer);
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      readTree(in, attribute, registry);
+    }
+
+    @Override
+    public Object prepare(Attribute attribute)
+    {
+      return attribute.getValue();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      LocalizedValue localized = (LocalizedValue) value;
+
+      BinaryGeoObjectCodec.writeNullableString(out, localized.getValue());
+      BinaryGeoObjectCodec.writeVarLong(out, localized.getLocaleMap().size());
+
+      for (Entry<String, String> entry : localized.getLocaleMap().entrySet())
+      {
+        BinaryGeoObjectCodec.writeString(out, entry.getKey());
+        BinaryGeoObjectCodec.writeNullableString(out, entry.getValue());
+      }
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      String localizedValue = BinaryGeoObjectCodec.readNullableString(in);
+      Map<String, String> localeValues = new HashMap<String, String>();
+
+      long count = BinaryGeoObjectCodec.readVarLong(in);
+
+      for (long i = 0; i < count; i++)
+      {
+        String key = BinaryGeoObjectCodec.readString(in);
+
+        localeValues.put(key, BinaryGeoObjectCodec.readNullableString(in));
+      }
+
+      attribute.setValue(new LocalizedValue(localizedValue, localeValues));
+    }
+  };
+
+  public static final AttributeCodec JSON = new AttributeCodec()
+  {
+    @Override
+    public void write(JsonWriter out, String name, Attribute attribute, CustomSerializer serializer) throws IOException
+    {
+      JsonElement value = attribute.toJSON(serializer);
+
+      if (value != null && !value.isJsonNull())
+      {
+        out.name(name);
+        GeoObjectJsonAdapters.writeElement(out, value);
+      }
+    }
+
+    @Override
+    public void read(JsonReader in, Attribute attribute, RegistryAdapter registry) throws IOException
+    {
+      readTree(in, attribute, registry);
+    }
+
+    @Override
+    public Object prepare(Attribute attribute) throws IOException
+    {
+      JsonElement json = attribute.toJSON(GeoObjectJsonAdapters.DEFAULT_SERIALIZER);
+
+      if (json == null || json.isJsonNull())
+      {
+        return null;
+      }
+
+      StringWriter writer = new StringWriter();
+      GeoObjectJsonAdapters.writeElement(new JsonWriter(writer), json);
+
+      return writer.toString();
+    }
+
+    @Override
+    public void write(DataOutputStream out, Attribute attribute, Object value) throws IOException
+    {
+      BinaryGeoObjectCodec.writeString(out, (String) value);
+    }
+
+    @Override
+    public void read(DataInputStream in, Attribute attribute, RegistryAdapter registry, GeometryFactory factory) throws IOException
+    {
+      attribute.fromJSON(new JsonParser().parse(BinaryGeoObjectCodec.readString(in)), registry);
+    }
+  };
+
+  /**
+   * @return The codec for the class of the given attribute
+   */
+  public static AttributeCodec forAttribute(Attribute attribute)
+  {
+    Class<?> clazz = attribute.getClass();
+
+    if (clazz == AttributeCharacter.class)
+    {
+      return CHARACTER;
+    }
+    else if (clazz == AttributeInteger.class)
+    {
+      return INTEGER;
+    }
+    else if (clazz == AttributeFloat.class)
+    {
+      return FLOAT;
+    }
+    else if (clazz == AttributeBoolean.class)
+    {
+      return BOOLEAN;
+    }
+    else if (clazz == AttributeDate.class)
+    {
+      return DATE;
+    }
+    else if (clazz == AttributeTerm.class)
+    {
+      return TERM;
+    }
+    else if (clazz == AttributeGeometry.class)
+    {
+      return GEOMETRY;
+    }
+    else if (clazz == AttributeLocal.class)
+    {
+      return LOCAL;
+    }
+
+    return JSON;
+  }
+
+  static void writeGeometry(DataOutputStream out, Geometry geometry) throws IOException
+  {
+    Coordinate coordinate = geometry.getCoordinate();
+    int dimension = ( coordinate != null && !Double.isNaN(coordinate.z) ) ? 3 : 2;
+
+    byte[] bytes = new WKBWriter(dimension).write(geometry);
+
+    BinaryGeoObjectCodec.writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static Geometry readGeometry(DataInputStream in, GeometryFactory factory) throws IOException
+  {
+    byte[] bytes = new byte[(int) BinaryGeoObjectCodec.readVarLong(in)];
+    in.readFully(bytes);
+
+    try
+    {
+      return new WKBReader(factory).read(bytes);
+    }
+    catch (ParseException e)
+    {
+      throw new IOException(e);
+    }
+  }
+}
@@ -18,16 +18,16 @@
  */
 package org.commongeoregistry.adapter.dataaccess;
 
+import java.io.IOException;
+
 import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.constants.GeometryType;
 import org.commongeoregistry.adapter.metadata.AttributeGeometryType;
 import org.commongeoregistry.adapter.metadata.CustomSerializer;
-import org.wololo.jts2geojson.GeoJSONReader;
-import org.wololo.jts2geojson.GeoJSONWriter;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
@@ -91,10 +91,7 @@ public class AttributeGeometry extends Attribute
   
   public String getGeometryAsGeoJson()
   {
-    GeoJSONWriter gw = new GeoJSONWriter();
-    org.wololo.geojson.Geometry gJSON = gw.write(this.getValue());
-
-    return gJSON.toString();
+    return GeoJsonGeometryAdapter.INSTANCE.toJson(this.getValue());
   }
   
   public void setGeometryAsGeoJson(String geoJson)
@@ -105,10 +102,14 @@ public class AttributeGeometry extends Attribute
     }
     else
     {
-      GeoJSONReader reader = new GeoJSONReader();
-      Geometry jtsGeom = reader.read(geoJson);
-  
-      this.setValue(jtsGeom);
+      try
+      {
+        this.setValue(GeoJsonGeometryAdapter.INSTANCE.fromJson(geoJson));
+      }
+      catch (IOException e)
+      {
+        throw new JsonIOException(e);
+      }
     }
   }
   
@@ -117,12 +118,7 @@ public class AttributeGeometry extends Attribute
   {
     if (this.getValue() != null)
     {
-      String geoJson = this.getGeometryAsGeoJson();
-      
-      JsonParser parser = new JsonParser();
-      JsonObject geomObj = parser.parse(geoJson).getAsJsonObject();
-
-      return geomObj;
+      return GeoJsonGeometryAdapter.INSTANCE.toJsonTree(this.getValue()).getAsJsonObject();
     }
     
     return null;
@@ -137,7 +133,7 @@ public class AttributeGeometry extends Attribute
     }
     else
     {
-      this.setGeometryAsGeoJson(jValue.toString());
+      this.setValue(GeoJsonGeometryAdapter.INSTANCE.fromJsonTree(jValue));
     }
   }
 
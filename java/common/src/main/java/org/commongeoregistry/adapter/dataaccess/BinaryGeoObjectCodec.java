@@ -0,0 +1,560 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.commongeoregistry.adapter.RegistryAdapter;
+import org.commongeoregistry.adapter.constants.DefaultAttribute;
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Compact binary {@link GeoObjectCodec}. Instead of attribute names, each
+ * attribute is identified by its slot in the {@link SerializationPlan} of the
+ * {@link GeoObjectType}, and the header carries the fingerprint of the plan.
+ * 
+ * When the fingerprint differs from the one of the current plan of the type,
+ * the object was written before the attributes of the type changed. The slots
+ * are then resolved by the name, type and change over time flag they had in
+ * the plan the object was written with, which the codec remembers by
+ * fingerprint (see {@link #addSerializationPlan(SerializationPlan)}). Every
+ * value is prefixed with its length, so a reader skips the attributes that no
+ * longer exist or whose type has changed.
+ * 
+ * <pre>
+ * object      := MAGIC kind VERSION string(type code) int64(fingerprint) body
+ * GeoObject   := byte(flags) [bytes(WKB geometry)] attributes
+ * OverTime    := { varint(slot + 1) varint(length) varint(count) { vot } } varint(0) attributes
+ * vot         := byte(flags) [string(oid)] zigzag(start epoch day) zigzag(end epoch day) [value]
+ * attributes  := { varint(slot + 1) varint(length) value } varint(0)
+ * </pre>
+ * 
+ * Integers are written as unsigned LEB128 varints and signed values are zigzag
+ * encoded first. Dates without a time of day are written as epoch days.
+ * Geometries are written as WKB. Attribute types without a binary form are
+ * written as the text of their JSON value.
+ */
+public class BinaryGeoObjectCodec implements GeoObjectCodec
+{
+  public static final String   CONTENT_TYPE         = "application/vnd.cgr.geoobject";
+
+  private static final int     MAGIC                = 0xC6;
+
+  private static final int     VERSION              = 3;
+
+  private static final int     KIND_GEO_OBJECT      = 1;
+
+  private static final int     KIND_OVER_TIME       = 2;
+
+  private static final int     FLAG_GEOMETRY        = 1;
+
+  private static final int     FLAG_WRITABLE        = 2;
+
+  private static final int     FLAG_WRITABLE_TRUE   = 4;
+
+  private static final int     FLAG_OID             = 1;
+
+  private static final int     FLAG_VALUE           = 2;
+
+  private static final Charset UTF_8                = Charset.forName("UTF-8");
+
+  private RegistryAdapter      registry;
+
+  private GeometryFactory      factory;
+
+  /**
+   * Plans that objects were written with, by fingerprint
+   */
+  private Map<Long, SerializationPlan> plans;
+
+  public BinaryGeoObjectCodec(RegistryAdapter registry)
+  {
+    this(registry, new GeometryFactory());
+  }
+
+  public BinaryGeoObjectCodec(RegistryAdapter registry, GeometryFactory factory)
+  {
+    this.registry = registry;
+    this.factory = factory;
+    this.plans = new ConcurrentHashMap<Long, SerializationPlan>();
+  }
+
+  /**
+   * Makes the codec able to read objects written with the given plan after the
+   * attributes of its type have changed. The plans of the objects written by
+   * the codec are added automatically.
+   */
+  public void addSerializationPlan(SerializationPlan plan)
+  {
+    this.plans.put(plan.getFingerprint(), plan);
+  }
+
+  @Override
+  public String getContentType()
+  {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public void write(GeoObject geoObject, OutputStream stream) throws IOException
+  {
+    DataOutputStream out = new DataOutputStream(stream);
+    SerializationPlan plan = geoObject.getType().getSerializationPlan();
+
+    this.addSerializationPlan(plan);
+
+    writeHeader(out, KIND_GEO_OBJECT, plan);
+
+    geoObject.decodeAll();
+
+    Geometry geometry = geoObject.getGeometry();
+    Boolean writable = geoObject.getWritable();
+
+    int flags = 0;
+    flags |= ( geometry != null ? FLAG_GEOMETRY : 0 );
+    flags |= ( writable != null ? FLAG_WRITABLE : 0 );
+    flags |= ( writable != null && writable ? FLAG_WRITABLE_TRUE : 0 );
+
+    out.writeByte(flags);
+
+    if (geometry != null)
+    {
+      AttributeCodec.writeGeometry(out, geometry);
+    }
+
+    writeAttributes(out, new ByteArrayOutputStream(), geoObject.attributeMap, plan);
+
+    out.flush();
+  }
+
+  @Override
+  public void write(GeoObjectOverTime geoObject, OutputStream stream) throws IOException
+  {
+    DataOutputStream out = new DataOutputStream(stream);
+    SerializationPlan plan = geoObject.getType().getSerializationPlan();
+
+    this.addSerializationPlan(plan);
+
+    writeHeader(out, KIND_OVER_TIME, plan);
+
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream entry = new DataOutputStream(buffer);
+
+    for (int slot = 0; slot < plan.size(); slot++)
+    {
+      ValueOverTimeCollectionDTO votc = geoObject.votAttributeMap.get(plan.getName(slot));
+
+      if (votc == null)
+      {
+        continue;
+      }
+
+      AttributeCodec codec = plan.getCodec(slot);
+
+      writeVarLong(entry, votc.size());
+
+      for (ValueOverTimeDTO vot : votc)
+      {
+        Object value = codec.prepare(vot.getAttribute());
+
+        int flags = 0;
+        flags |= ( vot.getOid() != null ? FLAG_OID : 0 );
+        flags |= ( value != null ? FLAG_VALUE : 0 );
+
+        entry.writeByte(flags);
+
+        if (vot.getOid() != null)
+        {
+          writeString(entry, vot.getOid());
+        }
+
+        writeZigZag(entry, vot.getStartDay());
+        writeZigZag(entry, vot.getEndDay());
+
+        if (value != null)
+        {
+          codec.write(entry, vot.getAttribute(), value);
+        }
+      }
+
+      writeEntry(out, slot, entry, buffer);
+    }
+
+    writeVarLong(out, 0);
+
+    writeAttributes(out, buffer, geoObject.attributeMap, plan);
+
+    out.flush();
+  }
+
+  @Override
+  public GeoObject readGeoObject(InputStream stream) throws IOException
+  {
+    DataInputStream in = new DataInputStream(stream);
+    String code = readHeader(in, KIND_GEO_OBJECT);
+
+    GeoObject geoObject = this.registry.newGeoObjectInstance(code, false);
+    SerializationPlan plan = geoObject.getType().getSerializationPlan();
+    int[] slots = this.readSlots(in, plan, code);
+
+    int flags = in.readUnsignedByte();
+
+    if ( ( flags & FLAG_GEOMETRY ) != 0)
+    {
+      geoObject.setGeometry(AttributeCodec.readGeometry(in, this.factory));
+    }
+
+    if ( ( flags & FLAG_WRITABLE ) != 0)
+    {
+      geoObject.setWritable( ( flags & FLAG_WRITABLE_TRUE ) != 0);
+    }
+
+    if (!this.readAttributes(in, geoObject.attributeMap, plan, slots))
+    {
+      geoObject.setUid(this.registry.getIdService().next());
+    }
+
+    return geoObject;
+  }
+
+  @Override
+  public GeoObjectOverTime readGeoObjectOverTime(InputStream stream) throws IOException
+  {
+    DataInputStream in = new DataInputStream(stream);
+    String code = readHeader(in, KIND_OVER_TIME);
+
+    GeoObjectOverTime geoObject = this.registry.newGeoObjectOverTimeInstance(code, false);
+    SerializationPlan plan = geoObject.getType().getSerializationPlan();
+    int[] slots = this.readSlots(in, plan, code);
+
+    for (ValueOverTimeCollectionDTO votc : geoObject.votAttributeMap.values())
+    {
+      votc.clear();
+    }
+
+    long key;
+
+    while ( ( key = readVarLong(in) ) != 0)
+    {
+      long length = readVarLong(in);
+      int slot = getSlot(slots, plan, key);
+
+      if (slot == -1)
+      {
+        skipFully(in, length);
+
+        continue;
+      }
+
+      ValueOverTimeCollectionDTO votc = geoObject.votAttributeMap.get(plan.getName(slot));
+
+      if (votc == null)
+      {
+        throw new IOException("The attribute [" + plan.getName(slot) + "] does not change over time");
+      }
+
+      AttributeCodec codec = plan.getCodec(slot);
+      long count = readVarLong(in);
+
+      for (long i = 0; i < count; i++)
+      {
+        int flags = in.readUnsignedByte();
+        String oid = ( flags & FLAG_OID ) != 0 ? readString(in) : null;
+        long startDay = readZigZag(in);
+        long endDay = readZigZag(in);
+
+        ValueOverTimeDTO vot = new ValueOverTimeDTO(oid, startDay, endDay, votc);
+
+        if ( ( flags & FLAG_VALUE ) != 0)
+        {
+          codec.read(in, vot.getAttribute(), this.registry, this.factory);
+        }
+
+        votc.add(vot);
+      }
+    }
+
+    if (!this.readAttributes(in, geoObject.attributeMap, plan, slots))
+    {
+      geoObject.setUid(this.registry.getIdService().next());
+    }
+
+    return geoObject;
+  }
+
+  private static void writeHeader(DataOutputStream out, int kind, SerializationPlan plan) throws IOException
+  {
+    out.writeByte(MAGIC);
+    out.writeByte(kind);
+    out.writeByte(VERSION);
+    writeString(out, plan.getType().getCode());
+    out.writeLong(plan.getFingerprint());
+  }
+
+  /**
+   * Reads the fingerprint of the plan the object was written with
+   * 
+   * @return The slot of the given plan for each slot of the plan the object
+   *         was written with, or null if the object was written with the
+   *         given plan
+   */
+  private int[] readSlots(DataInputStream in, SerializationPlan plan, String code) throws IOException
+  {
+    long fingerprint = in.readLong();
+
+    if (fingerprint == plan.getFingerprint())
+    {
+      return null;
+    }
+
+    SerializationPlan written = this.plans.get(fingerprint);
+
+    if (written == null)
+    {
+      throw new IOException("The object was written with an unknown version of the type [" + code + "]");
+    }
+
+    return plan.getSlots(written);
+  }
+
+  /**
+   * @return The slot of the plan for the key read from the stream, or -1 if the
+   *         attribute is not part of the plan
+   */
+  private static int getSlot(int[] slots, SerializationPlan plan, long key) throws IOException
+  {
+    if (key > ( slots != null ? slots.length : plan.size() ))
+    {
+      throw new IOException("Unknown attribute slot [" + ( key - 1 ) + "]");
+    }
+
+    return slots != null ? slots[(int) ( key - 1 )] : (int) ( key - 1 );
+  }
+
+  private static String readHeader(DataInputStream in, int kind) throws IOException
+  {
+    if (in.readUnsignedByte() != MAGIC || in.readUnsignedByte() != kind)
+    {
+      throw new IOException("The stream does not contain a binary encoded " + ( kind == KIND_GEO_OBJECT ? "GeoObject" : "GeoObjectOverTime" ));
+    }
+
+    int version = in.readUnsignedByte();
+
+    if (version != VERSION)
+    {
+      throw new IOException("Unsupported binary GeoObject version [" + version + "]");
+    }
+
+    return readString(in);
+  }
+
+  /**
+   * Writes the slot followed by the length and the content of the buffered
+   * value, and clears the buffer
+   */
+  private static void writeEntry(DataOutputStream out, int slot, DataOutputStream entry, ByteArrayOutputStream buffer) throws IOException
+  {
+    entry.flush();
+
+    writeVarLong(out, slot + 1);
+    writeVarLong(out, buffer.size());
+    buffer.writeTo(out);
+    buffer.reset();
+  }
+
+  private static void skipFully(DataInputStream in, long length) throws IOException
+  {
+    while (length > 0)
+    {
+      int skipped = in.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+
+      if (skipped <= 0)
+      {
+        // skipBytes returns 0 at the end of the stream as well as when the
+        // stream cannot skip, so fall back to reading a byte
+        in.readByte();
+        skipped = 1;
+      }
+
+      length -= skipped;
+    }
+  }
+
+  private static void writeAttributes(DataOutputStream out, ByteArrayOutputStream buffer, Map<String, Attribute> attributes, SerializationPlan plan) throws IOException
+  {
+    DataOutputStream entry = new DataOutputStream(buffer);
+
+    for (int slot = 0; slot < plan.size(); slot++)
+    {
+      Attribute attribute = SlotAttributeMap.peek(attributes, plan.getName(slot));
+
+      if (attribute != null)
+      {
+        AttributeCodec codec = plan.getCodec(slot);
+        Object value = codec.prepare(attribute);
+
+        if (value != null)
+        {
+          codec.write(entry, attribute, value);
+
+          writeEntry(out, slot, entry, buffer);
+        }
+      }
+    }
+
+    writeVarLong(out, 0);
+  }
+
+  /**
+   * @return true if the uid attribute was read
+   */
+  private boolean readAttributes(DataInputStream in, Map<String, Attribute> attributes, SerializationPlan plan, int[] slots) throws IOException
+  {
+    boolean hasUid = false;
+    long key;
+
+    while ( ( key = readVarLong(in) ) != 0)
+    {
+      long length = readVarLong(in);
+      int slot = getSlot(slots, plan, key);
+
+      if (slot == -1)
+      {
+        skipFully(in, length);
+
+        continue;
+      }
+
+      String name = plan.getName(slot);
+      Attribute attribute = attributes.get(name);
+
+      if (attribute == null)
+      {
+        throw new IOException("The attribute [" + name + "] changes over time");
+      }
+
+      plan.getCodec(slot).read(in, attribute, this.registry, this.factory);
+
+      hasUid = hasUid || name.equals(DefaultAttribute.UID.getName());
+    }
+
+    return hasUid;
+  }
+
+  static void writeVarLong(DataOutputStream out, long value) throws IOException
+  {
+    while ( ( value & ~0x7FL ) != 0)
+    {
+      out.writeByte((int) ( ( value & 0x7F ) | 0x80 ));
+      value >>>= 7;
+    }
+
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(DataInputStream in) throws IOException
+  {
+    long value = 0;
+
+    for (int shift = 0; shift < 64; shift += 7)
+    {
+      int b = in.readUnsignedByte();
+      value |= (long) ( b & 0x7F ) << shift;
+
+      if ( ( b & 0x80 ) == 0)
+      {
+        return value;
+      }
+    }
+
+    throw new IOException("Malformed varint");
+  }
+
+  static void writeZigZag(DataOutputStream out, long value) throws IOException
+  {
+    writeVarLong(out, ( value << 1 ) ^ ( value >> 63 ));
+  }
+
+  static long readZigZag(DataInputStream in) throws IOException
+  {
+    long value = readVarLong(in);
+
+    return ( value >>> 1 ) ^ -( value & 1 );
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException
+  {
+    byte[] bytes = value.getBytes(UTF_8);
+
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException
+  {
+    byte[] bytes = new byte[(int) readVarLong(in)];
+    in.readFully(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Writes the length plus one so that zero can represent null
+   */
+  static void writeNullableString(DataOutputStream out, String value) throws IOException
+  {
+    if (value == null)
+    {
+      writeVarLong(out, 0);
+    }
+    else
+    {
+      byte[] bytes = value.getBytes(UTF_8);
+
+      writeVarLong(out, bytes.length + 1);
+      out.write(bytes);
+    }
+  }
+
+  static String readNullableString(DataInputStream in) throws IOException
+  {
+    long length = readVarLong(in);
+
+    if (length == 0)
+    {
+      return null;
+    }
+
+    byte[] bytes = new byte[(int) ( length - 1 )];
+    in.readFully(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+}
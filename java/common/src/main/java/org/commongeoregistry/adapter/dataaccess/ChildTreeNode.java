@@ -18,6 +18,8 @@
  */
 package org.commongeoregistry.adapter.dataaccess;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,8 +28,11 @@ import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.metadata.HierarchyType;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 /**
  * This object is used to model a tree of {@link GeoObject}s representing children relationships 
@@ -114,33 +119,52 @@ public class ChildTreeNode extends TreeNode
    */
   public static ChildTreeNode fromJSON(String sJson, RegistryAdapter registry)
   {
-    JsonParser parser = new JsonParser();
-    
-    JsonObject oJson = parser.parse(sJson).getAsJsonObject();
-    
-    GeoObject geoObj = GeoObject.fromJSON(registry, oJson.get(JSON_GEO_OBJECT).getAsJsonObject().toString());
-    
-    HierarchyType hierarchyType = null;
-    if (oJson.has(JSON_HIERARCHY_TYPE))
+    JsonReader reader = new JsonReader(new StringReader(sJson));
+    reader.setLenient(true);
+
+    try
     {
-      hierarchyType = registry.getMetadataCache().getHierachyType(oJson.get(JSON_HIERARCHY_TYPE).getAsString()).get();
+      return fromJSON(reader, registry);
     }
-    
-    ChildTreeNode tn = new ChildTreeNode(geoObj, hierarchyType);
-    
-    if (oJson.has(JSON_CHILDREN))
+    catch (MalformedJsonException e)
     {
-      JsonArray jaChildren = oJson.get(JSON_CHILDREN).getAsJsonArray();
-      for (int i = 0; i < jaChildren.size(); ++i)
-      {
-        JsonObject joChild = jaChildren.get(i).getAsJsonObject();
-        
-        ChildTreeNode tnChild = ChildTreeNode.fromJSON(joChild.toString(), registry);
-        
-        tn.addChild(tnChild);
-      }
+      throw new JsonSyntaxException(e);
     }
-    
-    return tn;
+    catch (IOException e)
+    {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * Constructs a {@link ChildTreeNode} from the given reader. The tree is read in a
+   * single pass, one {@link GeoObject} at a time, which allows large trees to
+   * be decoded directly from a response stream.
+   * 
+   * @param reader
+   * @param registry Adapter class containing cached metadata.
+   * @return
+   * @throws IOException
+   */
+  public static ChildTreeNode fromJSON(JsonReader reader, RegistryAdapter registry) throws IOException
+  {
+    return new TreeNodeJsonAdapters.ChildTreeNodeAdapter(registry).read(reader);
+  }
+
+  /**
+   * Constructs a {@link ChildTreeNode} from the given reader. When lazy is true the
+   * {@link GeoObject} of every node keeps its raw JSON and decodes its
+   * attributes on first access, see
+   * {@link GeoObject#fromJSON(RegistryAdapter, String, boolean)}.
+   * 
+   * @param reader
+   * @param registry Adapter class containing cached metadata.
+   * @param lazy
+   * @return
+   * @throws IOException
+   */
+  public static ChildTreeNode fromJSON(JsonReader reader, RegistryAdapter registry, boolean lazy) throws IOException
+  {
+    return new TreeNodeJsonAdapters.ChildTreeNodeAdapter(registry, lazy).read(reader);
   }
 }
@@ -0,0 +1,525 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Reads and writes JTS {@link Geometry} objects as GeoJSON geometries
+ * (https://tools.ietf.org/html/rfc7946#section-3.1). Coordinates are written
+ * from the {@link CoordinateSequence} of the geometry straight to the
+ * {@link JsonWriter}, and read from the {@link JsonReader} straight into the
+ * {@link CoordinateSequence} of the new geometry, so no intermediate GeoJSON
+ * string or tree is built.
+ * 
+ * The adapter is stateless and may be shared between threads.
+ */
+public class GeoJsonGeometryAdapter extends TypeAdapter<Geometry>
+{
+  public static final String                 JSON_TYPE        = "type";
+
+  public static final String                 JSON_COORDINATES = "coordinates";
+
+  public static final String                 JSON_GEOMETRIES  = "geometries";
+
+  /**
+   * Shared instance which creates geometries with a default
+   * {@link GeometryFactory}.
+   */
+  public static final GeoJsonGeometryAdapter INSTANCE         = new GeoJsonGeometryAdapter(new GeometryFactory());
+
+  private GeometryFactory                    factory;
+
+  public GeoJsonGeometryAdapter(GeometryFactory factory)
+  {
+    this.factory = factory;
+  }
+
+  @Override
+  public void write(JsonWriter out, Geometry geometry) throws IOException
+  {
+    if (geometry == null)
+    {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    out.name(JSON_TYPE).value(getType(geometry));
+
+    if (isCollection(geometry))
+    {
+      out.name(JSON_GEOMETRIES);
+      out.beginArray();
+
+      for (int i = 0; i < geometry.getNumGeometries(); i++)
+      {
+        this.write(out, geometry.getGeometryN(i));
+      }
+
+      out.endArray();
+    }
+    else
+    {
+      out.name(JSON_COORDINATES);
+      writeCoordinates(out, geometry);
+    }
+
+    out.endObject();
+  }
+
+  private static void writeCoordinates(JsonWriter out, Geometry geometry) throws IOException
+  {
+    if (geometry instanceof Point)
+    {
+      CoordinateSequence sequence = ( (Point) geometry ).getCoordinateSequence();
+
+      if (sequence.size() > 0)
+      {
+        writePosition(out, sequence, 0);
+      }
+      else
+      {
+        out.beginArray();
+        out.endArray();
+      }
+    }
+    else if (geometry instanceof LineString)
+    {
+      writeSequence(out, ( (LineString) geometry ).getCoordinateSequence());
+    }
+    else if (geometry instanceof Polygon)
+    {
+      Polygon polygon = (Polygon) geometry;
+
+      out.beginArray();
+
+      writeSequence(out, polygon.getExteriorRing().getCoordinateSequence());
+
+      for (int i = 0; i < polygon.getNumInteriorRing(); i++)
+      {
+        writeSequence(out, polygon.getInteriorRingN(i).getCoordinateSequence());
+      }
+
+      out.endArray();
+    }
+    else
+    {
+      out.beginArray();
+
+      for (int i = 0; i < geometry.getNumGeometries(); i++)
+      {
+        writeCoordinates(out, geometry.getGeometryN(i));
+      }
+
+      out.endArray();
+    }
+  }
+
+  private static void writeSequence(JsonWriter out, CoordinateSequence sequence) throws IOException
+  {
+    out.beginArray();
+
+    for (int i = 0; i < sequence.size(); i++)
+    {
+      writePosition(out, sequence, i);
+    }
+
+    out.endArray();
+  }
+
+  private static void writePosition(JsonWriter out, CoordinateSequence sequence, int index) throws IOException
+  {
+    out.beginArray();
+    out.value(sequence.getX(index));
+    out.value(sequence.getY(index));
+
+    if (sequence.getDimension() > 2)
+    {
+      double z = sequence.getOrdinate(index, CoordinateSequence.Z);
+
+      if (!Double.isNaN(z))
+      {
+        out.value(z);
+      }
+    }
+
+    out.endArray();
+  }
+
+  private static String getType(Geometry geometry)
+  {
+    if (geometry instanceof LinearRing)
+    {
+      // GeoJSON has no ring type
+      return "LineString";
+    }
+
+    return geometry.getGeometryType();
+  }
+
+  private static boolean isCollection(Geometry geometry)
+  {
+    return ( geometry instanceof GeometryCollection ) && ! ( geometry instanceof MultiPoint || geometry instanceof MultiLineString || geometry instanceof MultiPolygon );
+  }
+
+  @Override
+  public Geometry read(JsonReader in) throws IOException
+  {
+    if (in.peek() == JsonToken.NULL)
+    {
+      in.nextNull();
+      return null;
+    }
+
+    String type = null;
+    Object coordinates = null;
+    List<Geometry> geometries = null;
+
+    in.beginObject();
+
+    while (in.hasNext())
+    {
+      String name = in.nextName();
+
+      if (in.peek() == JsonToken.NULL)
+      {
+        in.nextNull();
+      }
+      else if (name.equals(JSON_TYPE))
+      {
+        type = in.nextString();
+      }
+      else if (name.equals(JSON_COORDINATES))
+      {
+        coordinates = readArray(in);
+      }
+      else if (name.equals(JSON_GEOMETRIES))
+      {
+        geometries = new ArrayList<Geometry>();
+
+        in.beginArray();
+
+        while (in.hasNext())
+        {
+          geometries.add(this.read(in));
+        }
+
+        in.endArray();
+      }
+      else
+      {
+        in.skipValue();
+      }
+    }
+
+    in.endObject();
+
+    if (type == null)
+    {
+      throw new JsonSyntaxException("The GeoJSON geometry is missing its [" + JSON_TYPE + "]");
+    }
+
+    return this.build(type, coordinates, geometries);
+  }
+
+  /**
+   * Builds the geometry once both the type and the coordinates are known. The
+   * members of a GeoJSON object may appear in any order, so the coordinates are
+   * read without knowing the type: runs of positions are collected into an
+   * {@link OrdinateBuffer}, a single position is a double[], and every other
+   * level of nesting is a {@link List}.
+   */
+  private Geometry build(String type, Object coordinates, List<Geometry> geometries)
+  {
+    if (type.equals("Point"))
+    {
+      if (coordinates instanceof double[])
+      {
+        OrdinateBuffer buffer = new OrdinateBuffer();
+        buffer.add((double[]) coordinates);
+
+        return this.factory.createPoint(buffer.toSequence(this.factory));
+      }
+
+      return this.factory.createPoint(this.toSequence(coordinates));
+    }
+    else if (type.equals("LineString"))
+    {
+      return this.factory.createLineString(this.toSequence(coordinates));
+    }
+    else if (type.equals("Polygon"))
+    {
+      return this.toPolygon(coordinates);
+    }
+    else if (type.equals("MultiPoint"))
+    {
+      return this.factory.createMultiPoint(this.toSequence(coordinates));
+    }
+    else if (type.equals("MultiLineString"))
+    {
+      List<Object> lines = toList(coordinates);
+      LineString[] lineStrings = new LineString[lines.size()];
+
+      for (int i = 0; i < lineStrings.length; i++)
+      {
+        lineStrings[i] = this.factory.createLineString(this.toSequence(lines.get(i)));
+      }
+
+      return this.factory.createMultiLineString(lineStrings);
+    }
+    else if (type.equals("MultiPolygon"))
+    {
+      List<Object> polygons = toList(coordinates);
+      Polygon[] result = new Polygon[polygons.size()];
+
+      for (int i = 0; i < result.length; i++)
+      {
+        result[i] = this.toPolygon(polygons.get(i));
+      }
+
+      return this.factory.createMultiPolygon(result);
+    }
+    else if (type.equals("GeometryCollection"))
+    {
+      if (geometries == null)
+      {
+        geometries = new ArrayList<Geometry>(0);
+      }
+
+      return this.factory.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
+    }
+
+    throw new JsonSyntaxException("Unsupported GeoJSON geometry type [" + type + "]");
+  }
+
+  private Polygon toPolygon(Object coordinates)
+  {
+    List<Object> rings = toList(coordinates);
+
+    if (rings.isEmpty())
+    {
+      return this.factory.createPolygon(null, null);
+    }
+
+    LinearRing shell = this.factory.createLinearRing(this.toSequence(rings.get(0)));
+    LinearRing[] holes = new LinearRing[rings.size() - 1];
+
+    for (int i = 0; i < holes.length; i++)
+    {
+      holes[i] = this.factory.createLinearRing(this.toSequence(rings.get(i + 1)));
+    }
+
+    return this.factory.createPolygon(shell, holes);
+  }
+
+  private CoordinateSequence toSequence(Object coordinates)
+  {
+    if (coordinates instanceof OrdinateBuffer)
+    {
+      return ( (OrdinateBuffer) coordinates ).toSequence(this.factory);
+    }
+    else if (coordinates == null || ( coordinates instanceof List && ( (List<?>) coordinates ).isEmpty() ))
+    {
+      return new OrdinateBuffer().toSequence(this.factory);
+    }
+
+    throw new JsonSyntaxException("Expected an array of GeoJSON positions");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> toList(Object coordinates)
+  {
+    if (coordinates == null)
+    {
+      return new ArrayList<Object>(0);
+    }
+    else if (coordinates instanceof List)
+    {
+      return (List<Object>) coordinates;
+    }
+
+    throw new JsonSyntaxException("Expected a nested array of GeoJSON positions");
+  }
+
+  private static Object readArray(JsonReader in) throws IOException
+  {
+    Object result;
+
+    in.beginArray();
+
+    if (!in.hasNext())
+    {
+      result = new ArrayList<Object>(0);
+    }
+    else if (in.peek() == JsonToken.NUMBER)
+    {
+      double[] position = new double[] { in.nextDouble(), in.nextDouble(), Double.NaN };
+
+      if (in.hasNext())
+      {
+        position[2] = in.nextDouble();
+      }
+
+      while (in.hasNext())
+      {
+        in.skipValue();
+      }
+
+      result = position;
+    }
+    else
+    {
+      Object first = readArray(in);
+
+      if (first instanceof double[])
+      {
+        // The remaining positions are read straight into the buffer
+        OrdinateBuffer buffer = new OrdinateBuffer();
+        buffer.add((double[]) first);
+
+        while (in.hasNext())
+        {
+          buffer.read(in);
+        }
+
+        result = buffer;
+      }
+      else
+      {
+        List<Object> list = new ArrayList<Object>();
+        list.add(first);
+
+        while (in.hasNext())
+        {
+          list.add(readArray(in));
+        }
+
+        result = list;
+      }
+    }
+
+    in.endArray();
+
+    return result;
+  }
+
+  /**
+   * Growable buffer of x, y, z ordinates
+   */
+  private static class OrdinateBuffer
+  {
+    private double[] ordinates = new double[3 * 16];
+
+    private int      size      = 0;
+
+    private int      dimension = 2;
+
+    public void add(double[] position)
+    {
+      this.add(position[0], position[1], position[2]);
+    }
+
+    public void read(JsonReader in) throws IOException
+    {
+      in.beginArray();
+
+      double x = in.nextDouble();
+      double y = in.nextDouble();
+      double z = Double.NaN;
+
+      if (in.hasNext())
+      {
+        z = in.nextDouble();
+      }
+
+      while (in.hasNext())
+      {
+        in.skipValue();
+      }
+
+      in.endArray();
+
+      this.add(x, y, z);
+    }
+
+    private void add(double x, double y, double z)
+    {
+      if (3 * this.size == this.ordinates.length)
+      {
+        double[] grown = new double[this.ordinates.length * 2];
+        System.arraycopy(this.ordinates, 0, grown, 0, this.ordinates.length);
+
+        this.ordinates = grown;
+      }
+
+      int offset = 3 * this.size;
+
+      this.ordinates[offset] = x;
+      this.ordinates[offset + 1] = y;
+      this.ordinates[offset + 2] = z;
+
+      if (!Double.isNaN(z))
+      {
+        this.dimension = 3;
+      }
+
+      this.size++;
+    }
+
+    public CoordinateSequence toSequence(GeometryFactory factory)
+    {
+      CoordinateSequence sequence = factory.getCoordinateSequenceFactory().create(this.size, this.dimension);
+
+      for (int i = 0; i < this.size; i++)
+      {
+        int offset = 3 * i;
+
+        sequence.setOrdinate(i, CoordinateSequence.X, this.ordinates[offset]);
+        sequence.setOrdinate(i, CoordinateSequence.Y, this.ordinates[offset + 1]);
+
+        if (this.dimension > 2)
+        {
+          sequence.setOrdinate(i, CoordinateSequence.Z, this.ordinates[offset + 2]);
+        }
+      }
+
+      return sequence;
+    }
+  }
+}
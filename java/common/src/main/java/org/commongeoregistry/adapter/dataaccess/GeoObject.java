@@ -18,26 +18,27 @@
  */
 package org.commongeoregistry.adapter.dataaccess;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.commongeoregistry.adapter.Optional;
 import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.Term;
 import org.commongeoregistry.adapter.constants.DefaultAttribute;
 import org.commongeoregistry.adapter.constants.GeometryType;
-import org.commongeoregistry.adapter.metadata.AttributeGeometryType;
 import org.commongeoregistry.adapter.metadata.AttributeTermType;
 import org.commongeoregistry.adapter.metadata.AttributeType;
 import org.commongeoregistry.adapter.metadata.CustomSerializer;
-import org.commongeoregistry.adapter.metadata.DefaultSerializer;
 import org.commongeoregistry.adapter.metadata.GeoObjectType;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
@@ -65,6 +66,12 @@ public class GeoObject implements Serializable
 
   Map<String, Attribute>     attributeMap;
 
+  /**
+   * Raw JSON of the attributes which have not been decoded yet, or null when
+   * the GeoObject was not read lazily.
+   */
+  transient GeoObjectSource  source;
+
   /**
    * Use the factory method on the {@link RegistryAdapter} to create new
    * instances of a {@link GeoObject}
@@ -97,23 +104,9 @@ public class GeoObject implements Serializable
    */
   public static Map<String, Attribute> buildAttributeMap(GeoObjectType geoObjectType)
   {
-    Map<String, AttributeType> attributeTypeMap = geoObjectType.getAttributeMap();
-
-    Map<String, Attribute> attributeMap = new ConcurrentHashMap<String, Attribute>();
-
-    for (AttributeType attributeType : attributeTypeMap.values())
-    {
-      if (attributeType instanceof AttributeGeometryType)
-      {
-        continue;
-      }
-
-      Attribute attribute = Attribute.attributeFactory(attributeType);
-
-      attributeMap.put(attribute.getName(), attribute);
-    }
+    SerializationPlan plan = geoObjectType.getSerializationPlan();
 
-    return attributeMap;
+    return new SlotAttributeMap(plan, plan.getGeoObjectSlots());
   }
 
   /**
@@ -145,6 +138,11 @@ public class GeoObject implements Serializable
    */
   public Geometry getGeometry()
   {
+    if (this.source != null && this.source.isGeometryPending())
+    {
+      this.geometry = this.source.decodeGeometry();
+    }
+
     return this.geometry;
   }
 
@@ -155,6 +153,11 @@ public class GeoObject implements Serializable
    */
   public void setGeometry(Geometry geometry)
   {
+    if (this.source != null)
+    {
+      this.source.dropGeometry();
+    }
+
     this.geometry = geometry;
   }
   
@@ -202,7 +205,7 @@ public class GeoObject implements Serializable
    */
   public Object getValue(String attributeName)
   {
-    return this.attributeMap.get(attributeName).getValue();
+    return this.attribute(attributeName).getValue();
   }
 
   /**
@@ -213,7 +216,7 @@ public class GeoObject implements Serializable
    */
   public void setValue(String attributeName, Object _value)
   {
-    Attribute attribute = this.attributeMap.get(attributeName);
+    Attribute attribute = this.modify(attributeName);
 
     Optional<AttributeType> optional = this.getType().getAttribute(attributeName);
 
@@ -237,9 +240,50 @@ public class GeoObject implements Serializable
    */
   public Attribute getAttribute(String attributeName)
   {
+    return this.modify(attributeName);
+  }
+
+  /**
+   * Returns the attribute, decoding its value first if the GeoObject was read
+   * lazily.
+   */
+  private Attribute attribute(String attributeName)
+  {
+    if (this.source != null)
+    {
+      this.source.decode(this.attributeMap, attributeName);
+    }
+
     return this.attributeMap.get(attributeName);
   }
 
+  /**
+   * Returns the attribute for a change of its value. If the GeoObject was read
+   * lazily the raw JSON of the attribute is no longer written out.
+   */
+  private Attribute modify(String attributeName)
+  {
+    if (this.source != null)
+    {
+      this.source.modify(this.attributeMap, attributeName);
+    }
+
+    return this.attributeMap.get(attributeName);
+  }
+
+  /**
+   * Decodes every attribute and the geometry of a lazily read GeoObject.
+   */
+  void decodeAll()
+  {
+    if (this.source != null)
+    {
+      this.source.decodeAll(this.attributeMap);
+
+      this.getGeometry();
+    }
+  }
+
   /**
    * Returns the create date of this {@link GeoObject}
    * 
@@ -247,7 +291,7 @@ public class GeoObject implements Serializable
    */
   public Date getCreateDate()
   {
-    return (Date) this.attributeMap.get(DefaultAttribute.CREATE_DATE.getName()).getValue();
+    return (Date) this.attribute(DefaultAttribute.CREATE_DATE.getName()).getValue();
   }
 
   /**
@@ -257,7 +301,7 @@ public class GeoObject implements Serializable
    */
   public Date getLastUpdateDate()
   {
-    return (Date) this.attributeMap.get(DefaultAttribute.LAST_UPDATE_DATE.getName()).getValue();
+    return (Date) this.attribute(DefaultAttribute.LAST_UPDATE_DATE.getName()).getValue();
   }
 
   /**
@@ -267,7 +311,7 @@ public class GeoObject implements Serializable
    */
   public void setCode(String code)
   {
-    this.attributeMap.get(CODE).setValue(code);
+    this.modify(CODE).setValue(code);
   }
 
   /**
@@ -277,7 +321,7 @@ public class GeoObject implements Serializable
    */
   public String getCode()
   {
-    return (String) this.attributeMap.get(CODE).getValue();
+    return (String) this.attribute(CODE).getValue();
   }
   
   /**
@@ -287,7 +331,7 @@ public class GeoObject implements Serializable
    */
   public void setInvalid(Boolean invalid)
   {
-    this.attributeMap.get(INVALID).setValue(invalid);
+    this.modify(INVALID).setValue(invalid);
   }
 
   /**
@@ -297,7 +341,7 @@ public class GeoObject implements Serializable
    */
   public Boolean getInvalid()
   {
-    return (Boolean) this.attributeMap.get(INVALID).getValue();
+    return (Boolean) this.attribute(INVALID).getValue();
   }
 
   /**
@@ -307,7 +351,7 @@ public class GeoObject implements Serializable
    */
   public void setUid(String uid)
   {
-    this.attributeMap.get(UID).setValue(uid);
+    this.modify(UID).setValue(uid);
   }
 
   /**
@@ -317,7 +361,7 @@ public class GeoObject implements Serializable
    */
   public String getUid()
   {
-    return (String) this.attributeMap.get(UID).getValue();
+    return (String) this.attribute(UID).getValue();
   }
 
   /**
@@ -339,7 +383,7 @@ public class GeoObject implements Serializable
    */
   public LocalizedValue getDisplayLabel()
   {
-    AttributeLocal attribute = (AttributeLocal) this.attributeMap.get(DISPLAY_LABEL);
+    AttributeLocal attribute = (AttributeLocal) this.attribute(DISPLAY_LABEL);
     LocalizedValue value = (LocalizedValue) attribute.getValue();
 
     return value;
@@ -347,13 +391,13 @@ public class GeoObject implements Serializable
 
   public void setDisplayLabel(LocalizedValue _displayLabel)
   {
-    AttributeLocal attribute = (AttributeLocal) this.attributeMap.get(DISPLAY_LABEL);
+    AttributeLocal attribute = (AttributeLocal) this.modify(DISPLAY_LABEL);
     attribute.setValue(_displayLabel);
   }
 
   public void setDisplayLabel(String _key, String _displayLabel)
   {
-    AttributeLocal attribute = (AttributeLocal) this.attributeMap.get(DISPLAY_LABEL);
+    AttributeLocal attribute = (AttributeLocal) this.modify(DISPLAY_LABEL);
     attribute.setValue(_key, _displayLabel);
   }
 
@@ -364,7 +408,7 @@ public class GeoObject implements Serializable
    */
   public Boolean getExists()
   {
-    return (Boolean) this.getAttribute(DefaultAttribute.EXISTS.getName()).getValue();
+    return (Boolean) this.attribute(DefaultAttribute.EXISTS.getName()).getValue();
   }
 
   /**
@@ -390,27 +434,74 @@ public class GeoObject implements Serializable
    */
   public static GeoObject fromJSON(RegistryAdapter registry, String sJson)
   {
-    GsonBuilder builder = new GsonBuilder();
-    builder.registerTypeAdapter(GeoObject.class, new GeoObjectJsonAdapters.GeoObjectDeserializer(registry));
+    return GeoObjectJsonAdapters.fromJson(new GeoObjectJsonAdapters.GeoObjectTypeAdapter(registry), sJson);
+  }
 
-    return builder.create().fromJson(sJson, GeoObject.class);
+  /**
+   * Reads a {@link GeoObject} from the current position of the given reader.
+   * Only the JSON of this {@link GeoObject} is consumed from the reader.
+   * 
+   * @param registry
+   * @param reader
+   * 
+   * @return {@link GeoObject} from the given JSON.
+   */
+  public static GeoObject fromJSON(RegistryAdapter registry, JsonReader reader)
+  {
+    try
+    {
+      return new GeoObjectJsonAdapters.GeoObjectTypeAdapter(registry).read(reader);
+    }
+    catch (IOException e)
+    {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * Reads a {@link GeoObject} from the given JSON. When lazy is true the
+   * attributes and the geometry are kept as raw JSON and only decoded on first
+   * access, and values which are never modified are written back out
+   * unchanged. Values returned by the getters of a lazily read GeoObject must
+   * not be modified in place; use the setters or {@link #getAttribute(String)}
+   * instead.
+   */
+  public static GeoObject fromJSON(RegistryAdapter registry, String sJson, boolean lazy)
+  {
+    return GeoObjectJsonAdapters.fromJson(new GeoObjectJsonAdapters.GeoObjectTypeAdapter(registry, GeoObjectJsonAdapters.DEFAULT_SERIALIZER, lazy), sJson);
   }
 
   public JsonObject toJSON()
   {
-    return toJSON(new DefaultSerializer());
+    return (JsonObject) GeoObjectJsonAdapters.DEFAULT_WRITER.toJsonTree(this);
   }
 
   public JsonObject toJSON(CustomSerializer serializer)
   {
-    GsonBuilder builder = new GsonBuilder();
-    builder.registerTypeAdapter(GeoObject.class, new GeoObjectJsonAdapters.GeoObjectSerializer(serializer));
+    return (JsonObject) new GeoObjectJsonAdapters.GeoObjectTypeAdapter(null, serializer).toJsonTree(this);
+  }
 
-    return (JsonObject) builder.create().toJsonTree(this);
+  /**
+   * Writes the JSON of this {@link GeoObject} to the given writer without
+   * building an intermediate string. The output is identical to
+   * <code>toJSON().toString()</code>.
+   * 
+   * @param writer
+   */
+  public void toJSON(JsonWriter writer)
+  {
+    GeoObjectJsonAdapters.toJson(GeoObjectJsonAdapters.DEFAULT_WRITER, writer, this);
+  }
+
+  public void toJSON(JsonWriter writer, CustomSerializer serializer)
+  {
+    GeoObjectJsonAdapters.toJson(new GeoObjectJsonAdapters.GeoObjectTypeAdapter(null, serializer), writer, this);
   }
 
   public void printAttributes()
   {
+    this.decodeAll();
+
     for (Attribute attribute : attributeMap.values())
     {
       System.out.println(attribute.toString());
@@ -419,6 +510,13 @@ public class GeoObject implements Serializable
     System.out.println("Geometry: " + this.geometry);
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException
+  {
+    this.decodeAll();
+
+    out.defaultWriteObject();
+  }
+
   @Override
   public boolean equals(Object obj)
   {
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes {@link GeoObject}s and {@link GeoObjectOverTime}s for transfer and
+ * storage. Each call to a write method writes exactly one object to the stream
+ * and each call to a read method reads exactly one object from it. Streams are
+ * flushed but never closed by the codec.
+ * 
+ * @see JsonGeoObjectCodec
+ * @see BinaryGeoObjectCodec
+ */
+public interface GeoObjectCodec
+{
+  /**
+   * @return The MIME type of the encoded form
+   */
+  public String getContentType();
+
+  public void write(GeoObject geoObject, OutputStream out) throws IOException;
+
+  public void write(GeoObjectOverTime geoObject, OutputStream out) throws IOException;
+
+  public GeoObject readGeoObject(InputStream in) throws IOException;
+
+  public GeoObjectOverTime readGeoObjectOverTime(InputStream in) throws IOException;
+}
@@ -18,22 +18,29 @@
  */
 package org.commongeoregistry.adapter.dataaccess;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.commongeoregistry.adapter.RegistryAdapter;
+import org.commongeoregistry.adapter.constants.DefaultAttribute;
 import org.commongeoregistry.adapter.metadata.CustomSerializer;
 import org.commongeoregistry.adapter.metadata.DefaultSerializer;
-import org.wololo.jts2geojson.GeoJSONReader;
-import org.wololo.jts2geojson.GeoJSONWriter;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 import com.vividsolutions.jts.geom.Geometry;
 
 public class GeoObjectJsonAdapters
@@ -46,156 +53,492 @@ public class GeoObjectJsonAdapters
 
   public static final String JSON_FEATURE    = "Feature";
 
-  public static class GeoObjectDeserializer implements JsonDeserializer<GeoObject>
+  public static final String JSON_WRITABLE   = "writable";
+
+  static final CustomSerializer       DEFAULT_SERIALIZER = new DefaultSerializer();
+
+  static final TypeAdapter<GeoObject> DEFAULT_WRITER     = new GeoObjectTypeAdapter(null, DEFAULT_SERIALIZER);
+
+  /**
+   * Streaming {@link TypeAdapter} for {@link GeoObject}. The JSON is read and
+   * written token by token without building an intermediate {@link JsonObject}
+   * of the whole feature. Attributes with a plain value are handled directly;
+   * all other attributes are delegated to
+   * {@link Attribute#toJSON(CustomSerializer)} and
+   * {@link Attribute#fromJSON(JsonElement, RegistryAdapter)} so that the
+   * {@link CustomSerializer} hook is still applied.
+   * 
+   * When lazy is true the GeoObjects are read into a compact copy of their
+   * JSON and their attributes are decoded on first access, see
+   * {@link GeoObject#fromJSON(RegistryAdapter, String, boolean)}. Properties
+   * of lazily read GeoObjects which were not modified are written out from
+   * that copy when the default serializer is used.
+   * 
+   * The adapter is stateless and may be shared between threads.
+   */
+  public static class GeoObjectTypeAdapter extends TypeAdapter<GeoObject>
   {
-    private RegistryAdapter registry;
+    private RegistryAdapter  registry;
 
-    public GeoObjectDeserializer(RegistryAdapter registry)
+    private CustomSerializer serializer;
+
+    private boolean          lazy;
+
+    public GeoObjectTypeAdapter(RegistryAdapter registry)
     {
-      this.registry = registry;
+      this(registry, DEFAULT_SERIALIZER);
     }
-    
-    public static String getCode(String goJson)
+
+    public GeoObjectTypeAdapter(RegistryAdapter registry, CustomSerializer serializer)
     {
-      JsonObject jo = new JsonParser().parse(goJson).getAsJsonObject();
-      
-      JsonObject properties = jo.get(GeoObjectJsonAdapters.JSON_PROPERTIES).getAsJsonObject();
-      
-      return properties.get(GeoObjectJsonAdapters.JSON_TYPE).getAsString();
+      this(registry, serializer, false);
     }
-    
-    public static String getTypeCode(String goJson)
+
+    public GeoObjectTypeAdapter(RegistryAdapter registry, CustomSerializer serializer, boolean lazy)
     {
-      JsonObject jo = new JsonParser().parse(goJson).getAsJsonObject();
-      
-      JsonObject properties = jo.get(GeoObjectJsonAdapters.JSON_PROPERTIES).getAsJsonObject();
-      
-      return properties.get(GeoObjectJsonAdapters.JSON_TYPE).getAsString();
+      this.registry = registry;
+      this.serializer = serializer;
+      this.lazy = lazy;
     }
 
     @Override
-    public GeoObject deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException
+    public void write(JsonWriter out, GeoObject go) throws IOException
     {
-      JsonObject oJson = json.getAsJsonObject();
-      JsonObject oJsonProps = oJson.getAsJsonObject(JSON_PROPERTIES);
+      if (go == null)
+      {
+        out.nullValue();
+        return;
+      }
+
+      out.beginObject();
 
-      GeoObject geoObj;
-      if (oJsonProps.has("uid"))
+      // It's assumed that GeoObjects are simple features rather than
+      // FeatureCollections.
+      // Spec reference: https://tools.ietf.org/html/rfc7946#section-3.3
+      out.name(JSON_TYPE).value(JSON_FEATURE);
+
+      GeoObjectSource source = ( this.serializer == DEFAULT_SERIALIZER ) ? go.source : null;
+
+      if (source != null && source.hasGeometry())
       {
-        geoObj = registry.newGeoObjectInstance(oJsonProps.get(JSON_TYPE).getAsString(), false);
+        out.name(JSON_GEOMETRY);
+        source.writeGeometry(out);
+      }
+      else if (go.getGeometry() != null)
+      {
+        out.name(JSON_GEOMETRY);
+        GeoJsonGeometryAdapter.INSTANCE.write(out, go.getGeometry());
+      }
+
+      out.name(JSON_PROPERTIES);
+      out.beginObject();
+
+      if (source != null)
+      {
+        source.writeProperties(out);
       }
       else
       {
-        geoObj = registry.newGeoObjectInstance(oJsonProps.get(JSON_TYPE).getAsString(), true);
+        go.decodeAll();
+      }
+
+      writeAttributes(out, go.attributeMap, go.getType().getSerializationPlan(), this.serializer, source);
+
+      if (go.getWritable() != null)
+      {
+        out.name(JSON_WRITABLE).value(go.getWritable().booleanValue());
+      }
+
+      out.endObject();
+      out.endObject();
+    }
+
+    @Override
+    public GeoObject read(JsonReader in) throws IOException
+    {
+      if (in.peek() == JsonToken.NULL)
+      {
+        in.nextNull();
+        return null;
+      }
+
+      if (this.lazy)
+      {
+        return this.readLazy(in);
       }
 
-      JsonElement oGeom = oJson.get(JSON_GEOMETRY);
-      if (oGeom != null)
+      GeoObject geoObj = null;
+      Geometry geometry = null;
+
+      in.beginObject();
+
+      while (in.hasNext())
       {
-        GeoJSONReader reader = new GeoJSONReader();
-        Geometry jtsGeom = reader.read(oGeom.toString());
+        String name = in.nextName();
 
-        geoObj.setGeometry(jtsGeom);
+        if (name.equals(JSON_GEOMETRY))
+        {
+          geometry = GeoJsonGeometryAdapter.INSTANCE.read(in);
+        }
+        else if (name.equals(JSON_PROPERTIES))
+        {
+          geoObj = this.readProperties(in);
+        }
+        else
+        {
+          in.skipValue();
+        }
+      }
+
+      in.endObject();
+
+      if (geoObj == null)
+      {
+        throw new JsonSyntaxException("The GeoObject JSON is missing its [" + JSON_PROPERTIES + "]");
+      }
+
+      if (geometry != null)
+      {
+        geoObj.setGeometry(geometry);
+      }
+
+      return geoObj;
+    }
+
+    private GeoObject readLazy(JsonReader in) throws IOException
+    {
+      GeoObjectSource.Builder builder = new GeoObjectSource.Builder();
+      boolean hasProperties = false;
+      boolean hasUid = false;
+      String code = null;
+
+      in.beginObject();
+
+      while (in.hasNext())
+      {
+        String name = in.nextName();
+
+        if (in.peek() == JsonToken.NULL)
+        {
+          in.nextNull();
+        }
+        else if (name.equals(JSON_GEOMETRY))
+        {
+          builder.geometry(in);
+        }
+        else if (name.equals(JSON_PROPERTIES))
+        {
+          hasProperties = true;
+
+          in.beginObject();
+
+          while (in.hasNext())
+          {
+            String key = in.nextName();
+
+            if (key.equals(DefaultAttribute.UID.getName()))
+            {
+              hasUid = true;
+            }
+
+            if (in.peek() == JsonToken.NULL)
+            {
+              in.nextNull();
+            }
+            else if (key.equals(JSON_WRITABLE))
+            {
+              // The writable flag is only sent to clients, it is never read back
+              in.skipValue();
+            }
+            else if (key.equals(JSON_TYPE) && in.peek() == JsonToken.STRING)
+            {
+              code = in.nextString();
+
+              builder.property(key, code);
+            }
+            else
+            {
+              builder.property(key, in);
+            }
+          }
+
+          in.endObject();
+        }
+        else
+        {
+          in.skipValue();
+        }
+      }
+
+      in.endObject();
+
+      if (!hasProperties)
+      {
+        throw new JsonSyntaxException("The GeoObject JSON is missing its [" + JSON_PROPERTIES + "]");
+      }
+
+      if (code == null)
+      {
+        throw new JsonSyntaxException("The GeoObject JSON is missing its [" + JSON_TYPE + "]");
+      }
+
+      GeoObject geoObj = registry.newGeoObjectInstance(code, false);
+      geoObj.source = builder.build(registry, geoObj, JSON_TYPE);
+
+      if (!hasUid)
+      {
+        geoObj.setUid(registry.getIdService().next());
       }
 
-      for (String key : geoObj.attributeMap.keySet())
+      return geoObj;
+    }
+
+    private GeoObject readProperties(JsonReader in) throws IOException
+    {
+      GeoObject geoObj = null;
+      SerializationPlan plan = null;
+      Map<String, JsonElement> pending = new LinkedHashMap<String, JsonElement>();
+      boolean hasUid = false;
+
+      in.beginObject();
+
+      while (in.hasNext())
       {
-        Attribute attr = geoObj.attributeMap.get(key);
+        String key = in.nextName();
 
-        if (oJsonProps.has(key) && !oJsonProps.get(key).isJsonNull())
+        if (key.equals(DefaultAttribute.UID.getName()))
+        {
+          hasUid = true;
+        }
+
+        if (key.equals(JSON_WRITABLE))
+        {
+          // The writable flag is only sent to clients, it is never read back
+          in.skipValue();
+        }
+        else if (geoObj == null)
         {
-          attr.fromJSON(oJsonProps.get(key), registry);
+          // Values which appear before the type can only be decoded once the
+          // GeoObject has been created
+          if (key.equals(JSON_TYPE) && in.peek() == JsonToken.STRING)
+          {
+            String code = in.nextString();
+
+            geoObj = registry.newGeoObjectInstance(code, false);
+            plan = geoObj.getType().getSerializationPlan();
+
+            pending.put(key, new JsonPrimitive(code));
+
+            for (Entry<String, JsonElement> entry : pending.entrySet())
+            {
+              Attribute attr = geoObj.attributeMap.get(entry.getKey());
+
+              if (attr != null && !entry.getValue().isJsonNull())
+              {
+                attr.fromJSON(entry.getValue(), registry);
+              }
+            }
+          }
+          else
+          {
+            pending.put(key, new JsonParser().parse(in));
+          }
         }
+        else
+        {
+          Attribute attr = geoObj.attributeMap.get(key);
+          int slot = plan.getSlot(key);
+
+          if (attr != null)
+          {
+            readAttribute(in, attr, slot != -1 ? plan.getCodec(slot) : AttributeCodec.forAttribute(attr), registry);
+          }
+          else
+          {
+            in.skipValue();
+          }
+        }
+      }
+
+      in.endObject();
+
+      if (geoObj == null)
+      {
+        throw new JsonSyntaxException("The GeoObject JSON is missing its [" + JSON_TYPE + "]");
+      }
+
+      if (!hasUid)
+      {
+        geoObj.setUid(registry.getIdService().next());
       }
 
       return geoObj;
     }
   }
 
-  public static class GeoObjectSerializer implements JsonSerializer<GeoObject>
+  /**
+   * Reads a value from the given JSON string using the same lenient parsing
+   * rules as {@link com.google.gson.Gson#fromJson(String, Class)}.
+   */
+  static <T> T fromJson(TypeAdapter<T> adapter, String json)
   {
-    private CustomSerializer serializer;
+    try
+    {
+      JsonReader reader = new JsonReader(new StringReader(json));
+      reader.setLenient(true);
 
-    public GeoObjectSerializer(CustomSerializer serializer)
+      return adapter.read(reader);
+    }
+    catch (MalformedJsonException e)
     {
-      this.serializer = serializer;
+      throw new JsonSyntaxException(e);
     }
-
-    public GeoObjectSerializer()
+    catch (IllegalStateException e)
+    {
+      throw new JsonSyntaxException(e);
+    }
+    catch (IOException e)
     {
-      this.serializer = new DefaultSerializer();
+      throw new JsonIOException(e);
     }
+  }
 
-    @Override
-    public JsonElement serialize(GeoObject go, Type typeOfSrc, JsonSerializationContext context)
+  static <T> void toJson(TypeAdapter<T> adapter, JsonWriter writer, T value)
+  {
+    try
+    {
+      adapter.write(writer, value);
+    }
+    catch (IOException e)
     {
-      JsonObject jsonObj = new JsonObject();
+      throw new JsonIOException(e);
+    }
+  }
 
-      // It's assumed that GeoObjects are simple features rather than
-      // FeatureCollections.
-      // Spec reference: https://tools.ietf.org/html/rfc7946#section-3.3
-      jsonObj.addProperty(JSON_TYPE, JSON_FEATURE);
+  /**
+   * Writes the attributes in the order of the plan, with the type first.
+   * Attributes which are not part of the plan, for example because the type
+   * changed after the object was created, are written after the others.
+   */
+  static void writeAttributes(JsonWriter out, Map<String, Attribute> attributes, SerializationPlan plan, CustomSerializer serializer) throws IOException
+  {
+    writeAttributes(out, attributes, plan, serializer, null);
+  }
 
-      if (go.getGeometry() != null)
-      {
-        GeoJSONWriter gw = new GeoJSONWriter();
-        org.wololo.geojson.Geometry gJSON = gw.write(go.getGeometry());
+  /**
+   * Writes the attributes in the order of the plan, skipping those whose raw
+   * JSON has already been written from the source.
+   */
+  static void writeAttributes(JsonWriter out, Map<String, Attribute> attributes, SerializationPlan plan, CustomSerializer serializer, GeoObjectSource source) throws IOException
+  {
+    int written = 0;
 
-        JsonParser parser = new JsonParser();
-        JsonObject geomObj = parser.parse(gJSON.toString()).getAsJsonObject();
+    for (int slot : plan.getOrder())
+    {
+      String name = plan.getName(slot);
+      Attribute attr = SlotAttributeMap.peek(attributes, name);
 
-        jsonObj.add(JSON_GEOMETRY, geomObj);
+      if (attr != null && ( source == null || !source.contains(name) ))
+      {
+        plan.getCodec(slot).write(out, name, attr, serializer);
       }
 
-      JsonObject props = new JsonObject();
-      for (String key : go.attributeMap.keySet())
+      if (attr != null || attributes.containsKey(name))
       {
-        Attribute attr = go.attributeMap.get(key);
+        written++;
+      }
+    }
 
-        JsonElement value = attr.toJSON(serializer);
-        if (!value.isJsonNull())
+    if (written != attributes.size())
+    {
+      for (Attribute attr : attributes.values())
+      {
+        if (plan.getSlot(attr.getName()) == -1 && ( source == null || !source.contains(attr.getName()) ))
         {
-          props.add(attr.getName(), value);
+          writeAttribute(out, attr.getName(), attr, serializer);
         }
+      }
+    }
+  }
 
-        // if(attr instanceof AttributeTerm)
-        // {
-        // attrs.add(key, attr.toJSON());
-        // }
-        // else
-        // {
-        //
-        // System.out.println(attr.toJSON());
-        //
-        // // TODO: All these attributes are required by the CGR spec. Adding an
-        // // empty string is a temporary step for me to work on another area of
-        // // the adapter. Ensure that Values are always present and handle
-        // // NULLs as errors.
-        // if(attr.getValue() == null )
-        // {
-        // attrs.addProperty(key, "");
-        // }
-        // else
-        // {
-        // attrs.addProperty(key, attr.getValue().toString() );
-        // }
-        // }
-
-        // JsonParser attrParser = new JsonParser();
-        // JsonObject geomObj =
-        // attrParser.parse(attr.toJSON().toString()).getAsJsonObject();
+  /**
+   * Writes the value of the attribute as a property of the current object.
+   * Attributes without a value are omitted.
+   */
+  static void writeAttribute(JsonWriter out, String name, Attribute attr, CustomSerializer serializer) throws IOException
+  {
+    AttributeCodec.forAttribute(attr).write(out, name, attr, serializer);
+  }
 
-      }
+  /**
+   * Reads the value at the current position of the reader into the attribute.
+   * A null value leaves the attribute unchanged.
+   */
+  static void readAttribute(JsonReader in, Attribute attr, AttributeCodec codec, RegistryAdapter registry) throws IOException
+  {
+    if (in.peek() == JsonToken.NULL)
+    {
+      in.nextNull();
+    }
+    else
+    {
+      codec.read(in, attr, registry);
+    }
+  }
 
-      if (go.getWritable() != null)
+  /**
+   * Writes the element to the writer. Null members of objects are omitted,
+   * which matches the output of {@link com.google.gson.Gson#toJsonTree(Object)}
+   * for the tree-model serializers.
+   */
+  static void writeElement(JsonWriter out, JsonElement element) throws IOException
+  {
+    if (element == null || element.isJsonNull())
+    {
+      out.nullValue();
+    }
+    else if (element.isJsonPrimitive())
+    {
+      JsonPrimitive primitive = element.getAsJsonPrimitive();
+
+      if (primitive.isNumber())
+      {
+        out.value(primitive.getAsNumber());
+      }
+      else if (primitive.isBoolean())
       {
-        props.addProperty("writable", go.getWritable());
+        out.value(primitive.getAsBoolean());
+      }
+      else
+      {
+        out.value(primitive.getAsString());
+      }
+    }
+    else if (element.isJsonArray())
+    {
+      out.beginArray();
 
+      for (JsonElement child : (JsonArray) element)
+      {
+        writeElement(out, child);
       }
 
-      jsonObj.add(JSON_PROPERTIES, props);
+      out.endArray();
+    }
+    else
+    {
+      out.beginObject();
+
+      for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet())
+      {
+        if (!entry.getValue().isJsonNull())
+        {
+          out.name(entry.getKey());
+          writeElement(out, entry.getValue());
+        }
+      }
 
-      return jsonObj;
+      out.endObject();
     }
   }
 
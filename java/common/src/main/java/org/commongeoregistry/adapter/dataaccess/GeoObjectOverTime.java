@@ -33,14 +33,10 @@ import org.commongeoregistry.adapter.metadata.AttributeGeometryType;
 import org.commongeoregistry.adapter.metadata.AttributeTermType;
 import org.commongeoregistry.adapter.metadata.AttributeType;
 import org.commongeoregistry.adapter.metadata.CustomSerializer;
-import org.commongeoregistry.adapter.metadata.DefaultSerializer;
 import org.commongeoregistry.adapter.metadata.GeoObjectType;
 
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 import com.vividsolutions.jts.geom.Geometry;
 
 public class GeoObjectOverTime implements Serializable
@@ -98,21 +94,9 @@ public class GeoObjectOverTime implements Serializable
   
   public static Map<String, Attribute> buildAttributeMap(GeoObjectType geoObjectType)
   {
-    Map<String, AttributeType> attributeTypeMap = geoObjectType.getAttributeMap();
-
-    Map<String, Attribute> attributeMap = new ConcurrentHashMap<String, Attribute>();
+    SerializationPlan plan = geoObjectType.getSerializationPlan();
 
-    for (AttributeType attributeType : attributeTypeMap.values())
-    {
-      if (!attributeType.isChangeOverTime())
-      {
-        Attribute attribute = Attribute.attributeFactory(attributeType);
-
-        attributeMap.put(attribute.getName(), attribute);
-      }
-    }
-
-    return attributeMap;
+    return new SlotAttributeMap(plan, plan.getGeoObjectOverTimeSlots());
   }
   
   public GeoObjectType getType()
@@ -411,6 +395,19 @@ public class GeoObjectOverTime implements Serializable
     this.setValue(DefaultAttribute.EXISTS.getName(), exists, startDate, endDate);
   }
   
+  /**
+   * Returns a {@link GeoObject} with the values of this object on the given
+   * date. Use a {@link SnapshotEngine} to materialize many objects or dates at
+   * once.
+   * 
+   * @param date
+   *          The date of the values, null for the latest values
+   */
+  public GeoObject toGeoObject(Date date)
+  {
+    return SnapshotEngine.snapshot(this, date);
+  }
+
   /**
    * Creates a {@link GeoObjectOverTime} from the given JSON.
    * 
@@ -424,23 +421,34 @@ public class GeoObjectOverTime implements Serializable
    */
   public static GeoObjectOverTime fromJSON(RegistryAdapter registry, String sJson)
   {
-    GsonBuilder builder = new GsonBuilder();
-    builder.registerTypeAdapter(GeoObjectOverTime.class, new GeoObjectOverTimeJsonAdapters.GeoObjectDeserializer(registry));
-
-    return builder.create().fromJson(sJson, GeoObjectOverTime.class);
+    return GeoObjectJsonAdapters.fromJson(new GeoObjectOverTimeJsonAdapters.GeoObjectOverTimeTypeAdapter(registry), sJson);
   }
 
   public JsonObject toJSON()
   {
-    return toJSON(new DefaultSerializer());
+    return (JsonObject) GeoObjectOverTimeJsonAdapters.DEFAULT_WRITER.toJsonTree(this);
   }
 
   public JsonObject toJSON(CustomSerializer serializer)
   {
-    GsonBuilder builder = new GsonBuilder();
-    builder.registerTypeAdapter(GeoObjectOverTime.class, new GeoObjectOverTimeJsonAdapters.GeoObjectSerializer());
+    return (JsonObject) new GeoObjectOverTimeJsonAdapters.GeoObjectOverTimeTypeAdapter(null, serializer).toJsonTree(this);
+  }
 
-    return (JsonObject) builder.create().toJsonTree(this);
+  /**
+   * Writes the JSON of this {@link GeoObjectOverTime} to the given writer without
+   * building an intermediate string. The output is identical to
+   * <code>toJSON().toString()</code>.
+   * 
+   * @param writer
+   */
+  public void toJSON(JsonWriter writer)
+  {
+    GeoObjectJsonAdapters.toJson(GeoObjectOverTimeJsonAdapters.DEFAULT_WRITER, writer, this);
+  }
+
+  public void toJSON(JsonWriter writer, CustomSerializer serializer)
+  {
+    GeoObjectJsonAdapters.toJson(new GeoObjectOverTimeJsonAdapters.GeoObjectOverTimeTypeAdapter(null, serializer), writer, this);
   }
   
 }
@@ -18,25 +18,29 @@
  */
 package org.commongeoregistry.adapter.dataaccess;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 
+import org.commongeoregistry.adapter.EpochDay;
 import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.constants.DefaultAttribute;
 import org.commongeoregistry.adapter.metadata.AttributeType;
 import org.commongeoregistry.adapter.metadata.CustomSerializer;
-import org.commongeoregistry.adapter.metadata.DefaultSerializer;
 import org.wololo.jts2geojson.GeoJSONReader;
 import org.wololo.jts2geojson.GeoJSONWriter;
 
 import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.vividsolutions.jts.geom.Geometry;
 
 public class GeoObjectOverTimeJsonAdapters
@@ -47,140 +51,338 @@ public class GeoObjectOverTimeJsonAdapters
   
   public static final String JSON_CODE = "code";
   
-  public static class GeoObjectDeserializer implements JsonDeserializer<GeoObjectOverTime>
+  static final TypeAdapter<GeoObjectOverTime> DEFAULT_WRITER = new GeoObjectOverTimeTypeAdapter(null, GeoObjectJsonAdapters.DEFAULT_SERIALIZER);
+  
+  /**
+   * Streaming {@link TypeAdapter} for {@link GeoObjectOverTime}. Values over
+   * time are read and written token by token; attributes which are not plain
+   * values are delegated to the {@link Attribute} so that the
+   * {@link CustomSerializer} hook is still applied.
+   * 
+   * The adapter is stateless and may be shared between threads.
+   */
+  public static class GeoObjectOverTimeTypeAdapter extends TypeAdapter<GeoObjectOverTime>
   {
-    private RegistryAdapter registry;
+    private RegistryAdapter  registry;
+
+    private CustomSerializer serializer;
 
-    public GeoObjectDeserializer(RegistryAdapter registry)
+    public GeoObjectOverTimeTypeAdapter(RegistryAdapter registry)
+    {
+      this(registry, GeoObjectJsonAdapters.DEFAULT_SERIALIZER);
+    }
+
+    public GeoObjectOverTimeTypeAdapter(RegistryAdapter registry, CustomSerializer serializer)
     {
       this.registry = registry;
+      this.serializer = serializer;
     }
-    
-    public static String getCode(String goJson)
+
+    @Override
+    public void write(JsonWriter out, GeoObjectOverTime go) throws IOException
     {
-      JsonObject jo = new JsonParser().parse(goJson).getAsJsonObject();
-      
-      JsonObject attributes = jo.get(GeoObjectOverTimeJsonAdapters.JSON_ATTRIBUTES).getAsJsonObject();
-      
-      return attributes.get(GeoObjectOverTimeJsonAdapters.JSON_CODE).getAsString();
+      if (go == null)
+      {
+        out.nullValue();
+        return;
+      }
+
+      out.beginObject();
+      out.name(JSON_ATTRIBUTES);
+      out.beginObject();
+
+      // The plan writes the type first so that readers can create the
+      // GeoObjectOverTime before any other attribute is encountered
+      SerializationPlan plan = go.getType().getSerializationPlan();
+
+      GeoObjectJsonAdapters.writeAttributes(out, go.attributeMap, plan, this.serializer);
+
+      int written = 0;
+
+      for (int slot : plan.getOrder())
+      {
+        ValueOverTimeCollectionDTO votc = go.votAttributeMap.get(plan.getName(slot));
+
+        if (votc != null)
+        {
+          this.writeCollection(out, votc, plan.getCodec(slot));
+
+          written++;
+        }
+      }
+
+      if (written != go.votAttributeMap.size())
+      {
+        for (ValueOverTimeCollectionDTO votc : go.votAttributeMap.values())
+        {
+          AttributeType attributeType = votc.getAttributeType();
+
+          if (plan.getSlot(attributeType.getName()) == -1)
+          {
+            this.writeCollection(out, votc, AttributeCodec.forAttribute(Attribute.attributeFactory(attributeType)));
+          }
+        }
+      }
+
+      out.endObject();
+      out.endObject();
     }
-    
-    public static String getTypeCode(String goJson)
+
+    private void writeCollection(JsonWriter out, ValueOverTimeCollectionDTO votc, AttributeCodec codec) throws IOException
     {
-      JsonObject jo = new JsonParser().parse(goJson).getAsJsonObject();
-      
-      JsonObject attributes = jo.get(GeoObjectOverTimeJsonAdapters.JSON_ATTRIBUTES).getAsJsonObject();
-      
-      return attributes.get(GeoObjectOverTimeJsonAdapters.JSON_TYPE).getAsString();
+      AttributeType attributeType = votc.getAttributeType();
+
+      out.name(attributeType.getName());
+      out.beginObject();
+      out.name("name").value(attributeType.getName());
+      out.name("type").value(attributeType.getType());
+      out.name("values");
+      out.beginArray();
+
+      for (ValueOverTimeDTO vot : votc)
+      {
+        out.beginObject();
+
+        if (vot.getOid() != null)
+        {
+          out.name("oid").value(vot.getOid());
+        }
+
+        out.name("startDate").value(EpochDay.format(vot.getStartDay()));
+        out.name("endDate").value(EpochDay.format(vot.getEndDay()));
+
+        codec.write(out, "value", vot.getAttribute(), this.serializer);
+
+        out.endObject();
+      }
+
+      out.endArray();
+      out.endObject();
     }
 
     @Override
-    public GeoObjectOverTime deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException
+    public GeoObjectOverTime read(JsonReader in) throws IOException
     {
-      JsonObject joGO = json.getAsJsonObject();
-      JsonObject joAttrs = joGO.getAsJsonObject(JSON_ATTRIBUTES);
-      
-      String type = joAttrs.get(DefaultAttribute.TYPE.getName()).getAsString();
+      if (in.peek() == JsonToken.NULL)
+      {
+        in.nextNull();
+        return null;
+      }
+
+      GeoObjectOverTime geoObj = null;
 
-      GeoObjectOverTime geoObj;
-      if (joAttrs.has("uid"))
+      in.beginObject();
+
+      while (in.hasNext())
       {
-        geoObj = registry.newGeoObjectOverTimeInstance(type, false);
+        if (in.nextName().equals(JSON_ATTRIBUTES))
+        {
+          geoObj = this.readAttributes(in);
+        }
+        else
+        {
+          in.skipValue();
+        }
       }
-      else
+
+      in.endObject();
+
+      if (geoObj == null)
       {
-        geoObj = registry.newGeoObjectOverTimeInstance(type, true);
+        throw new JsonSyntaxException("The GeoObjectOverTime JSON is missing its [" + JSON_ATTRIBUTES + "]");
       }
 
-      for (String key : geoObj.votAttributeMap.keySet())
+      return geoObj;
+    }
+
+    private GeoObjectOverTime readAttributes(JsonReader in) throws IOException
+    {
+      GeoObjectOverTime geoObj = null;
+      Map<String, JsonElement> pending = new LinkedHashMap<String, JsonElement>();
+      boolean hasUid = false;
+
+      in.beginObject();
+
+      while (in.hasNext())
       {
-        ValueOverTimeCollectionDTO votc = geoObj.votAttributeMap.get(key);
-        votc.clear();
+        String key = in.nextName();
 
-        if (joAttrs.has(key) && !joAttrs.get(key).isJsonNull())
+        if (key.equals(DefaultAttribute.UID.getName()))
         {
-          JsonObject attributeOverTime = joAttrs.get(key).getAsJsonObject();
-          
-          JsonArray jaValues = attributeOverTime.get("values").getAsJsonArray();
-          
-          for (int i = 0; i < jaValues.size(); ++i)
+          hasUid = true;
+        }
+
+        if (geoObj == null)
+        {
+          // Values which appear before the type can only be decoded once the
+          // GeoObjectOverTime has been created
+          if (key.equals(DefaultAttribute.TYPE.getName()) && in.peek() == JsonToken.STRING)
+          {
+            String code = in.nextString();
+
+            geoObj = registry.newGeoObjectOverTimeInstance(code, false);
+
+            for (ValueOverTimeCollectionDTO votc : geoObj.votAttributeMap.values())
+            {
+              votc.clear();
+            }
+
+            pending.put(key, new JsonPrimitive(code));
+
+            for (Entry<String, JsonElement> entry : pending.entrySet())
+            {
+              this.readValue(geoObj, entry.getKey(), entry.getValue());
+            }
+          }
+          else
           {
-            ValueOverTimeDTO vot = ValueOverTimeDTO.fromJSON(jaValues.get(i).toString(), votc, registry);
-            
-            votc.add(vot);
+            pending.put(key, new JsonParser().parse(in));
           }
         }
+        else
+        {
+          this.readValue(in, geoObj, key);
+        }
       }
-      
-      for (String key : geoObj.attributeMap.keySet())
+
+      in.endObject();
+
+      if (geoObj == null)
       {
-        Attribute attr = geoObj.attributeMap.get(key);
+        throw new JsonSyntaxException("The GeoObjectOverTime JSON is missing its [" + DefaultAttribute.TYPE.getName() + "]");
+      }
 
-        if (joAttrs.has(key) && !joAttrs.get(key).isJsonNull())
-        {
-          attr.fromJSON(joAttrs.get(key), registry);
-        }
+      if (!hasUid)
+      {
+        geoObj.setUid(registry.getIdService().next());
       }
-      
+
       return geoObj;
     }
-  }
-
-  public static class GeoObjectSerializer implements JsonSerializer<GeoObjectOverTime>
-  {
-    private CustomSerializer serializer;
 
-    public GeoObjectSerializer(CustomSerializer serializer)
+    private void readValue(GeoObjectOverTime geoObj, String key, JsonElement value)
     {
-      this.serializer = serializer;
-    }
+      if (value.isJsonNull())
+      {
+        return;
+      }
 
-    public GeoObjectSerializer()
-    {
-      this.serializer = new DefaultSerializer();
+      ValueOverTimeCollectionDTO votc = geoObj.votAttributeMap.get(key);
+
+      if (votc != null)
+      {
+        JsonArray jaValues = value.getAsJsonObject().get("values").getAsJsonArray();
+
+        for (int i = 0; i < jaValues.size(); ++i)
+        {
+          votc.add(ValueOverTimeDTO.fromJSON(jaValues.get(i).getAsJsonObject(), votc, registry));
+        }
+      }
+      else if (geoObj.attributeMap.containsKey(key))
+      {
+        geoObj.attributeMap.get(key).fromJSON(value, registry);
+      }
     }
 
-    @Override
-    public JsonElement serialize(GeoObjectOverTime go, Type typeOfSrc, JsonSerializationContext context)
+    private void readValue(JsonReader in, GeoObjectOverTime geoObj, String key) throws IOException
     {
-      JsonObject jsonObj = new JsonObject();
-      
-      JsonObject attrs = new JsonObject();
-      for (String key : go.votAttributeMap.keySet())
+      ValueOverTimeCollectionDTO votc = geoObj.votAttributeMap.get(key);
+
+      if (votc != null && in.peek() == JsonToken.BEGIN_OBJECT)
       {
-        ValueOverTimeCollectionDTO votc = go.votAttributeMap.get(key);
-        AttributeType type = votc.getAttributeType();
-        
-        JsonObject attributeOverTime = new JsonObject();
-        attributeOverTime.addProperty("name", type.getName());
-        attributeOverTime.addProperty("type", type.getType());
-        
-        JsonArray values = new JsonArray();
-        
-        for (ValueOverTimeDTO vot : votc)
+        in.beginObject();
+
+        while (in.hasNext())
         {
-          values.add(vot.toJSON(serializer));
+          if (in.nextName().equals("values"))
+          {
+            in.beginArray();
+
+            while (in.hasNext())
+            {
+              votc.add(this.readValueOverTime(in, votc));
+            }
+
+            in.endArray();
+          }
+          else
+          {
+            in.skipValue();
+          }
         }
-        
-        attributeOverTime.add("values", values);
-        
-        attrs.add(type.getName(), attributeOverTime);
+
+        in.endObject();
       }
-      
-      for (String key : go.attributeMap.keySet())
+      else if (votc == null && geoObj.attributeMap.containsKey(key))
       {
-        Attribute attr = go.attributeMap.get(key);
-        
-        JsonElement value = attr.toJSON(serializer);
-        if (!value.isJsonNull())
+        Attribute attr = geoObj.attributeMap.get(key);
+
+        GeoObjectJsonAdapters.readAttribute(in, attr, AttributeCodec.forAttribute(attr), registry);
+      }
+      else
+      {
+        in.skipValue();
+      }
+    }
+
+    private ValueOverTimeDTO readValueOverTime(JsonReader in, ValueOverTimeCollectionDTO votc) throws IOException
+    {
+      String oid = null;
+      long startDay = ValueOverTimeDTO.INFINITY_END_DAY;
+      long endDay = ValueOverTimeDTO.INFINITY_END_DAY;
+      Attribute attribute = Attribute.attributeFactory(votc.getAttributeType());
+      AttributeCodec codec = AttributeCodec.forAttribute(attribute);
+
+      in.beginObject();
+
+      while (in.hasNext())
+      {
+        String name = in.nextName();
+
+        if (in.peek() == JsonToken.NULL)
+        {
+          in.nextNull();
+        }
+        else if (name.equals("oid"))
+        {
+          oid = in.nextString();
+        }
+        else if (name.equals("startDate"))
+        {
+          startDay = parseDate(in.nextString());
+        }
+        else if (name.equals("endDate"))
+        {
+          endDay = parseDate(in.nextString());
+        }
+        else if (name.equals("value"))
+        {
+          GeoObjectJsonAdapters.readAttribute(in, attribute, codec, registry);
+        }
+        else
         {
-          attrs.add(attr.getName(), value);
+          in.skipValue();
         }
       }
 
-      jsonObj.add(JSON_ATTRIBUTES, attrs);
+      in.endObject();
 
-      return jsonObj;
+      ValueOverTimeDTO vot = new ValueOverTimeDTO(oid, startDay, endDay, votc);
+      vot.setAttribute(attribute);
+
+      return vot;
+    }
+
+    private static long parseDate(String value)
+    {
+      try
+      {
+        return EpochDay.parse(value);
+      }
+      catch (ParseException e)
+      {
+        throw new JsonSyntaxException(e);
+      }
     }
   }
 
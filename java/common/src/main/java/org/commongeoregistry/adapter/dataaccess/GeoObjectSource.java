@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.commongeoregistry.adapter.RegistryAdapter;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * The undecoded JSON of a lazily read {@link GeoObject}. The geometry and the
+ * value of every property are copied into one compact JSON buffer and indexed
+ * by their character range. A value is decoded the first time it is accessed
+ * and its text is written back out unchanged until the value is modified.
+ */
+final class GeoObjectSource
+{
+  private final RegistryAdapter    registry;
+
+  private final String             json;
+
+  /**
+   * Ranges of the properties whose raw text still matches the value of the
+   * attribute, in the order in which they were read.
+   */
+  private final Map<String, int[]> properties;
+
+  /**
+   * Properties which have not been decoded yet.
+   */
+  private final Set<String>        pending;
+
+  private int[]                    geometry;
+
+  private boolean                  geometryPending;
+
+  private GeoObjectSource(RegistryAdapter registry, String json, Map<String, int[]> properties, int[] geometry)
+  {
+    this.registry = registry;
+    this.json = json;
+    this.properties = properties;
+    this.pending = new HashSet<String>(properties.keySet());
+    this.geometry = geometry;
+    this.geometryPending = ( geometry != null );
+  }
+
+  /**
+   * Decodes the attribute if it has not been decoded yet.
+   */
+  synchronized void decode(Map<String, Attribute> attributes, String name)
+  {
+    if (this.pending.remove(name))
+    {
+      Attribute attr = attributes.get(name);
+
+      try
+      {
+        GeoObjectJsonAdapters.readAttribute(this.reader(this.properties.get(name)), attr, AttributeCodec.forAttribute(attr), this.registry);
+      }
+      catch (IOException e)
+      {
+        throw new JsonSyntaxException(e);
+      }
+    }
+  }
+
+  /**
+   * Decodes the attribute and drops its raw text because the value is about
+   * to be modified.
+   */
+  synchronized void modify(Map<String, Attribute> attributes, String name)
+  {
+    this.decode(attributes, name);
+
+    this.properties.remove(name);
+  }
+
+  synchronized void decodeAll(Map<String, Attribute> attributes)
+  {
+    for (String name : this.pending.toArray(new String[this.pending.size()]))
+    {
+      this.decode(attributes, name);
+    }
+  }
+
+  synchronized boolean isGeometryPending()
+  {
+    return this.geometryPending;
+  }
+
+  synchronized Geometry decodeGeometry()
+  {
+    this.geometryPending = false;
+
+    try
+    {
+      return GeoJsonGeometryAdapter.INSTANCE.read(this.reader(this.geometry));
+    }
+    catch (IOException e)
+    {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  synchronized void dropGeometry()
+  {
+    this.geometry = null;
+    this.geometryPending = false;
+  }
+
+  synchronized boolean hasGeometry()
+  {
+    return this.geometry != null;
+  }
+
+  synchronized boolean contains(String name)
+  {
+    return this.properties.containsKey(name);
+  }
+
+  synchronized void writeGeometry(JsonWriter out) throws IOException
+  {
+    write(out, this.geometry);
+  }
+
+  synchronized void writeProperties(JsonWriter out) throws IOException
+  {
+    for (Entry<String, int[]> entry : this.properties.entrySet())
+    {
+      out.name(entry.getKey());
+
+      write(out, entry.getValue());
+    }
+  }
+
+  private void write(JsonWriter out, int[] range) throws IOException
+  {
+    // Subclasses, such as the tree writer behind toJsonTree(), can not accept
+    // raw JSON so the tokens are copied instead
+    if (out.getClass() == JsonWriter.class)
+    {
+      out.jsonValue(this.json.substring(range[0], range[1]));
+    }
+    else
+    {
+      copy(this.reader(range), out);
+    }
+  }
+
+  private JsonReader reader(int[] range)
+  {
+    JsonReader reader = new JsonReader(new StringReader(this.json.substring(range[0], range[1])));
+    reader.setLenient(true);
+
+    return reader;
+  }
+
+  /**
+   * Copies the next value of the reader to the writer token by token.
+   */
+  static void copy(JsonReader in, JsonWriter out) throws IOException
+  {
+    int depth = 0;
+
+    do
+    {
+      switch (in.peek())
+      {
+        case BEGIN_ARRAY:
+          in.beginArray();
+          out.beginArray();
+          depth++;
+          break;
+        case END_ARRAY:
+          in.endArray();
+          out.endArray();
+          depth--;
+          break;
+        case BEGIN_OBJECT:
+          in.beginObject();
+          out.beginObject();
+          depth++;
+          break;
+        case END_OBJECT:
+          in.endObject();
+          out.endObject();
+          depth--;
+          break;
+        case NAME:
+          out.name(in.nextName());
+          break;
+        case STRING:
+          out.value(in.nextString());
+          break;
+        case NUMBER:
+          writeNumber(out, in.nextString());
+          break;
+        case BOOLEAN:
+          out.value(in.nextBoolean());
+          break;
+        case NULL:
+          in.nextNull();
+          out.nullValue();
+          break;
+        default:
+          throw new JsonSyntaxException("Unexpected token [" + in.peek() + "]");
+      }
+    } while (depth > 0);
+  }
+
+  private static void writeNumber(JsonWriter out, String number) throws IOException
+  {
+    if (out.getClass() == JsonWriter.class)
+    {
+      out.jsonValue(number);
+    }
+    else if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1)
+    {
+      try
+      {
+        out.value(Long.parseLong(number));
+      }
+      catch (NumberFormatException e)
+      {
+        out.value(Double.parseDouble(number));
+      }
+    }
+    else
+    {
+      out.value(Double.parseDouble(number));
+    }
+  }
+
+  /**
+   * Collects the raw JSON of a GeoObject while it is being read.
+   */
+  static class Builder
+  {
+    private final StringWriter       buffer;
+
+    private final JsonWriter         writer;
+
+    private final Map<String, int[]> properties;
+
+    private int[]                    geometry;
+
+    Builder()
+    {
+      this.buffer = new StringWriter();
+      this.writer = new JsonWriter(this.buffer);
+      this.writer.setLenient(true);
+      this.properties = new LinkedHashMap<String, int[]>();
+    }
+
+    void geometry(JsonReader in) throws IOException
+    {
+      this.geometry = this.capture(in);
+    }
+
+    void property(String name, JsonReader in) throws IOException
+    {
+      this.properties.put(name, this.capture(in));
+    }
+
+    void property(String name, String value) throws IOException
+    {
+      int start = this.buffer.getBuffer().length();
+
+      this.writer.value(value);
+
+      this.properties.put(name, new int[] { start, this.buffer.getBuffer().length() });
+    }
+
+    private int[] capture(JsonReader in) throws IOException
+    {
+      int start = this.buffer.getBuffer().length();
+
+      copy(in, this.writer);
+
+      return new int[] { start, this.buffer.getBuffer().length() };
+    }
+
+    /**
+     * Builds the source of the given GeoObject. Properties which are not an
+     * attribute of the GeoObject are dropped, and the type is not pending as it
+     * was set when the GeoObject was created.
+     */
+    GeoObjectSource build(RegistryAdapter registry, GeoObject geoObject, String type)
+    {
+      this.properties.keySet().retainAll(geoObject.attributeMap.keySet());
+
+      GeoObjectSource source = new GeoObjectSource(registry, this.buffer.toString(), this.properties, this.geometry);
+      source.pending.remove(type);
+
+      return source;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import org.commongeoregistry.adapter.RegistryAdapter;
+import org.commongeoregistry.adapter.metadata.CustomSerializer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * {@link GeoObjectCodec} for the GeoJSON form produced by
+ * {@link GeoObject#toJSON()} and {@link GeoObjectOverTime#toJSON()}, encoded
+ * as UTF-8.
+ */
+public class JsonGeoObjectCodec implements GeoObjectCodec
+{
+  public static final String                                         CONTENT_TYPE = "application/json";
+
+  private GeoObjectJsonAdapters.GeoObjectTypeAdapter                 geoObjectAdapter;
+
+  private GeoObjectOverTimeJsonAdapters.GeoObjectOverTimeTypeAdapter geoObjectOverTimeAdapter;
+
+  public JsonGeoObjectCodec(RegistryAdapter registry)
+  {
+    this(registry, GeoObjectJsonAdapters.DEFAULT_SERIALIZER);
+  }
+
+  public JsonGeoObjectCodec(RegistryAdapter registry, CustomSerializer serializer)
+  {
+    this.geoObjectAdapter = new GeoObjectJsonAdapters.GeoObjectTypeAdapter(registry, serializer);
+    this.geoObjectOverTimeAdapter = new GeoObjectOverTimeJsonAdapters.GeoObjectOverTimeTypeAdapter(registry, serializer);
+  }
+
+  @Override
+  public String getContentType()
+  {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public void write(GeoObject geoObject, OutputStream out) throws IOException
+  {
+    JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
+
+    this.geoObjectAdapter.write(writer, geoObject);
+
+    writer.flush();
+  }
+
+  @Override
+  public void write(GeoObjectOverTime geoObject, OutputStream out) throws IOException
+  {
+    JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
+
+    this.geoObjectOverTimeAdapter.write(writer, geoObject);
+
+    writer.flush();
+  }
+
+  @Override
+  public GeoObject readGeoObject(InputStream in) throws IOException
+  {
+    return this.geoObjectAdapter.read(newReader(in));
+  }
+
+  @Override
+  public GeoObjectOverTime readGeoObjectOverTime(InputStream in) throws IOException
+  {
+    return this.geoObjectOverTimeAdapter.read(newReader(in));
+  }
+
+  private static JsonReader newReader(InputStream in) throws IOException
+  {
+    JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+    reader.setLenient(true);
+
+    return reader;
+  }
+}
@@ -18,6 +18,8 @@
  */
 package org.commongeoregistry.adapter.dataaccess;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -27,8 +29,11 @@ import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.metadata.HierarchyType;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 public class ParentTreeNode extends TreeNode
 {
@@ -137,34 +142,52 @@ public class ParentTreeNode extends TreeNode
    */
   public static ParentTreeNode fromJSON(String sJson, RegistryAdapter registry)
   {
-    JsonParser parser = new JsonParser();
-    
-    JsonObject oJson = parser.parse(sJson).getAsJsonObject();
-    
-    GeoObject geoObj = GeoObject.fromJSON(registry, oJson.get(JSON_GEO_OBJECT).getAsJsonObject().toString());
-    
-    HierarchyType hierarchyType = null;
-    if (oJson.has(JSON_HIERARCHY_TYPE))
+    JsonReader reader = new JsonReader(new StringReader(sJson));
+    reader.setLenient(true);
+
+    try
     {
-      hierarchyType = registry.getMetadataCache().getHierachyType(oJson.get(JSON_HIERARCHY_TYPE).getAsString()).get();
+      return fromJSON(reader, registry);
     }
-    
-    ParentTreeNode tn = new ParentTreeNode(geoObj, hierarchyType);
-    
-    if (oJson.has(JSON_PARENTS))
+    catch (MalformedJsonException e)
     {
-      JsonArray jaParents = oJson.get(JSON_PARENTS).getAsJsonArray();
-      for (int i = 0; i < jaParents.size(); ++i)
-      {
-        JsonObject joParent = jaParents.get(i).getAsJsonObject();
-        
-        ParentTreeNode tnParent = ParentTreeNode.fromJSON(joParent.toString(), registry);
-        
-        tn.addParent(tnParent);
-      }
+      throw new JsonSyntaxException(e);
     }
-    
-    return tn;
+    catch (IOException e)
+    {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * Constructs a {@link ParentTreeNode} from the given reader. The tree is read in a
+   * single pass, one {@link GeoObject} at a time, which allows large trees to
+   * be decoded directly from a response stream.
+   * 
+   * @param reader
+   * @param registry Adapter class containing cached metadata.
+   * @return
+   * @throws IOException
+   */
+  public static ParentTreeNode fromJSON(JsonReader reader, RegistryAdapter registry) throws IOException
+  {
+    return new TreeNodeJsonAdapters.ParentTreeNodeAdapter(registry).read(reader);
   }
 
+  /**
+   * Constructs a {@link ParentTreeNode} from the given reader. When lazy is true the
+   * {@link GeoObject} of every node keeps its raw JSON and decodes its
+   * attributes on first access, see
+   * {@link GeoObject#fromJSON(RegistryAdapter, String, boolean)}.
+   * 
+   * @param reader
+   * @param registry Adapter class containing cached metadata.
+   * @param lazy
+   * @return
+   * @throws IOException
+   */
+  public static ParentTreeNode fromJSON(JsonReader reader, RegistryAdapter registry, boolean lazy) throws IOException
+  {
+    return new TreeNodeJsonAdapters.ParentTreeNodeAdapter(registry, lazy).read(reader);
+  }
 }
@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.commongeoregistry.adapter.constants.DefaultAttribute;
+import org.commongeoregistry.adapter.metadata.AttributeGeometryType;
+import org.commongeoregistry.adapter.metadata.AttributeType;
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+import org.commongeoregistry.adapter.metadata.MetadataCache;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Serialization plan compiled from the attributes of a {@link GeoObjectType}.
+ * Each attribute is assigned a slot: the position of its name in the sorted
+ * attribute names of the type, plus the geometry attribute used by
+ * {@link GeoObjectOverTime}. The codec of every slot is resolved when the plan
+ * is compiled, so encoding an object is a loop over flat arrays.
+ * 
+ * The fingerprint of the plan is a digest of the name, type and change over
+ * time flag of every slot. Encoded objects carry the fingerprint of the plan
+ * they were written with, so that they remain readable after attributes are
+ * added to or removed from the type, and values whose attribute changed its
+ * type are not misread (see {@link #getSlots(SerializationPlan)}).
+ * 
+ * Plans are immutable. They are cached on the {@link GeoObjectType} (see
+ * {@link GeoObjectType#getSerializationPlan()} and
+ * {@link MetadataCache#getSerializationPlan(String)}) and compiled again when
+ * the attributes of the type change.
+ */
+public class SerializationPlan
+{
+  private GeoObjectType        type;
+
+  private int                  attributeCount;
+
+  private String[]             names;
+
+  private AttributeCodec[]     codecs;
+
+  private boolean[]            changeOverTime;
+
+  private AttributeType[]      attributeTypes;
+
+  /**
+   * Type and change over time flag of every attribute when the plan was
+   * compiled, attributes are mutable
+   */
+  private String[]             typeNames;
+
+  private boolean[]            attributeChangeOverTime;
+
+  /**
+   * Whether the attribute of the slot has no value when it is created
+   */
+  private boolean[]            emptyDefaults;
+
+  private boolean[]            geoObjectSlots;
+
+  private boolean[]            geoObjectOverTimeSlots;
+
+  private Map<String, Integer> slots;
+
+  private int[]                order;
+
+  private long                 fingerprint;
+
+  public SerializationPlan(GeoObjectType type)
+  {
+    Map<String, AttributeType> attributes = type.getAttributeMap();
+
+    List<String> sorted = new ArrayList<String>(attributes.keySet());
+
+    if (!sorted.contains(DefaultAttribute.GEOMETRY.getName()))
+    {
+      sorted.add(DefaultAttribute.GEOMETRY.getName());
+    }
+
+    Collections.sort(sorted);
+
+    this.type = type;
+    this.attributeCount = attributes.size();
+    this.names = sorted.toArray(new String[sorted.size()]);
+    this.codecs = new AttributeCodec[this.names.length];
+    this.changeOverTime = new boolean[this.names.length];
+    this.attributeTypes = new AttributeType[this.names.length];
+    this.typeNames = new String[this.names.length];
+    this.attributeChangeOverTime = new boolean[this.names.length];
+    this.emptyDefaults = new boolean[this.names.length];
+    this.geoObjectSlots = new boolean[this.names.length];
+    this.geoObjectOverTimeSlots = new boolean[this.names.length];
+    this.slots = new HashMap<String, Integer>();
+
+    MessageDigest plan = newDigest();
+
+    List<Integer> order = new ArrayList<Integer>();
+
+    for (int i = 0; i < this.names.length; i++)
+    {
+      AttributeType attributeType = attributes.get(this.names[i]);
+      boolean defined = ( attributeType != null );
+
+      if (attributeType == null)
+      {
+        attributeType = DefaultAttribute.GEOMETRY.createAttributeType();
+      }
+
+      this.attributeTypes[i] = attributeType;
+      this.typeNames[i] = attributeType.getType();
+      this.attributeChangeOverTime[i] = attributeType.isChangeOverTime();
+      Attribute defaultAttribute = Attribute.attributeFactory(attributeType);
+
+      this.emptyDefaults[i] = isEmpty(defaultAttribute);
+      this.codecs[i] = AttributeCodec.forAttribute(defaultAttribute);
+      this.geoObjectSlots[i] = defined && ! ( attributeType instanceof AttributeGeometryType );
+      this.geoObjectOverTimeSlots[i] = defined && !attributeType.isChangeOverTime();
+      this.changeOverTime[i] = attributeType.isChangeOverTime() || attributeType instanceof AttributeGeometryType;
+      this.slots.put(this.names[i], i);
+
+      plan.update(describe(this.names[i], attributeType, this.changeOverTime[i]));
+
+      // The type is written first so that readers can create the object
+      // before any other attribute is encountered
+      if (this.names[i].equals(DefaultAttribute.TYPE.getName()))
+      {
+        order.add(0, i);
+      }
+      else
+      {
+        order.add(i);
+      }
+    }
+
+    byte[] digest = plan.digest();
+
+    for (int i = 0; i < 8; i++)
+    {
+      this.fingerprint = ( this.fingerprint << 8 ) | ( digest[i] & 0xFF );
+    }
+
+    this.order = new int[order.size()];
+
+    for (int i = 0; i < this.order.length; i++)
+    {
+      this.order[i] = order.get(i);
+    }
+  }
+
+  public GeoObjectType getType()
+  {
+    return type;
+  }
+
+  /**
+   * @return true if the plan was compiled from the current attributes of the
+   *         given type: the same attribute instances under the same names,
+   *         with the same type and change over time flag
+   */
+  public boolean isCurrent(GeoObjectType type)
+  {
+    Map<String, AttributeType> attributes = type.getAttributeMap();
+
+    if (this.type != type || this.attributeCount != attributes.size())
+    {
+      return false;
+    }
+
+    for (Map.Entry<String, AttributeType> entry : attributes.entrySet())
+    {
+      Integer slot = this.slots.get(entry.getKey());
+      AttributeType attributeType = entry.getValue();
+
+      if (slot == null || this.attributeTypes[slot] != attributeType || !this.typeNames[slot].equals(attributeType.getType()) || this.attributeChangeOverTime[slot] != attributeType.isChangeOverTime())
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return The first eight bytes of the SHA-256 digest of the names, types and
+   *         change over time flags of all slots
+   */
+  public long getFingerprint()
+  {
+    return fingerprint;
+  }
+
+  public int size()
+  {
+    return this.names.length;
+  }
+
+  /**
+   * @return The slot of the attribute, or -1 if the attribute is not defined
+   *         by the type
+   */
+  public int getSlot(String name)
+  {
+    Integer slot = this.slots.get(name);
+
+    return slot != null ? slot : -1;
+  }
+
+  public String getName(int slot)
+  {
+    return this.names[slot];
+  }
+
+  /**
+   * @return For every slot of the given plan, the slot of this plan with the
+   *         same name, type and change over time flag, or -1 if there is none
+   */
+  int[] getSlots(SerializationPlan plan)
+  {
+    int[] slots = new int[plan.size()];
+
+    for (int i = 0; i < slots.length; i++)
+    {
+      Integer slot = this.slots.get(plan.names[i]);
+
+      if (slot != null && this.typeNames[slot].equals(plan.typeNames[i]) && this.changeOverTime[slot] == plan.changeOverTime[i])
+      {
+        slots[i] = slot;
+      }
+      else
+      {
+        slots[i] = -1;
+      }
+    }
+
+    return slots;
+  }
+
+  /**
+   * @return Whether the attribute is stored as values over time on a
+   *         {@link GeoObjectOverTime}
+   */
+  public boolean isChangeOverTime(int slot)
+  {
+    return this.changeOverTime[slot];
+  }
+
+  AttributeType getAttributeType(int slot)
+  {
+    return this.attributeTypes[slot];
+  }
+
+  /**
+   * @return Whether the attribute of the slot has no value when it is created,
+   *         in which case it is not written until it is given one
+   */
+  boolean hasEmptyDefault(int slot)
+  {
+    return this.emptyDefaults[slot];
+  }
+
+  /**
+   * @return The slots stored in the attribute map of a {@link GeoObject}
+   */
+  boolean[] getGeoObjectSlots()
+  {
+    return this.geoObjectSlots;
+  }
+
+  /**
+   * @return The slots stored in the attribute map of a
+   *         {@link GeoObjectOverTime}
+   */
+  boolean[] getGeoObjectOverTimeSlots()
+  {
+    return this.geoObjectOverTimeSlots;
+  }
+
+  AttributeCodec getCodec(int slot)
+  {
+    return this.codecs[slot];
+  }
+
+  /**
+   * @return The slots in the order in which they are written to JSON
+   */
+  int[] getOrder()
+  {
+    return this.order;
+  }
+
+  /**
+   * @return Whether the attribute is omitted from both encoded forms
+   */
+  private static boolean isEmpty(Attribute attribute)
+  {
+    if (attribute.getValue() != null)
+    {
+      return false;
+    }
+
+    JsonElement json = attribute.toJSON(GeoObjectJsonAdapters.DEFAULT_SERIALIZER);
+
+    return json == null || json.isJsonNull();
+  }
+
+  private static byte[] describe(String name, AttributeType attributeType, boolean changeOverTime)
+  {
+    String description = name + '\u0000' + attributeType.getType() + '\u0000' + changeOverTime + '\u0000';
+
+    return description.getBytes(Charset.forName("UTF-8"));
+  }
+
+  private static MessageDigest newDigest()
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Attribute map of a {@link GeoObject} or {@link GeoObjectOverTime} backed by
+ * the slots of the {@link SerializationPlan} of its type. The map holds one
+ * flat array per object instead of a hash table, and the {@link Attribute} of
+ * a slot is only created the first time it is requested. Objects which are
+ * read from the registry therefore only allocate the attributes which have a
+ * value.
+ * 
+ * Attributes which are not defined by the type are kept in a separate map.
+ * Removing an attribute defined by the type resets it to its default value, as
+ * the type still defines it.
+ */
+class SlotAttributeMap extends AbstractMap<String, Attribute> implements Serializable
+{
+  private static final long              serialVersionUID = 4473018126305593861L;
+
+  private final SerializationPlan        plan;
+
+  private final boolean[]                included;
+
+  private final int                      count;
+
+  private final AtomicReferenceArray<Attribute> slots;
+
+  private volatile Map<String, Attribute> extras;
+
+  SlotAttributeMap(SerializationPlan plan, boolean[] included)
+  {
+    int count = 0;
+
+    for (boolean include : included)
+    {
+      count += include ? 1 : 0;
+    }
+
+    this.plan = plan;
+    this.included = included;
+    this.count = count;
+    this.slots = new AtomicReferenceArray<Attribute>(plan.size());
+  }
+
+  /**
+   * @return The attribute of the given name, or null if it does not exist or
+   *         if it has not been created yet and would have no value. Attributes
+   *         without a value are not written, so they are not created just to
+   *         be written.
+   */
+  static Attribute peek(Map<String, Attribute> attributes, String name)
+  {
+    if (attributes instanceof SlotAttributeMap)
+    {
+      SlotAttributeMap map = (SlotAttributeMap) attributes;
+      int slot = map.slot(name);
+
+      if (slot != -1)
+      {
+        Attribute attribute = map.slots.get(slot);
+
+        return attribute != null || map.plan.hasEmptyDefault(slot) ? attribute : map.attribute(slot);
+      }
+    }
+
+    return attributes.get(name);
+  }
+
+  /**
+   * @return The attributes which have been created. Attributes which still
+   *         hold their default value may be omitted.
+   */
+  static List<Attribute> created(Map<String, Attribute> attributes)
+  {
+    if (attributes instanceof SlotAttributeMap)
+    {
+      SlotAttributeMap map = (SlotAttributeMap) attributes;
+      List<Attribute> created = new ArrayList<Attribute>();
+
+      for (int slot = 0; slot < map.included.length; slot++)
+      {
+        Attribute attribute = map.slots.get(slot);
+
+        if (attribute != null)
+        {
+          created.add(attribute);
+        }
+      }
+
+      if (map.extras != null)
+      {
+        created.addAll(map.extras.values());
+      }
+
+      return created;
+    }
+
+    return new ArrayList<Attribute>(attributes.values());
+  }
+
+  private int slot(Object name)
+  {
+    if (name instanceof String)
+    {
+      int slot = this.plan.getSlot((String) name);
+
+      if (slot != -1 && this.included[slot])
+      {
+        return slot;
+      }
+    }
+
+    return -1;
+  }
+
+  private Attribute attribute(int slot)
+  {
+    Attribute attribute = this.slots.get(slot);
+
+    if (attribute == null)
+    {
+      this.slots.compareAndSet(slot, null, Attribute.attributeFactory(this.plan.getAttributeType(slot)));
+
+      attribute = this.slots.get(slot);
+    }
+
+    return attribute;
+  }
+
+  private synchronized Map<String, Attribute> extras()
+  {
+    if (this.extras == null)
+    {
+      this.extras = new ConcurrentHashMap<String, Attribute>();
+    }
+
+    return this.extras;
+  }
+
+  @Override
+  public int size()
+  {
+    Map<String, Attribute> extras = this.extras;
+
+    return this.count + ( extras != null ? extras.size() : 0 );
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    if (this.slot(key) != -1)
+    {
+      return true;
+    }
+
+    Map<String, Attribute> extras = this.extras;
+
+    return extras != null && key != null && extras.containsKey(key);
+  }
+
+  @Override
+  public Attribute get(Object key)
+  {
+    int slot = this.slot(key);
+
+    if (slot != -1)
+    {
+      return this.attribute(slot);
+    }
+
+    Map<String, Attribute> extras = this.extras;
+
+    return extras != null && key != null ? extras.get(key) : null;
+  }
+
+  @Override
+  public Attribute put(String key, Attribute value)
+  {
+    if (value == null)
+    {
+      throw new NullPointerException();
+    }
+
+    int slot = this.slot(key);
+
+    if (slot != -1)
+    {
+      return this.slots.getAndSet(slot, value);
+    }
+
+    return this.extras().put(key, value);
+  }
+
+  @Override
+  public Attribute remove(Object key)
+  {
+    int slot = this.slot(key);
+
+    if (slot != -1)
+    {
+      return this.slots.getAndSet(slot, null);
+    }
+
+    Map<String, Attribute> extras = this.extras;
+
+    return extras != null && key != null ? extras.remove(key) : null;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Attribute>> entrySet()
+  {
+    return new AbstractSet<Map.Entry<String, Attribute>>()
+    {
+      @Override
+      public int size()
+      {
+        return SlotAttributeMap.this.size();
+      }
+
+      @Override
+      public Iterator<Map.Entry<String, Attribute>> iterator()
+      {
+        return new EntryIterator();
+      }
+    };
+  }
+
+  /**
+   * Replaces the map with a plain map when serialized, as the plan is
+   * specific to the {@link GeoObjectType} instance of this JVM.
+   */
+  private Object writeReplace() throws ObjectStreamException
+  {
+    return new ConcurrentHashMap<String, Attribute>(this);
+  }
+
+  /**
+   * Entries of the slots create their attribute when the value is requested,
+   * so iterating over the keys does not create any attributes.
+   */
+  private class EntryIterator implements Iterator<Map.Entry<String, Attribute>>
+  {
+    private int                                     next = -1;
+
+    private Iterator<Map.Entry<String, Attribute>> extras;
+
+    /**
+     * Slot of the last returned entry, or -1 if it was not a slot
+     */
+    private int                                     last = -1;
+
+    EntryIterator()
+    {
+      this.advance();
+    }
+
+    private void advance()
+    {
+      do
+      {
+        this.next++;
+      } while (this.next < included.length && !included[this.next]);
+
+      if (this.next == included.length)
+      {
+        Map<String, Attribute> map = SlotAttributeMap.this.extras;
+
+        this.extras = ( map != null ? map.entrySet().iterator() : Collections.<Map.Entry<String, Attribute>> emptyIterator() );
+      }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return this.next < included.length || this.extras.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, Attribute> next()
+    {
+      if (this.next < included.length)
+      {
+        final int slot = this.next;
+
+        this.advance();
+        this.last = slot;
+
+        return new AbstractMap.SimpleEntry<String, Attribute>(plan.getName(slot), null)
+        {
+          private static final long serialVersionUID = -2119342604219411740L;
+
+          @Override
+          public Attribute getValue()
+          {
+            return attribute(slot);
+          }
+
+          @Override
+          public Attribute setValue(Attribute value)
+          {
+            return put(this.getKey(), value);
+          }
+        };
+      }
+
+      if (this.extras == null)
+      {
+        throw new NoSuchElementException();
+      }
+
+      this.last = -1;
+
+      return this.extras.next();
+    }
+
+    @Override
+    public void remove()
+    {
+      if (this.last != -1)
+      {
+        slots.set(this.last, null);
+      }
+      else if (this.extras != null)
+      {
+        this.extras.remove();
+      }
+      else
+      {
+        throw new IllegalStateException();
+      }
+    }
+  }
+}
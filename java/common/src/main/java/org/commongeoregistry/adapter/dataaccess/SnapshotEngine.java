@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.commongeoregistry.adapter.constants.DefaultAttribute;
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Materializes {@link GeoObjectOverTime} instances as plain {@link GeoObject}s
+ * as they were on one or more dates. Every attribute timeline of an object is
+ * swept once for all of the requested dates, and the objects are split into
+ * batches which are processed in parallel.
+ * 
+ * Dates which fall on the same day share the same snapshot. The snapshots
+ * share the values of mutable types, such as
+ * {@link LocalizedValue} and {@link Geometry}, with their source objects.
+ * The source objects must not be modified while a snapshot is taken.
+ */
+public class SnapshotEngine
+{
+  /**
+   * Inputs with fewer objects than this are processed on the calling thread
+   */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 64;
+
+  private ExecutorService executor;
+
+  private int             parallelism;
+
+  private int             parallelThreshold;
+
+  public SnapshotEngine()
+  {
+    this(createExecutor(Runtime.getRuntime().availableProcessors()), Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param executor
+   *          Executor on which the batches are processed, or null to process
+   *          everything on the calling thread
+   * @param parallelism
+   *          Number of batches the objects are split into
+   */
+  public SnapshotEngine(ExecutorService executor, int parallelism)
+  {
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+    this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+  }
+
+  public ExecutorService getExecutor()
+  {
+    return this.executor;
+  }
+
+  public int getParallelThreshold()
+  {
+    return this.parallelThreshold;
+  }
+
+  public void setParallelThreshold(int parallelThreshold)
+  {
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  public void shutdown()
+  {
+    if (this.executor != null)
+    {
+      this.executor.shutdown();
+    }
+  }
+
+  /**
+   * @return The objects as they were on the given date, in the order of the
+   *         input. A null date is the latest date, as with
+   *         {@link GeoObjectOverTime#getValue(String, Date)}.
+   */
+  public List<GeoObject> snapshot(Collection<GeoObjectOverTime> objects, Date date)
+  {
+    return this.snapshot(objects, Arrays.asList(date)).get(date);
+  }
+
+  /**
+   * @return For each of the given dates, in the order given, the objects as
+   *         they were on that date in the order of the input
+   */
+  public Map<Date, List<GeoObject>> snapshot(Collection<GeoObjectOverTime> objects, List<Date> dates)
+  {
+    final GeoObjectOverTime[] sources = objects.toArray(new GeoObjectOverTime[objects.size()]);
+    final GeoObject[][] results = new GeoObject[sources.length][];
+    final long[] days = new long[dates.size()];
+
+    for (int i = 0; i < days.length; i++)
+    {
+      days[i] = ValueOverTimeDTO.toLocalDay(dates.get(i));
+    }
+
+    if (this.executor == null || sources.length < this.parallelThreshold || this.parallelism == 1)
+    {
+      snapshot(sources, 0, sources.length, days, results);
+    }
+    else
+    {
+      int batchSize = ( sources.length + this.parallelism - 1 ) / this.parallelism;
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+      for (int start = 0; start < sources.length; start += batchSize)
+      {
+        final int from = start;
+        final int to = Math.min(start + batchSize, sources.length);
+
+        futures.add(this.executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            snapshot(sources, from, to, days, results);
+
+            return null;
+          }
+        }));
+      }
+
+      await(futures);
+    }
+
+    Map<Date, List<GeoObject>> snapshots = new LinkedHashMap<Date, List<GeoObject>>();
+
+    for (int i = 0; i < days.length; i++)
+    {
+      List<GeoObject> snapshot = new ArrayList<GeoObject>(sources.length);
+
+      for (GeoObject[] result : results)
+      {
+        snapshot.add(result[i]);
+      }
+
+      snapshots.put(dates.get(i), snapshot);
+    }
+
+    return snapshots;
+  }
+
+  /**
+   * @return The object as it was on the given date
+   */
+  public static GeoObject snapshot(GeoObjectOverTime object, Date date)
+  {
+    return snapshot(object, new long[] { ValueOverTimeDTO.toLocalDay(date) })[0];
+  }
+
+  private static void snapshot(GeoObjectOverTime[] sources, int from, int to, long[] days, GeoObject[][] results)
+  {
+    for (int i = from; i < to; i++)
+    {
+      results[i] = snapshot(sources[i], days);
+    }
+  }
+
+  /**
+   * Builds the snapshots of one object on each of the given epoch days
+   */
+  static GeoObject[] snapshot(GeoObjectOverTime object, long[] days)
+  {
+    // The timelines are swept once with the distinct days in ascending order
+    long[] sorted = days.clone();
+    int count = 0;
+
+    Arrays.sort(sorted);
+
+    for (int i = 0; i < sorted.length; i++)
+    {
+      if (count == 0 || sorted[count - 1] != sorted[i])
+      {
+        sorted[count++] = sorted[i];
+      }
+    }
+
+    sorted = Arrays.copyOf(sorted, count);
+
+    int[] order = new int[days.length];
+
+    for (int i = 0; i < days.length; i++)
+    {
+      order[i] = Arrays.binarySearch(sorted, days[i]);
+    }
+
+    GeoObjectType type = object.getType();
+    GeoObject[] snapshots = new GeoObject[sorted.length];
+
+    for (int i = 0; i < sorted.length; i++)
+    {
+      snapshots[i] = new GeoObject(type, type.getGeometryType(), GeoObject.buildAttributeMap(type));
+
+      // Attributes which have not been created hold the same default value as
+      // the attributes of the snapshot
+      for (Attribute attribute : SlotAttributeMap.created(object.attributeMap))
+      {
+        copy(attribute, snapshots[i].attributeMap.get(attribute.getName()));
+      }
+    }
+
+    ValueOverTimeDTO[] values = new ValueOverTimeDTO[sorted.length];
+    String geometry = DefaultAttribute.GEOMETRY.getName();
+
+    for (Map.Entry<String, ValueOverTimeCollectionDTO> entry : object.votAttributeMap.entrySet())
+    {
+      entry.getValue().getOnDays(sorted, values);
+
+      for (int i = 0; i < sorted.length; i++)
+      {
+        if (values[i] != null)
+        {
+          if (entry.getKey().equals(geometry))
+          {
+            snapshots[i].setGeometry((Geometry) values[i].getValue());
+          }
+          else
+          {
+            copy(values[i].getAttribute(), snapshots[i].attributeMap.get(entry.getKey()));
+          }
+        }
+      }
+    }
+
+    GeoObject[] result = new GeoObject[days.length];
+
+    for (int i = 0; i < days.length; i++)
+    {
+      result[i] = snapshots[order[i]];
+    }
+
+    return result;
+  }
+
+  /**
+   * Copies the value of the source attribute into the target attribute
+   */
+  private static void copy(Attribute source, Attribute target)
+  {
+    if (target == null)
+    {
+      return;
+    }
+
+    if (source instanceof AttributeTerm && target instanceof AttributeTerm)
+    {
+      ( (AttributeTerm) target ).clearTerms();
+
+      Iterator<String> codes = ( (AttributeTerm) source ).getValue();
+
+      while (codes.hasNext())
+      {
+        ( (AttributeTerm) target ).addTerm(codes.next());
+      }
+    }
+    else if (source instanceof AttributeClassification && target instanceof AttributeClassification)
+    {
+      ( (AttributeClassification) target ).setCode((String) source.getValue());
+      ( (AttributeClassification) target ).setLabel(( (AttributeClassification) source ).getLabel());
+    }
+    else if (source.getValue() != null)
+    {
+      target.setValue(source.getValue());
+    }
+  }
+
+  private static void await(List<Future<Void>> futures)
+  {
+    try
+    {
+      for (Future<Void> future : futures)
+      {
+        future.get();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      for (Future<Void> future : futures)
+      {
+        future.cancel(true);
+      }
+
+      Thread.currentThread().interrupt();
+
+      throw new RuntimeException(e);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private static ExecutorService createExecutor(int threads)
+  {
+    final AtomicInteger count = new AtomicInteger();
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread thread = new Thread(r, "registry-snapshot-" + count.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+      }
+    });
+    executor.allowCoreThreadTimeOut(true);
+
+    return executor;
+  }
+}
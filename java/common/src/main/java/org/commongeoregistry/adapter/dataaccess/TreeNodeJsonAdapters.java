@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.dataaccess;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.commongeoregistry.adapter.RegistryAdapter;
+import org.commongeoregistry.adapter.metadata.HierarchyType;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming {@link TypeAdapter}s for {@link ChildTreeNode} and
+ * {@link ParentTreeNode}. A tree is decoded in a single pass over the tokens of
+ * the reader: each {@link GeoObject} is decoded where it appears and the
+ * related nodes are read recursively from the same reader, so no part of the
+ * tree is converted back into a string or parsed more than once.
+ */
+public class TreeNodeJsonAdapters
+{
+  private abstract static class TreeNodeAdapter<T extends TreeNode> extends TypeAdapter<T>
+  {
+    private RegistryAdapter        registry;
+
+    private TypeAdapter<GeoObject> geoObjectAdapter;
+
+    private Gson                   gson;
+
+    public TreeNodeAdapter(RegistryAdapter registry, boolean lazy)
+    {
+      GsonBuilder builder = new GsonBuilder();
+      builder.serializeNulls();
+      builder.disableHtmlEscaping();
+
+      this.registry = registry;
+      this.gson = builder.create();
+      this.geoObjectAdapter = new GeoObjectJsonAdapters.GeoObjectTypeAdapter(registry, GeoObjectJsonAdapters.DEFAULT_SERIALIZER, lazy);
+    }
+
+    /**
+     * @return Name of the JSON array holding the related nodes
+     */
+    protected abstract String getRelationshipsName();
+
+    protected abstract T newNode(GeoObject geoObject, HierarchyType hierarchyType);
+
+    protected abstract void addRelationship(T node, T related);
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException
+    {
+      if (value == null)
+      {
+        out.nullValue();
+      }
+      else
+      {
+        this.gson.toJson(value.toJSON(), out);
+      }
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException
+    {
+      if (in.peek() == JsonToken.NULL)
+      {
+        in.nextNull();
+
+        return null;
+      }
+
+      String relationshipsName = this.getRelationshipsName();
+
+      GeoObject geoObject = null;
+      HierarchyType hierarchyType = null;
+      List<T> related = new LinkedList<T>();
+
+      in.beginObject();
+
+      while (in.hasNext())
+      {
+        String name = in.nextName();
+
+        if (name.equals(TreeNode.JSON_GEO_OBJECT))
+        {
+          geoObject = this.geoObjectAdapter.read(in);
+        }
+        else if (name.equals(TreeNode.JSON_HIERARCHY_TYPE) && in.peek() != JsonToken.NULL)
+        {
+          hierarchyType = this.registry.getMetadataCache().getHierachyType(in.nextString()).get();
+        }
+        else if (name.equals(relationshipsName) && in.peek() != JsonToken.NULL)
+        {
+          in.beginArray();
+
+          while (in.hasNext())
+          {
+            related.add(this.read(in));
+          }
+
+          in.endArray();
+        }
+        else
+        {
+          in.skipValue();
+        }
+      }
+
+      in.endObject();
+
+      T node = this.newNode(geoObject, hierarchyType);
+
+      for (T relation : related)
+      {
+        this.addRelationship(node, relation);
+      }
+
+      return node;
+    }
+  }
+
+  public static class ChildTreeNodeAdapter extends TreeNodeAdapter<ChildTreeNode>
+  {
+    public ChildTreeNodeAdapter(RegistryAdapter registry)
+    {
+      this(registry, false);
+    }
+
+    /**
+     * @param lazy
+     *          If the {@link GeoObject} of every node should be decoded on
+     *          first access, see
+     *          {@link GeoObject#fromJSON(RegistryAdapter, String, boolean)}
+     */
+    public ChildTreeNodeAdapter(RegistryAdapter registry, boolean lazy)
+    {
+      super(registry, lazy);
+    }
+
+    @Override
+    protected String getRelationshipsName()
+    {
+      return ChildTreeNode.JSON_CHILDREN;
+    }
+
+    @Override
+    protected ChildTreeNode newNode(GeoObject geoObject, HierarchyType hierarchyType)
+    {
+      return new ChildTreeNode(geoObject, hierarchyType);
+    }
+
+    @Override
+    protected void addRelationship(ChildTreeNode node, ChildTreeNode related)
+    {
+      node.addChild(related);
+    }
+  }
+
+  public static class ParentTreeNodeAdapter extends TreeNodeAdapter<ParentTreeNode>
+  {
+    public ParentTreeNodeAdapter(RegistryAdapter registry)
+    {
+      this(registry, false);
+    }
+
+    /**
+     * @param lazy
+     *          If the {@link GeoObject} of every node should be decoded on
+     *          first access, see
+     *          {@link GeoObject#fromJSON(RegistryAdapter, String, boolean)}
+     */
+    public ParentTreeNodeAdapter(RegistryAdapter registry, boolean lazy)
+    {
+      super(registry, lazy);
+    }
+
+    @Override
+    protected String getRelationshipsName()
+    {
+      return ParentTreeNode.JSON_PARENTS;
+    }
+
+    @Override
+    protected ParentTreeNode newNode(GeoObject geoObject, HierarchyType hierarchyType)
+    {
+      return new ParentTreeNode(geoObject, hierarchyType);
+    }
+
+    @Override
+    protected void addRelationship(ParentTreeNode node, ParentTreeNode related)
+    {
+      node.addParent(related);
+    }
+  }
+}
@@ -20,39 +20,143 @@ package org.commongeoregistry.adapter.dataaccess;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.commongeoregistry.adapter.metadata.AttributeType;
 
+/**
+ * The values of an attribute over time. The values are kept sorted by their
+ * start date together with primitive arrays of their start and end epoch days
+ * (see {@link org.commongeoregistry.adapter.EpochDay}), so that the value on a
+ * given date is found with a binary search.
+ * 
+ * Iteration returns the values in the order of their start date; values with
+ * the same start date keep the order in which they were added. When values
+ * overlap, a lookup by date returns the value with the earliest start date
+ * which contains the date.
+ */
 public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
 {
-  private LinkedList<ValueOverTimeDTO> valuesOverTime;
+  private static final Comparator<ValueOverTimeDTO> START_DAY_ORDER = new Comparator<ValueOverTimeDTO>()
+  {
+    @Override
+    public int compare(ValueOverTimeDTO o1, ValueOverTimeDTO o2)
+    {
+      long s1 = o1.getStartDay();
+      long s2 = o2.getStartDay();
+
+      return ( s1 < s2 ) ? -1 : ( ( s1 == s2 ) ? 0 : 1 );
+    }
+  };
+
+  private List<ValueOverTimeDTO>                    valuesOverTime;
   
   private AttributeType attributeType;
+
+  /**
+   * Start epoch day of every value, in the order of {@link #valuesOverTime}
+   */
+  private long[]                                    starts;
+
+  /**
+   * End epoch day of every value
+   */
+  private long[]                                    ends;
+
+  /**
+   * Largest end epoch day of the values up to and including each index. It is
+   * ascending, which allows the first value that contains a date to be found
+   * with a binary search even when values overlap.
+   */
+  private long[]                                    maxEnds;
+
+  /**
+   * True if the index arrays no longer match the values, for example because
+   * a value was added out of order or its dates were changed
+   */
+  private boolean                                   stale;
+
+  private boolean                                   overlapping;
   
   public ValueOverTimeCollectionDTO(AttributeType attributeType)
   {
-    this.valuesOverTime = new LinkedList<ValueOverTimeDTO>();
+    this.valuesOverTime = new ArrayList<ValueOverTimeDTO>();
     this.attributeType = attributeType;
+    this.starts = new long[4];
+    this.ends = new long[4];
+    this.maxEnds = new long[4];
   }
   
   public boolean add(ValueOverTimeDTO dto)
   {
-    return this.valuesOverTime.add(dto);
+    int size = this.valuesOverTime.size();
+
+    this.valuesOverTime.add(dto);
+
+    // Values which are added in order are appended to the index
+    if (!this.stale && ( size == 0 || dto.getStartDay() >= this.starts[size - 1] ))
+    {
+      this.append(size, dto);
+    }
+    else
+    {
+      this.stale = true;
+    }
+
+    return true;
   }
   
   public ValueOverTimeDTO get(int i)
   {
+    this.index();
+
     return this.valuesOverTime.get(i);
   }
   
   @Override
   public Iterator<ValueOverTimeDTO> iterator()
   {
-    return this.valuesOverTime.iterator();
+    this.index();
+
+    final List<ValueOverTimeDTO> list = this.valuesOverTime;
+    final Iterator<ValueOverTimeDTO> iterator = list.iterator();
+
+    return new Iterator<ValueOverTimeDTO>()
+    {
+      private ValueOverTimeDTO current;
+
+      @Override
+      public boolean hasNext()
+      {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public ValueOverTimeDTO next()
+      {
+        this.current = iterator.next();
+
+        return this.current;
+      }
+
+      @Override
+      public void remove()
+      {
+        iterator.remove();
+
+        // The index may have been rebuilt into a new list during the iteration
+        if (list != valuesOverTime)
+        {
+          valuesOverTime.remove(this.current);
+        }
+
+        invalidate();
+      }
+    };
   }
   
   @Override
@@ -79,14 +183,11 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
    */
   public Attribute getAttributeAtStartDate(Date date)
   {
-    Date localDate = ValueOverTimeDTO.toLocal(date);
+    ValueOverTimeDTO vot = this.getAtStartDate(date);
     
-    for (ValueOverTimeDTO vot : this.valuesOverTime)
+    if (vot != null)
     {
-      if (vot.getStartDate().equals(localDate))
-      {
-        return vot.getAttribute();
-      }
+      return vot.getAttribute();
     }
     
     return null;
@@ -110,14 +211,15 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
   
   public ValueOverTimeDTO getAtStartDate(Date date)
   {
-    Date localDate = ValueOverTimeDTO.toLocal(date);
-    
-    for (ValueOverTimeDTO vot : this.valuesOverTime)
+    long localDay = ValueOverTimeDTO.toLocalDay(date);
+
+    this.index();
+
+    int index = this.lowerBound(localDay);
+
+    if (index < this.valuesOverTime.size() && this.starts[index] == localDay)
     {
-      if (vot.getStartDate().equals(localDate))
-      {
-        return vot;
-      }
+      return this.valuesOverTime.get(index);
     }
     
     return null;
@@ -141,14 +243,11 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
   
   public Attribute getAttributeOnDate(Date date)
   {
-    Date localDate = ValueOverTimeDTO.toLocal(date);
-    
-    for (ValueOverTimeDTO vot : this.valuesOverTime)
+    ValueOverTimeDTO vot = this.getOnDay(ValueOverTimeDTO.toLocalDay(date));
+
+    if (vot != null)
     {
-      if (vot.between(localDate))
-      {
-        return vot.getAttribute();
-      }
+      return vot.getAttribute();
     }
     
     return null;
@@ -156,12 +255,11 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
   
   public Object getValueOnDate(Date date)
   {
-    for (ValueOverTimeDTO vot : this.valuesOverTime)
+    ValueOverTimeDTO vot = this.getOnDay(ValueOverTimeDTO.toLocalDay(date));
+
+    if (vot != null)
     {
-      if (vot.between(date))
-      {
-        return vot.getValue();
-      }
+      return vot.getValue();
     }
     
     return Attribute.attributeFactory(this.getAttributeType()).getValue();
@@ -169,14 +267,245 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
   
   public void setValue(Object value, Date date)
   {
-    for (ValueOverTimeDTO vot : this.valuesOverTime)
+    ValueOverTimeDTO vot = this.getOnDay(ValueOverTimeDTO.toLocalDay(date));
+
+    if (vot != null)
+    {
+      vot.setValue(value);
+    }
+  }
+
+  /**
+   * Returns the value which contains the given epoch day, or null if there is
+   * none. When values overlap the one with the earliest start date is
+   * returned.
+   */
+  public ValueOverTimeDTO getOnDay(long epochDay)
+  {
+    this.index();
+
+    // Values after this index start after the day
+    int last = this.upperBound(epochDay) - 1;
+
+    if (last < 0)
+    {
+      return null;
+    }
+
+    if (!this.overlapping)
+    {
+      return ( this.ends[last] >= epochDay ) ? this.valuesOverTime.get(last) : null;
+    }
+
+    // The first value whose end reaches the day is the first value which
+    // contains it, because its start is not after the day
+    int low = 0;
+    int high = last;
+
+    while (low < high)
+    {
+      int mid = ( low + high ) >>> 1;
+
+      if (this.maxEnds[mid] >= epochDay)
+      {
+        high = mid;
+      }
+      else
+      {
+        low = mid + 1;
+      }
+    }
+
+    return ( this.maxEnds[low] >= epochDay ) ? this.valuesOverTime.get(low) : null;
+  }
+
+  /**
+   * Finds the value on each of the given epoch days, see
+   * {@link #getOnDay(long)}. The days must be in ascending order, which allows
+   * the values to be found in a single pass when they do not overlap.
+   * 
+   * @param days
+   *          Ascending epoch days
+   * @param values
+   *          Receives the value on each day, or null
+   */
+  void getOnDays(long[] days, ValueOverTimeDTO[] values)
+  {
+    this.index();
+
+    if (this.overlapping)
+    {
+      for (int i = 0; i < days.length; i++)
+      {
+        values[i] = this.getOnDay(days[i]);
+      }
+
+      return;
+    }
+
+    int size = this.valuesOverTime.size();
+    int index = -1;
+
+    for (int i = 0; i < days.length; i++)
+    {
+      long day = days[i];
+
+      while (index + 1 < size && this.starts[index + 1] <= day)
+      {
+        index++;
+      }
+
+      values[i] = ( index >= 0 && this.ends[index] >= day ) ? this.valuesOverTime.get(index) : null;
+    }
+  }
+
+  /**
+   * @return True if the date ranges of any of the values overlap
+   */
+  public boolean hasOverlaps()
+  {
+    this.index();
+
+    return this.overlapping;
+  }
+
+  /**
+   * @return True if any of the values overlaps the given date range. A null
+   *         end date is treated as {@link ValueOverTimeDTO#INFINITY_END_DATE}.
+   */
+  public boolean overlaps(Date startDate, Date endDate)
+  {
+    long startDay = ValueOverTimeDTO.toLocalDay(startDate);
+    long endDay = ValueOverTimeDTO.toLocalDay(endDate);
+
+    this.index();
+
+    int last = this.upperBound(endDay) - 1;
+
+    return last >= 0 && this.maxEnds[last] >= startDay;
+  }
+
+  /**
+   * Marks the index as stale. Called when the dates of a value in this
+   * collection change.
+   */
+  void invalidate()
+  {
+    this.stale = true;
+  }
+
+  /**
+   * Rebuilds the index if it is stale. The values are sorted into a new list
+   * so that iterators which are in progress are not disturbed.
+   */
+  private synchronized void index()
+  {
+    if (this.stale)
+    {
+      List<ValueOverTimeDTO> sorted = new ArrayList<ValueOverTimeDTO>(this.valuesOverTime);
+
+      Collections.sort(sorted, START_DAY_ORDER);
+
+      this.valuesOverTime = sorted;
+      this.overlapping = false;
+
+      for (int i = 0; i < sorted.size(); i++)
+      {
+        this.append(i, sorted.get(i));
+      }
+
+      this.stale = false;
+    }
+  }
+
+  private void append(int index, ValueOverTimeDTO dto)
+  {
+    if (index == this.starts.length)
+    {
+      int capacity = Math.max(4, index * 2);
+
+      this.starts = copyOf(this.starts, capacity);
+      this.ends = copyOf(this.ends, capacity);
+      this.maxEnds = copyOf(this.maxEnds, capacity);
+    }
+
+    long start = dto.getStartDay();
+    long end = dto.getEndDay();
+
+    this.starts[index] = start;
+    this.ends[index] = end;
+
+    if (index == 0)
+    {
+      this.maxEnds[index] = end;
+      this.overlapping = false;
+    }
+    else
+    {
+      long previous = this.maxEnds[index - 1];
+
+      this.maxEnds[index] = Math.max(previous, end);
+      this.overlapping |= ( start <= previous );
+    }
+  }
+
+  private static long[] copyOf(long[] array, int length)
+  {
+    long[] copy = new long[length];
+
+    System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+
+    return copy;
+  }
+
+  /**
+   * @return The index of the first value which starts on or after the day
+   */
+  private int lowerBound(long epochDay)
+  {
+    int low = 0;
+    int high = this.valuesOverTime.size();
+
+    while (low < high)
     {
-      if (vot.between(date))
+      int mid = ( low + high ) >>> 1;
+
+      if (this.starts[mid] < epochDay)
+      {
+        low = mid + 1;
+      }
+      else
       {
-        vot.setValue(value);
-        return;
+        high = mid;
       }
     }
+
+    return low;
+  }
+
+  /**
+   * @return The index of the first value which starts after the day
+   */
+  private int upperBound(long epochDay)
+  {
+    int low = 0;
+    int high = this.valuesOverTime.size();
+
+    while (low < high)
+    {
+      int mid = ( low + high ) >>> 1;
+
+      if (this.starts[mid] <= epochDay)
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+
+    return low;
   }
 
 //  public JsonArray toJSON(CustomSerializer serializer)
@@ -221,19 +550,30 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
   @Override
   public Object[] toArray()
   {
+    this.index();
+
     return valuesOverTime.toArray();
   }
 
   @Override
   public <T> T[] toArray(T[] a)
   {
+    this.index();
+
     return valuesOverTime.toArray(a);
   }
 
   @Override
   public boolean remove(Object o)
   {
-    return valuesOverTime.remove(o);
+    boolean removed = valuesOverTime.remove(o);
+
+    if (removed)
+    {
+      this.invalidate();
+    }
+
+    return removed;
   }
 
   @Override
@@ -245,25 +585,47 @@ public class ValueOverTimeCollectionDTO implements Collection<ValueOverTimeDTO>
   @Override
   public boolean addAll(Collection<? extends ValueOverTimeDTO> c)
   {
-    return valuesOverTime.addAll(c);
+    for (ValueOverTimeDTO dto : c)
+    {
+      this.add(dto);
+    }
+
+    return !c.isEmpty();
   }
 
   @Override
   public boolean removeAll(Collection<?> c)
   {
-    return valuesOverTime.removeAll(c);
+    boolean removed = valuesOverTime.removeAll(c);
+
+    if (removed)
+    {
+      this.invalidate();
+    }
+
+    return removed;
   }
 
   @Override
   public boolean retainAll(Collection<?> c)
   {
-    return valuesOverTime.retainAll(c);
+    boolean removed = valuesOverTime.retainAll(c);
+
+    if (removed)
+    {
+      this.invalidate();
+    }
+
+    return removed;
   }
 
   @Override
   public void clear()
   {
     valuesOverTime.clear();
+
+    this.stale = false;
+    this.overlapping = false;
   }
   
   @Override
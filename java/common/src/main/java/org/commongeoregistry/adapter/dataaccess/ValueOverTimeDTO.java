@@ -21,10 +21,10 @@ package org.commongeoregistry.adapter.dataaccess;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
 
+import org.commongeoregistry.adapter.EpochDay;
 import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.metadata.CustomSerializer;
 
@@ -34,17 +34,18 @@ import com.google.gson.JsonParser;
 
 public class ValueOverTimeDTO
 {
-  public static final Date INFINITY_END_DATE;
+  public static final long INFINITY_END_DAY  = EpochDay.of(5000, 12, 31);
 
-  static
-  {
-    Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-    cal.clear();
-    cal.set(5000, Calendar.DECEMBER, 31);
+  public static final Date INFINITY_END_DATE = EpochDay.toDate(INFINITY_END_DAY);
+
+  /**
+   * The dates are kept as epoch days, see {@link EpochDay}. The {@link Date}
+   * objects are only created when they are requested.
+   */
+  private long   startDay;
+
+  private long   endDay;
 
-    INFINITY_END_DATE = cal.getTime();
-  }
-  
   private Date   startDate;
 
   private Date endDate;
@@ -61,33 +62,55 @@ public class ValueOverTimeDTO
     this.collection = collection;
     this.attribute = Attribute.attributeFactory(collection.getAttributeType());
     
-    this.setStartDate(startDate);
-    this.setEndDate(endDate);
+    this.startDay = toLocalDay(startDate);
+    this.endDay = toLocalDay(endDate);
+  }
+
+  /**
+   * @param startDay
+   *          Epoch day of the start date
+   * @param endDay
+   *          Epoch day of the end date
+   */
+  public ValueOverTimeDTO(String oid, long startDay, long endDay, ValueOverTimeCollectionDTO collection)
+  {
+    this.oid = oid;
+    this.collection = collection;
+    this.attribute = Attribute.attributeFactory(collection.getAttributeType());
+    this.startDay = startDay;
+    this.endDay = endDay;
   }
   
   public boolean between(Date date)
   {
-    Date localDate = toLocal(date);
-    Date endDate = this.getEndDate();
-    Date startDate = this.getStartDate();
-    
-    return ( startDate.equals(localDate) || startDate.before(localDate) ) && ( endDate.equals(localDate) || endDate.after(localDate) );
+    return this.between(toLocalDay(date));
   }
-  
-  public static Date toLocal(Date date) {
+
+  /**
+   * @return If the given epoch day is within the start and end date of this
+   *         value, inclusive
+   */
+  public boolean between(long epochDay)
+  {
+    return this.startDay <= epochDay && epochDay <= this.endDay;
+  }
+
+  /**
+   * @return The epoch day of the given date in GMT, or the day of
+   *         {@link #INFINITY_END_DATE} if the date is null
+   */
+  public static long toLocalDay(Date date)
+  {
     if (date == null)
     {
-      date = INFINITY_END_DATE;
+      return INFINITY_END_DAY;
     }
-    
-    Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-    cal.clear();
-    cal.setTime(date);
-    cal.set(Calendar.HOUR_OF_DAY, 0);
-    cal.set(Calendar.MINUTE, 0);
-    cal.set(Calendar.SECOND, 0);
-    cal.set(Calendar.MILLISECOND, 0);
-    return cal.getTime();
+
+    return EpochDay.of(date);
+  }
+  
+  public static Date toLocal(Date date) {
+    return EpochDay.toDate(toLocalDay(date));
     
 //    DateUtils.truncate(date, Calendar.DATE);
 //    DateUtils.
@@ -108,11 +131,9 @@ public class ValueOverTimeDTO
   {
     JsonObject ret = new JsonObject();
     
-    SimpleDateFormat format = getTimeFormatter();
-    
     ret.addProperty("oid", this.getOid());
-    ret.addProperty("startDate", format.format(this.getStartDate()));
-    ret.addProperty("endDate", format.format(this.getEndDate()));
+    ret.addProperty("startDate", EpochDay.format(this.startDay));
+    ret.addProperty("endDate", EpochDay.format(this.endDay));
     
     JsonElement value = this.attribute.toJSON(serializer);
     ret.add("value", value);
@@ -120,6 +141,10 @@ public class ValueOverTimeDTO
     return ret;
   }
   
+  /**
+   * @return A new formatter for the dates of the JSON. {@link EpochDay} parses
+   *         and formats the same dates without creating a formatter.
+   */
   public static SimpleDateFormat getTimeFormatter()
   {
     SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
@@ -129,10 +154,11 @@ public class ValueOverTimeDTO
   
   public static ValueOverTimeDTO fromJSON(String json, ValueOverTimeCollectionDTO collection, RegistryAdapter registry)
   {
-    JsonObject jo = new JsonParser().parse(json).getAsJsonObject();
-    
-    SimpleDateFormat format = getTimeFormatter();
-    
+    return fromJSON(new JsonParser().parse(json).getAsJsonObject(), collection, registry);
+  }
+  
+  public static ValueOverTimeDTO fromJSON(JsonObject jo, ValueOverTimeCollectionDTO collection, RegistryAdapter registry)
+  {
     try
     {
       String oid = null;
@@ -141,10 +167,10 @@ public class ValueOverTimeDTO
         oid = jo.get("oid").getAsString();
       }
       
-      Date startDate = format.parse(jo.get("startDate").getAsString());
-      Date endDate = format.parse(jo.get("endDate").getAsString());
+      long startDay = EpochDay.parse(jo.get("startDate").getAsString());
+      long endDay = EpochDay.parse(jo.get("endDate").getAsString());
       
-      ValueOverTimeDTO ret = new ValueOverTimeDTO(oid, startDate, endDate, collection);
+      ValueOverTimeDTO ret = new ValueOverTimeDTO(oid, startDay, endDay, collection);
       
       ret.attribute.fromJSON(jo.get("value"), registry);
       
@@ -159,13 +185,29 @@ public class ValueOverTimeDTO
   public Date getStartDate()
   {
 //    return Date.from(startDate.atStartOfDay().atZone(ZoneId.of("Z")).toInstant());
+    if (this.startDate == null)
+    {
+      this.startDate = ( this.startDay == INFINITY_END_DAY ) ? INFINITY_END_DATE : EpochDay.toDate(this.startDay);
+    }
+
     return startDate;
   }
 
   public void setStartDate(Date startDate)
   {
 //    this.startDate = startDate.toInstant().atZone(ZoneId.of("Z")).toLocalDate();
-    this.startDate = toLocal(startDate);
+    this.startDay = toLocalDay(startDate);
+    this.startDate = null;
+
+    this.invalidate();
+  }
+
+  /**
+   * @return The epoch day of the start date
+   */
+  public long getStartDay()
+  {
+    return this.startDay;
   }
   
 //  public LocalDate getLocalStartDate()
@@ -175,14 +217,22 @@ public class ValueOverTimeDTO
 
   public Date getEndDate()
   {
-    if (endDate == null)
+//    return Date.from(endDate.atStartOfDay().atZone(ZoneId.of("Z")).toInstant());
+    if (this.endDate == null)
     {
-      return INFINITY_END_DATE;
+      this.endDate = ( this.endDay == INFINITY_END_DAY ) ? INFINITY_END_DATE : EpochDay.toDate(this.endDay);
     }
-    
-//    return Date.from(endDate.atStartOfDay().atZone(ZoneId.of("Z")).toInstant());
+
     return endDate;
   }
+
+  /**
+   * @return The epoch day of the end date
+   */
+  public long getEndDay()
+  {
+    return this.endDay;
+  }
   
 //  public LocalDate getLocalEndDate()
 //  {
@@ -191,14 +241,21 @@ public class ValueOverTimeDTO
 
   public void setEndDate(Date endDate)
   {
-    if (endDate != null)
-    {
 //      this.endDate = endDate.toInstant().atZone(ZoneId.of("Z")).toLocalDate();
-      this.endDate = toLocal(endDate);
-    }
-    else
+    this.endDay = toLocalDay(endDate);
+    this.endDate = null;
+
+    this.invalidate();
+  }
+
+  /**
+   * The index of the collection depends on the dates of its values
+   */
+  private void invalidate()
+  {
+    if (this.collection != null)
     {
-      this.endDate = INFINITY_END_DATE;
+      this.collection.invalidate();
     }
   }
 
@@ -237,13 +294,7 @@ public class ValueOverTimeDTO
   {
     DateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy");
 
-    String endDate = "null";
-    if (this.endDate != null)
-    {
-      endDate = dateFormat.format(this.endDate);
-    }
-
-    return "value [" + this.attribute.getValue() + "] from " + dateFormat.format(this.startDate) + " to " + endDate;
+    return "value [" + this.attribute.getValue() + "] from " + dateFormat.format(this.getStartDate()) + " to " + dateFormat.format(this.getEndDate());
   }
   
 }
@@ -20,22 +20,66 @@ package org.commongeoregistry.adapter.http;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.commongeoregistry.adapter.constants.RegistryUrls;
+import org.commongeoregistry.adapter.http.HttpResponseCache.CachedResponse;
 
-public abstract class AbstractHttpConnector implements Connector
+public abstract class AbstractHttpConnector implements StreamingConnector
 {
-  private String serverurl;
+  /**
+   * Request bodies smaller than this many bytes are not worth compressing.
+   */
+  public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+  private String         serverurl;
+
+  /**
+   * Optional limit of the requests in flight per route. If set, connections
+   * whose response was read to the end are left in the keep-alive cache of the
+   * platform, otherwise every connection is disconnected after its request.
+   */
+  private ConnectionPool connectionPool;
+
+  /**
+   * Optional cache of GET responses which are revalidated with conditional
+   * requests.
+   */
+  private HttpResponseCache responseCache;
+
+  /**
+   * Flag denoting if the server may send gzip or deflate encoded responses.
+   */
+  private boolean        acceptCompression    = true;
+
+  /**
+   * Flag denoting if POST bodies are sent gzip encoded. The server must
+   * support the Content-Encoding request header for this to be enabled.
+   */
+  private boolean        compressRequests     = false;
+
+  /**
+   * Minimum size in bytes of a POST body before it is compressed.
+   */
+  private int            compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
 
   public String getServerUrl()
   {
@@ -52,11 +96,113 @@ public abstract class AbstractHttpConnector implements Connector
     this.serverurl = url;
   }
 
+  public ConnectionPool getConnectionPool()
+  {
+    return connectionPool;
+  }
+
+  public void setConnectionPool(ConnectionPool connectionPool)
+  {
+    this.connectionPool = connectionPool;
+  }
+
+  public HttpResponseCache getResponseCache()
+  {
+    return responseCache;
+  }
+
+  public void setResponseCache(HttpResponseCache responseCache)
+  {
+    this.responseCache = responseCache;
+  }
+
+  public boolean isAcceptCompression()
+  {
+    return acceptCompression;
+  }
+
+  public void setAcceptCompression(boolean acceptCompression)
+  {
+    this.acceptCompression = acceptCompression;
+  }
+
+  public boolean isCompressRequests()
+  {
+    return compressRequests;
+  }
+
+  public void setCompressRequests(boolean compressRequests)
+  {
+    this.compressRequests = compressRequests;
+  }
+
+  public int getCompressionThreshold()
+  {
+    return compressionThreshold;
+  }
+
+  public void setCompressionThreshold(int compressionThreshold)
+  {
+    this.compressionThreshold = compressionThreshold;
+  }
+
   protected void configureHttpUrlConnectionPost(HttpURLConnection con)
   {
     // Stub method overwritten in subtypes
   }
 
+  /**
+   * Opens a connection to the given URL, waiting for a free slot of the
+   * connection pool if one is configured.
+   * 
+   * @param url
+   * @return
+   * @throws IOException
+   */
+  protected HttpURLConnection openConnection(URL url) throws IOException
+  {
+    if (this.connectionPool != null)
+    {
+      this.connectionPool.acquire(url);
+
+      try
+      {
+        return (HttpURLConnection) url.openConnection();
+      }
+      catch (IOException | RuntimeException e)
+      {
+        this.connectionPool.release(url, null, false);
+
+        throw e;
+      }
+    }
+
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  /**
+   * Releases a connection opened with {@link #openConnection(URL)}. Without a
+   * pool the connection is always disconnected.
+   * 
+   * @param url
+   *          URL the connection was opened with
+   * @param con
+   * @param reusable
+   *          true if the response body was read to the end, in which case the
+   *          underlying socket can be kept alive.
+   */
+  protected void releaseConnection(URL url, HttpURLConnection con, boolean reusable)
+  {
+    if (this.connectionPool != null)
+    {
+      this.connectionPool.release(url, con, reusable);
+    }
+    else
+    {
+      con.disconnect();
+    }
+  }
+
   @Override
   public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
   {
@@ -75,6 +221,156 @@ public abstract class AbstractHttpConnector implements Connector
    * java.util.Map)
    */
   public HttpResponse httpGetRaw(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    URL obj = this.buildUrl(url, params);
+    HttpURLConnection con = this.openConnection(obj);
+    boolean reusable = false;
+
+    HttpResponseCache cache = this.responseCache;
+    CachedResponse cached = ( cache != null ) ? cache.get(obj.toString()) : null;
+
+    try
+    {
+      setValidators(con, cached);
+
+      int status = this.connectGet(con);
+
+      HttpResponse response = this.readResponse(con, status);
+      reusable = true;
+
+      if (cache != null)
+      {
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        {
+          cache.hit();
+
+          return new HttpResponse(cached.getBody(), HttpURLConnection.HTTP_OK);
+        }
+        else if (status == HttpURLConnection.HTTP_OK)
+        {
+          cache.put(obj.toString(), con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"), response.getAsString());
+        }
+      }
+
+      return response;
+    }
+    finally
+    {
+      this.releaseConnection(obj, con, reusable);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * org.commongeoregistry.adapter.http.StreamingConnector#httpGetStream(java.
+   * lang.String, java.util.Map)
+   */
+  @Override
+  public HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    StringBuilder builder = new StringBuilder();
+    builder.append(RegistryUrls.REGISTRY_CONTROLLER_URL);
+    builder.append("/");
+    builder.append(url);
+
+    return httpGetRawStream(builder.toString(), params);
+  }
+
+  /**
+   * Same as {@link #httpGetRaw(String, Map)} except that a successful response
+   * is not buffered. The returned {@link HttpResponse} reads the body directly
+   * from the connection and must be closed to release the connection.
+   * Streamed responses are revalidated against the response cache like
+   * buffered ones, and their body is stored once it has been read to the end.
+   * 
+   * @param url
+   * @param params
+   * @return
+   * @throws AuthenticationException
+   * @throws IOException
+   */
+  public HttpResponse httpGetRawStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    URL obj = this.buildUrl(url, params);
+    HttpURLConnection con = this.openConnection(obj);
+    boolean streaming = false;
+    boolean reusable = false;
+
+    HttpResponseCache cache = this.responseCache;
+    CachedResponse cached = ( cache != null ) ? cache.get(obj.toString()) : null;
+
+    try
+    {
+      setValidators(con, cached);
+
+      int status = this.connectGet(con);
+
+      if (status != HttpURLConnection.HTTP_OK)
+      {
+        HttpResponse response = this.readResponse(con, status);
+        reusable = true;
+
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        {
+          cache.hit();
+
+          return new HttpResponse(cached.getBody(), HttpURLConnection.HTTP_OK);
+        }
+
+        return response;
+      }
+
+      InputStream raw = con.getInputStream();
+      InputStream is = new ReleasingInputStream(obj, con, raw, this.decode(con, raw));
+      Reader reader = new InputStreamReader(is, "UTF-8");
+
+      String etag = con.getHeaderField("ETag");
+      String lastModified = con.getHeaderField("Last-Modified");
+
+      if (cache != null)
+      {
+        if (etag != null || lastModified != null)
+        {
+          reader = new CachingReader(reader, cache, obj.toString(), etag, lastModified);
+        }
+        else
+        {
+          cache.remove(obj.toString());
+        }
+      }
+
+      streaming = true;
+
+      return new HttpResponse(reader, status);
+    }
+    finally
+    {
+      if (!streaming)
+      {
+        this.releaseConnection(obj, con, reusable);
+      }
+    }
+  }
+
+  private static void setValidators(HttpURLConnection con, CachedResponse cached)
+  {
+    if (cached != null)
+    {
+      if (cached.getEtag() != null)
+      {
+        con.setRequestProperty("If-None-Match", cached.getEtag());
+      }
+
+      if (cached.getLastModified() != null)
+      {
+        con.setRequestProperty("If-Modified-Since", cached.getLastModified());
+      }
+    }
+  }
+
+  private URL buildUrl(String url, Map<String, String> params) throws IOException
   {
     StringBuilder builder = new StringBuilder();
     builder.append(this.getServerUrl());
@@ -98,46 +394,165 @@ public abstract class AbstractHttpConnector implements Connector
       }
     }
 
-    URL obj = new URL(builder.toString());
-    HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+    return new URL(builder.toString());
+  }
 
-    try
+  /**
+   * Sends a GET request on the connection and returns the response status.
+   */
+  private int connectGet(HttpURLConnection con) throws AuthenticationException, IOException
+  {
+    con.setRequestMethod("GET");
+    con.setRequestProperty("Accept", "application/json");
+
+    this.configureAcceptEncoding(con);
+    this.configureHttpUrlConnectionPost(con);
+
+    con.connect();
+
+    int status = this.getResponseCode(con);
+
+    if (status == HttpURLConnection.HTTP_UNAUTHORIZED)
     {
-      con.setRequestMethod("GET");
-      con.setRequestProperty("Accept", "application/json");
+      throw new AuthenticationException();
+    }
 
-      this.configureHttpUrlConnectionPost(con);
+    return status;
+  }
 
-      con.connect();
+  /**
+   * Reads the full body of the response. Reaching the end of the stream hands
+   * the underlying socket back to the platform keep-alive cache.
+   */
+  private HttpResponse readResponse(HttpURLConnection con, int status) throws IOException
+  {
+    InputStream is = ( status != HttpURLConnection.HTTP_OK ) ? con.getErrorStream() : con.getInputStream();
 
-      int status = this.getResponseCode(con);
+    if (is == null)
+    {
+      return new HttpResponse("", status);
+    }
 
-      if (status == HttpURLConnection.HTTP_UNAUTHORIZED)
-      {
-        throw new AuthenticationException();
-      }
+    InputStream decoded = this.decode(con, is);
 
-      InputStream is = ( status != HttpURLConnection.HTTP_OK ) ? con.getErrorStream() : con.getInputStream();
+    BufferedReader in = new BufferedReader(new InputStreamReader(decoded));
 
-      try (BufferedReader in = new BufferedReader(new InputStreamReader(is)))
-      {
-        String inputLine;
-        StringBuffer response = new StringBuffer();
+    String inputLine;
+    StringBuffer response = new StringBuffer();
 
-        while ( ( inputLine = in.readLine() ) != null)
-        {
-          response.append(inputLine);
-        }
+    while ( ( inputLine = in.readLine() ) != null)
+    {
+      response.append(inputLine);
+    }
 
-        return new HttpResponse(response.toString(), con.getResponseCode());
-      }
+    if (decoded != is)
+    {
+      /*
+       * The decoder stops at the end of the compressed data, make sure the
+       * connection stream itself reaches the end so it can be kept alive.
+       */
+      drain(is);
     }
-    finally
+
+    in.close();
+
+    return new HttpResponse(response.toString(), status);
+  }
+
+  private void configureAcceptEncoding(HttpURLConnection con)
+  {
+    if (this.acceptCompression)
     {
-      con.disconnect();
+      con.setRequestProperty("Accept-Encoding", "gzip, deflate");
+    }
+  }
+
+  /**
+   * Wraps the response stream in a decoder matching the Content-Encoding of
+   * the response. Unknown or missing encodings are returned as is.
+   */
+  private InputStream decode(HttpURLConnection con, InputStream is) throws IOException
+  {
+    String encoding = con.getContentEncoding();
+
+    if (encoding == null || con.getContentLength() == 0)
+    {
+      return is;
+    }
+
+    encoding = encoding.trim();
+
+    if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip"))
+    {
+      return new GZIPInputStream(is);
+    }
+    else if (encoding.equalsIgnoreCase("deflate"))
+    {
+      return new InflaterInputStream(is);
+    }
+
+    return is;
+  }
+
+  private static void drain(InputStream is) throws IOException
+  {
+    byte[] buffer = new byte[512];
+
+    while (is.read(buffer) != -1)
+    {
+      // Discard trailing bytes
     }
   }
 
+  /**
+   * @return true if request compression is enabled and the body is at least
+   *         {@link #getCompressionThreshold()} bytes long.
+   */
+  private boolean isCompressed(byte[] bytes)
+  {
+    return this.compressRequests && bytes.length >= this.compressionThreshold;
+  }
+
+  private static byte[] compress(byte[] bytes) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(bytes);
+    gzip.close();
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Connects and opens the request body
+   * 
+   * @param length
+   *          Length of the body, or -1 to send it chunked
+   * @param gzip
+   *          Whether the body is gzip encoded
+   */
+  private static OutputStream openBody(HttpURLConnection con, int length, boolean gzip) throws IOException
+  {
+    if (gzip)
+    {
+      con.setRequestProperty("Content-Encoding", "gzip");
+    }
+
+    if (length >= 0)
+    {
+      con.setFixedLengthStreamingMode(length);
+    }
+    else
+    {
+      con.setChunkedStreamingMode(0);
+    }
+
+    con.connect();
+
+    return new BufferedOutputStream(con.getOutputStream());
+  }
+
   private int getResponseCode(HttpURLConnection con) throws AuthenticationException
   {
     try
@@ -169,6 +584,30 @@ public abstract class AbstractHttpConnector implements Connector
    */
   @Override
   public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+  {
+    return this.post(url, body.getBytes("utf-8"), null);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * org.commongeoregistry.adapter.http.StreamingConnector#httpPost(java.lang.
+   * String, org.commongeoregistry.adapter.http.BodyWriter)
+   */
+  @Override
+  public HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException
+  {
+    return this.post(url, null, body);
+  }
+
+  /**
+   * Posts either the given bytes or the output of the given writer. When
+   * request compression is enabled the output of the writer is buffered until
+   * it reaches the compression threshold, at which point the rest of the body
+   * is compressed and sent chunked. Smaller bodies are sent as is.
+   */
+  private HttpResponse post(String url, byte[] bytes, BodyWriter writer) throws AuthenticationException, IOException
   {
     StringBuilder builder = new StringBuilder();
     builder.append(this.getServerUrl());
@@ -177,25 +616,42 @@ public abstract class AbstractHttpConnector implements Connector
     builder.append(url);
 
     URL obj = new URL(builder.toString());
-    HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+    HttpURLConnection con = this.openConnection(obj);
+    boolean reusable = false;
 
     try
     {
       con.setRequestProperty("Content-Type", "application/json");
       con.setRequestMethod("POST");
       con.setDoOutput(true);
-      con.setChunkedStreamingMode(0);
 
+      this.configureAcceptEncoding(con);
       this.configureHttpUrlConnectionPost(con);
 
-      con.connect();
-
       /*
        * Post the data
        */
-      OutputStream out = new BufferedOutputStream(con.getOutputStream());
-      out.write(body.getBytes("utf-8"));
-      out.close();
+      if (bytes != null)
+      {
+        boolean compress = this.isCompressed(bytes);
+
+        if (compress)
+        {
+          bytes = compress(bytes);
+        }
+
+        OutputStream out = openBody(con, bytes.length, compress);
+        out.write(bytes);
+        out.close();
+      }
+      else
+      {
+        OutputStream out = this.compressRequests ? new ThresholdOutputStream(con, this.compressionThreshold) : openBody(con, -1, false);
+
+        Writer body = new OutputStreamWriter(out, "utf-8");
+        writer.write(body);
+        body.close();
+      }
 
       int status = this.getResponseCode(con);
 
@@ -204,24 +660,261 @@ public abstract class AbstractHttpConnector implements Connector
         throw new AuthenticationException();
       }
 
-      InputStream is = ( status != HttpURLConnection.HTTP_OK ) ? con.getErrorStream() : con.getInputStream();
+      HttpResponse response = this.readResponse(con, status);
+      reusable = true;
+
+      return response;
+    }
+    finally
+    {
+      this.releaseConnection(obj, con, reusable);
+    }
+  }
+
+  /**
+   * Request body which is buffered until it reaches the compression
+   * threshold. The connection is only opened once the size of the body is
+   * known to be below the threshold or once it reaches it, in which case the
+   * body is compressed.
+   */
+  private static class ThresholdOutputStream extends OutputStream
+  {
+    private HttpURLConnection     con;
+
+    private int                   threshold;
+
+    private ByteArrayOutputStream buffer;
+
+    private OutputStream          out;
+
+    public ThresholdOutputStream(HttpURLConnection con, int threshold)
+    {
+      this.con = con;
+      this.threshold = threshold;
+      this.buffer = new ByteArrayOutputStream();
+    }
 
-      try (BufferedReader in = new BufferedReader(new InputStreamReader(is)))
+    @Override
+    public void write(int b) throws IOException
+    {
+      this.write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      if (this.out == null)
       {
-        String inputLine;
-        StringBuffer response = new StringBuffer();
+        this.buffer.write(b, off, len);
 
-        while ( ( inputLine = in.readLine() ) != null)
+        if (this.buffer.size() >= this.threshold)
         {
-          response.append(inputLine);
+          this.out = new GZIPOutputStream(openBody(this.con, -1, true));
+          this.buffer.writeTo(this.out);
+          this.buffer = null;
         }
+      }
+      else
+      {
+        this.out.write(b, off, len);
+      }
+    }
 
-        return new HttpResponse(response.toString(), con.getResponseCode());
+    @Override
+    public void flush() throws IOException
+    {
+      // The buffered body is sent once its size is known
+      if (this.out != null)
+      {
+        this.out.flush();
       }
     }
-    finally
+
+    @Override
+    public void close() throws IOException
     {
-      con.disconnect();
+      if (this.out == null)
+      {
+        this.out = openBody(this.con, this.buffer.size(), false);
+        this.buffer.writeTo(this.out);
+        this.buffer = null;
+      }
+
+      this.out.close();
+    }
+  }
+
+  /**
+   * Streamed body which is stored in the response cache once it has been read
+   * to the end. Bodies larger than the maximum size of the cache are not
+   * copied.
+   */
+  private static class CachingReader extends FilterReader
+  {
+    private HttpResponseCache cache;
+
+    private String            url;
+
+    private String            etag;
+
+    private String            lastModified;
+
+    private StringBuilder     body;
+
+    public CachingReader(Reader reader, HttpResponseCache cache, String url, String etag, String lastModified)
+    {
+      super(reader);
+
+      this.cache = cache;
+      this.url = url;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.body = new StringBuilder();
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      int c = super.read();
+
+      if (c == -1)
+      {
+        this.complete();
+      }
+      else if (this.body != null)
+      {
+        this.body.append((char) c);
+        this.checkSize();
+      }
+
+      return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException
+    {
+      int count = super.read(cbuf, off, len);
+
+      if (count == -1)
+      {
+        this.complete();
+      }
+      else if (this.body != null)
+      {
+        this.body.append(cbuf, off, count);
+        this.checkSize();
+      }
+
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+      // Skipped characters are missing from the copy
+      this.body = null;
+
+      return super.skip(n);
+    }
+
+    private void checkSize()
+    {
+      if (this.body.length() > this.cache.getMaxSize())
+      {
+        this.body = null;
+        this.cache.remove(this.url);
+      }
+    }
+
+    private void complete()
+    {
+      if (this.body != null)
+      {
+        this.cache.put(this.url, this.etag, this.lastModified, this.body.toString());
+        this.body = null;
+      }
+    }
+  }
+
+  /**
+   * Response stream which releases its connection when closed. The connection
+   * is only kept alive if the stream was read to the end.
+   */
+  private class ReleasingInputStream extends FilterInputStream
+  {
+    private URL               url;
+
+    private HttpURLConnection con;
+
+    /**
+     * Undecoded connection stream
+     */
+    private InputStream       raw;
+
+    private boolean           eof;
+
+    private boolean           released;
+
+    public ReleasingInputStream(URL url, HttpURLConnection con, InputStream raw, InputStream in)
+    {
+      super(in);
+
+      this.url = url;
+      this.con = con;
+      this.raw = raw;
+      this.eof = false;
+      this.released = false;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      int b = super.read();
+
+      if (b == -1)
+      {
+        this.eof = true;
+      }
+
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      int count = super.read(b, off, len);
+
+      if (count == -1)
+      {
+        this.eof = true;
+      }
+
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      if (!this.released)
+      {
+        this.released = true;
+
+        if (this.eof && this.raw != this.in)
+        {
+          try
+          {
+            drain(this.raw);
+          }
+          catch (IOException e)
+          {
+            this.eof = false;
+          }
+        }
+
+        super.close();
+
+        releaseConnection(this.url, this.con, this.eof);
+      }
     }
   }
 }
@@ -0,0 +1,485 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Connector} which limits the number of requests in flight to the
+ * wrapped connector and adapts the limit to the observed behaviour of the
+ * server using additive increase / multiplicative decrease (AIMD):
+ * 
+ * <ul>
+ * <li>Every request which completes within {@link #getLatencyThreshold()}
+ * with a status below 500 increases the limit by 1 / limit, i.e. by roughly
+ * one request per round trip.</li>
+ * <li>Every request which fails with an {@link IOException}, returns a 429 or
+ * 5xx status, or is slower than the threshold multiplies the limit by
+ * {@link #getBackoffRatio()}. The limit is decreased at most once per round
+ * trip: only failures of requests which started after the previous decrease
+ * back off, so a burst of concurrent failures counts as a single one.</li>
+ * <li>Requests which fail for any other reason, such as an
+ * {@link AuthenticationException}, leave the limit unchanged.</li>
+ * </ul>
+ * 
+ * Requests above the limit wait in a queue. If a maximum queue depth is
+ * configured, requests which would exceed it are rejected with a
+ * {@link ConcurrencyLimitException} instead.
+ * 
+ * Streamed requests are passed on as streams when the wrapped connector is a
+ * {@link StreamingConnector}. For a streamed GET the slot is held until the
+ * response headers have been received, not until the body has been read.
+ * 
+ * @author terraframe
+ */
+public class AdaptiveLimitConnector implements StreamingConnector
+{
+  public static final int    DEFAULT_INITIAL_LIMIT     = 10;
+
+  public static final int    DEFAULT_MIN_LIMIT         = 1;
+
+  public static final int    DEFAULT_MAX_LIMIT         = 200;
+
+  public static final double DEFAULT_BACKOFF_RATIO     = 0.9;
+
+  public static final long   DEFAULT_LATENCY_THRESHOLD = 5000;
+
+  /**
+   * Value of maxQueueDepth denoting an unbounded queue
+   */
+  public static final int    UNBOUNDED                 = -1;
+
+  private static final int   HTTP_TOO_MANY_REQUESTS    = 429;
+
+  private Connector          connector;
+
+  private ReentrantLock      lock;
+
+  private Condition          available;
+
+  /**
+   * Current limit, the number of requests in flight is bounded by the floor of
+   * this value.
+   */
+  private double             limit;
+
+  private int                minLimit;
+
+  private int                maxLimit;
+
+  /**
+   * Factor applied to the limit when the server shows signs of overload.
+   */
+  private double             backoffRatio;
+
+  /**
+   * Time in milliseconds above which a response is treated as a sign of
+   * overload.
+   */
+  private long               latencyThreshold;
+
+  /**
+   * Maximum number of requests waiting for a slot, or {@link #UNBOUNDED}.
+   */
+  private int                maxQueueDepth;
+
+  private int                inFlight;
+
+  private int                queueDepth;
+
+  /**
+   * Value of {@link System#nanoTime()} when the limit was last decreased.
+   */
+  private long               lastBackoff;
+
+  public AdaptiveLimitConnector(Connector connector)
+  {
+    this(connector, DEFAULT_INITIAL_LIMIT, UNBOUNDED);
+  }
+
+  public AdaptiveLimitConnector(Connector connector, int initialLimit, int maxQueueDepth)
+  {
+    this.connector = connector;
+    this.lock = new ReentrantLock();
+    this.available = this.lock.newCondition();
+    this.limit = initialLimit;
+    this.minLimit = DEFAULT_MIN_LIMIT;
+    this.maxLimit = Math.max(initialLimit, DEFAULT_MAX_LIMIT);
+    this.backoffRatio = DEFAULT_BACKOFF_RATIO;
+    this.latencyThreshold = DEFAULT_LATENCY_THRESHOLD;
+    this.maxQueueDepth = maxQueueDepth;
+    this.inFlight = 0;
+    this.queueDepth = 0;
+    this.lastBackoff = System.nanoTime();
+  }
+
+  public Connector getConnector()
+  {
+    return connector;
+  }
+
+  /**
+   * @return The current number of requests allowed in flight
+   */
+  public int getLimit()
+  {
+    this.lock.lock();
+
+    try
+    {
+      return (int) this.limit;
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  public int getInFlight()
+  {
+    this.lock.lock();
+
+    try
+    {
+      return this.inFlight;
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @return The number of requests waiting for a slot
+   */
+  public int getQueueDepth()
+  {
+    this.lock.lock();
+
+    try
+    {
+      return this.queueDepth;
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  public int getMinLimit()
+  {
+    return minLimit;
+  }
+
+  public void setMinLimit(int minLimit)
+  {
+    if (minLimit < 1 || minLimit > this.maxLimit)
+    {
+      throw new IllegalArgumentException("The minimum limit must be between 1 and the maximum limit [" + this.maxLimit + "]");
+    }
+
+    this.minLimit = minLimit;
+  }
+
+  public int getMaxLimit()
+  {
+    return maxLimit;
+  }
+
+  public void setMaxLimit(int maxLimit)
+  {
+    if (maxLimit < this.minLimit)
+    {
+      throw new IllegalArgumentException("The maximum limit must not be less than the minimum limit [" + this.minLimit + "]");
+    }
+
+    this.maxLimit = maxLimit;
+  }
+
+  public double getBackoffRatio()
+  {
+    return backoffRatio;
+  }
+
+  /**
+   * @param backoffRatio
+   *          Factor between 0 and 1, exclusive, applied to the limit on
+   *          overload
+   */
+  public void setBackoffRatio(double backoffRatio)
+  {
+    if (! ( backoffRatio > 0 && backoffRatio < 1 ))
+    {
+      throw new IllegalArgumentException("The backoff ratio must be between 0 and 1, exclusive");
+    }
+
+    this.backoffRatio = backoffRatio;
+  }
+
+  public long getLatencyThreshold()
+  {
+    return latencyThreshold;
+  }
+
+  public void setLatencyThreshold(long latencyThreshold)
+  {
+    this.latencyThreshold = latencyThreshold;
+  }
+
+  public int getMaxQueueDepth()
+  {
+    return maxQueueDepth;
+  }
+
+  public void setMaxQueueDepth(int maxQueueDepth)
+  {
+    this.maxQueueDepth = maxQueueDepth;
+  }
+
+  @Override
+  public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    this.acquire();
+
+    long start = System.nanoTime();
+    Boolean success = null;
+
+    try
+    {
+      HttpResponse response = this.connector.httpGet(url, params);
+      success = isSuccess(response);
+
+      return response;
+    }
+    catch (IOException e)
+    {
+      success = false;
+
+      throw e;
+    }
+    finally
+    {
+      this.release(start, success);
+    }
+  }
+
+  @Override
+  public HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    this.acquire();
+
+    long start = System.nanoTime();
+    Boolean success = null;
+
+    try
+    {
+      HttpResponse response;
+
+      if (this.connector instanceof StreamingConnector)
+      {
+        response = ( (StreamingConnector) this.connector ).httpGetStream(url, params);
+      }
+      else
+      {
+        response = this.connector.httpGet(url, params);
+      }
+
+      success = isSuccess(response);
+
+      return response;
+    }
+    catch (IOException e)
+    {
+      success = false;
+
+      throw e;
+    }
+    finally
+    {
+      this.release(start, success);
+    }
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+  {
+    this.acquire();
+
+    long start = System.nanoTime();
+    Boolean success = null;
+
+    try
+    {
+      HttpResponse response = this.connector.httpPost(url, body);
+      success = isSuccess(response);
+
+      return response;
+    }
+    catch (IOException e)
+    {
+      success = false;
+
+      throw e;
+    }
+    finally
+    {
+      this.release(start, success);
+    }
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException
+  {
+    this.acquire();
+
+    long start = System.nanoTime();
+    Boolean success = null;
+
+    try
+    {
+      HttpResponse response;
+
+      if (this.connector instanceof StreamingConnector)
+      {
+        response = ( (StreamingConnector) this.connector ).httpPost(url, body);
+      }
+      else
+      {
+        StringWriter writer = new StringWriter();
+        body.write(writer);
+
+        response = this.connector.httpPost(url, writer.toString());
+      }
+
+      success = isSuccess(response);
+
+      return response;
+    }
+    catch (IOException e)
+    {
+      success = false;
+
+      throw e;
+    }
+    finally
+    {
+      this.release(start, success);
+    }
+  }
+
+  private void acquire() throws IOException
+  {
+    this.lock.lock();
+
+    try
+    {
+      if (this.inFlight < (int) this.limit)
+      {
+        this.inFlight++;
+
+        return;
+      }
+
+      if (this.maxQueueDepth != UNBOUNDED && this.queueDepth >= this.maxQueueDepth)
+      {
+        throw new ConcurrencyLimitException("Concurrency limit of [" + (int) this.limit + "] reached with [" + this.queueDepth + "] queued requests");
+      }
+
+      this.queueDepth++;
+
+      try
+      {
+        while (this.inFlight >= (int) this.limit)
+        {
+          this.available.await();
+        }
+
+        this.inFlight++;
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+
+        InterruptedIOException ex = new InterruptedIOException();
+        ex.initCause(e);
+
+        throw ex;
+      }
+      finally
+      {
+        this.queueDepth--;
+      }
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @param success
+   *          Whether the server handled the request without signs of
+   *          overload, or null if the request failed for another reason
+   */
+  private void release(long start, Boolean success)
+  {
+    long end = System.nanoTime();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(end - start);
+
+    this.lock.lock();
+
+    try
+    {
+      this.inFlight--;
+
+      if (success != null && success && elapsed <= this.latencyThreshold)
+      {
+        this.limit = Math.min(this.maxLimit, this.limit + 1.0 / this.limit);
+      }
+      else if (success != null && start - this.lastBackoff >= 0)
+      {
+        /*
+         * Requests which were already in flight when the limit was decreased
+         * saw the same overload and must not shrink the limit again
+         */
+        this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+        this.lastBackoff = end;
+      }
+
+      this.available.signalAll();
+    }
+    finally
+    {
+      this.lock.unlock();
+    }
+  }
+
+  private static boolean isSuccess(HttpResponse response)
+  {
+    int status = response.getStatusCode();
+
+    return status < 500 && status != HTTP_TOO_MANY_REQUESTS;
+  }
+}
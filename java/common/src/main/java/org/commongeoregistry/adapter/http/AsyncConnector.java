@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * {@link Connector} which can also execute requests without blocking the
+ * calling thread. Requests are executed on a bounded pool of worker threads,
+ * so at most a fixed number of them are in flight at the same time while the
+ * remaining ones wait in a queue.
+ */
+public interface AsyncConnector extends Connector
+{
+  public Future<HttpResponse> httpGetAsync(String url, Map<String, String> params, Callback<HttpResponse> callback);
+
+  public Future<HttpResponse> httpPostAsync(String url, String body, Callback<HttpResponse> callback);
+
+  /**
+   * Executes an arbitrary task, usually a blocking request followed by the
+   * decoding of its response, on the same workers as the asynchronous
+   * requests.
+   * 
+   * @param task
+   * @param callback
+   *          Optional callback notified when the task completes
+   * @return
+   */
+  public <T> Future<T> submit(Callable<T> task, Callback<T> callback);
+
+  /**
+   * Stops accepting new requests. Requests which are already queued are still
+   * executed.
+   */
+  public void shutdown();
+}
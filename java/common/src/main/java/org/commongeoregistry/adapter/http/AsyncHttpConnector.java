@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AsyncConnector} which executes the requests of a blocking
+ * {@link Connector} on a small pool of worker threads. The number of workers
+ * bounds the number of requests in flight, additional requests are queued
+ * without holding on to a thread. Pairing this with a
+ * {@link PooledHttpConnector} of the same size keeps every worker on a
+ * keep-alive connection.
+ */
+public class AsyncHttpConnector implements AsyncConnector, StreamingConnector
+{
+  public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+  private Connector       connector;
+
+  private ExecutorService executor;
+
+  private AtomicInteger   inFlight;
+
+  public AsyncHttpConnector(Connector connector)
+  {
+    this(connector, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  public AsyncHttpConnector(Connector connector, int maxInFlight)
+  {
+    this(connector, createExecutor(maxInFlight));
+  }
+
+  /**
+   * @param connector
+   *          Connector which executes the requests
+   * @param executor
+   *          Executor shared by all requests, its size bounds the number of
+   *          requests in flight.
+   */
+  public AsyncHttpConnector(Connector connector, ExecutorService executor)
+  {
+    this.connector = connector;
+    this.executor = executor;
+    this.inFlight = new AtomicInteger();
+  }
+
+  public Connector getConnector()
+  {
+    return connector;
+  }
+
+  public ExecutorService getExecutor()
+  {
+    return executor;
+  }
+
+  /**
+   * @return Number of submitted requests which have not completed yet,
+   *         including queued requests.
+   */
+  public int getInFlightCount()
+  {
+    return this.inFlight.get();
+  }
+
+  @Override
+  public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    return this.connector.httpGet(url, params);
+  }
+
+  @Override
+  public HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpGetStream(url, params);
+    }
+
+    return this.connector.httpGet(url, params);
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+  {
+    return this.connector.httpPost(url, body);
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpPost(url, body);
+    }
+
+    StringWriter writer = new StringWriter();
+    body.write(writer);
+
+    return this.connector.httpPost(url, writer.toString());
+  }
+
+  @Override
+  public Future<HttpResponse> httpGetAsync(final String url, final Map<String, String> params, Callback<HttpResponse> callback)
+  {
+    return this.submit(new Callable<HttpResponse>()
+    {
+      @Override
+      public HttpResponse call() throws Exception
+      {
+        return connector.httpGet(url, params);
+      }
+    }, callback);
+  }
+
+  @Override
+  public Future<HttpResponse> httpPostAsync(final String url, final String body, Callback<HttpResponse> callback)
+  {
+    return this.submit(new Callable<HttpResponse>()
+    {
+      @Override
+      public HttpResponse call() throws Exception
+      {
+        return connector.httpPost(url, body);
+      }
+    }, callback);
+  }
+
+  @Override
+  public <T> Future<T> submit(Callable<T> task, Callback<T> callback)
+  {
+    CallbackFuture<T> future = new CallbackFuture<T>(task, callback);
+
+    this.inFlight.incrementAndGet();
+
+    try
+    {
+      this.executor.execute(future);
+    }
+    catch (RuntimeException e)
+    {
+      this.inFlight.decrementAndGet();
+
+      throw e;
+    }
+
+    return future;
+  }
+
+  @Override
+  public void shutdown()
+  {
+    this.executor.shutdown();
+  }
+
+  private static ExecutorService createExecutor(int maxInFlight)
+  {
+    final AtomicInteger count = new AtomicInteger();
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread thread = new Thread(r, "registry-async-" + count.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+      }
+    });
+    executor.allowCoreThreadTimeOut(true);
+
+    return executor;
+  }
+
+  /**
+   * Future which notifies its callback once the task has completed.
+   */
+  private class CallbackFuture<T> extends FutureTask<T>
+  {
+    private Callback<T> callback;
+
+    public CallbackFuture(Callable<T> callable, Callback<T> callback)
+    {
+      super(callable);
+
+      this.callback = callback;
+    }
+
+    @Override
+    protected void done()
+    {
+      inFlight.decrementAndGet();
+
+      if (this.callback != null && !this.isCancelled())
+      {
+        try
+        {
+          this.callback.onSuccess(this.get());
+        }
+        catch (ExecutionException e)
+        {
+          this.callback.onFailure(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+
+          this.callback.onFailure(e);
+        }
+      }
+    }
+  }
+}
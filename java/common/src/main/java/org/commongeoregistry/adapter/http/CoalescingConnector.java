@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.commongeoregistry.adapter.constants.RegistryUrls;
+
+/**
+ * {@link Connector} which coalesces identical concurrent GET requests. While a
+ * GET for a given URL and parameters is in flight, other threads requesting
+ * the same URL and parameters wait for and share its response instead of
+ * issuing their own request. Responses are not cached once the request has
+ * completed. POST requests, and GET requests which are not safe to share
+ * such as {@link RegistryUrls#GEO_OBJECT_GET_UIDS}, are always passed through.
+ * 
+ * The shared response is buffered and every caller receives its own copy of
+ * it. Streamed GET requests, such as the tree requests of the
+ * {@link org.commongeoregistry.adapter.HttpRegistryClient}, are coalesced as
+ * well, which means their responses are buffered instead of streamed. Only
+ * streamed requests to URLs which are not coalesced are read from the
+ * connection.
+ */
+public class CoalescingConnector implements StreamingConnector
+{
+  /**
+   * GET requests whose responses must not be shared between callers, because
+   * every call is expected to return a different result.
+   */
+  public static final Set<String>                             NOT_COALESCED = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(RegistryUrls.GEO_OBJECT_GET_UIDS)));
+
+  private Connector                                           connector;
+
+  private ConcurrentHashMap<String, FutureTask<HttpResponse>> inFlight;
+
+  private AtomicLong                                          coalesced;
+
+  public CoalescingConnector(Connector connector)
+  {
+    this.connector = connector;
+    this.inFlight = new ConcurrentHashMap<String, FutureTask<HttpResponse>>();
+    this.coalesced = new AtomicLong();
+  }
+
+  public Connector getConnector()
+  {
+    return connector;
+  }
+
+  /**
+   * @return Number of GET requests which were served by sharing the response
+   *         of an identical in-flight request.
+   */
+  public long getCoalescedCount()
+  {
+    return this.coalesced.get();
+  }
+
+  /**
+   * @return True if identical concurrent GET requests to the given URL may
+   *         share a single response.
+   */
+  protected boolean isCoalesced(String url)
+  {
+    return !NOT_COALESCED.contains(url);
+  }
+
+  @Override
+  public HttpResponse httpGet(final String url, final Map<String, String> params) throws AuthenticationException, IOException
+  {
+    if (!this.isCoalesced(url))
+    {
+      return this.connector.httpGet(url, params);
+    }
+
+    String key = getKey(url, params);
+
+    FutureTask<HttpResponse> task = new FutureTask<HttpResponse>(new Callable<HttpResponse>()
+    {
+      @Override
+      public HttpResponse call() throws Exception
+      {
+        HttpResponse response = connector.httpGet(url, params);
+
+        // Buffer the body before it is handed to other threads
+        response.getAsString();
+
+        return response;
+      }
+    });
+
+    FutureTask<HttpResponse> existing = this.inFlight.putIfAbsent(key, task);
+
+    if (existing == null)
+    {
+      try
+      {
+        task.run();
+      }
+      finally
+      {
+        this.inFlight.remove(key, task);
+      }
+    }
+    else
+    {
+      this.coalesced.incrementAndGet();
+
+      task = existing;
+    }
+
+    try
+    {
+      HttpResponse response = task.get();
+
+      return new HttpResponse(response.getAsString(), response.getStatusCode());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      InterruptedIOException ex = new InterruptedIOException();
+      ex.initCause(e);
+
+      throw ex;
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof AuthenticationException)
+      {
+        throw (AuthenticationException) cause;
+      }
+      else if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+
+      throw new IOException(cause);
+    }
+  }
+
+  @Override
+  public HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    if (this.isCoalesced(url))
+    {
+      return this.httpGet(url, params);
+    }
+
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpGetStream(url, params);
+    }
+
+    return this.httpGet(url, params);
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+  {
+    return this.connector.httpPost(url, body);
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpPost(url, body);
+    }
+
+    StringWriter writer = new StringWriter();
+    body.write(writer);
+
+    return this.connector.httpPost(url, writer.toString());
+  }
+
+  /**
+   * Builds the coalescing key from the URL and the parameters sorted by name,
+   * so that the iteration order of the parameter map does not matter. Every
+   * part is prefixed with its length so that different requests can never
+   * produce the same key, whatever characters the parts contain.
+   */
+  private static String getKey(String url, Map<String, String> params)
+  {
+    StringBuilder builder = new StringBuilder();
+
+    appendPart(builder, url);
+
+    if (params != null && params.size() > 0)
+    {
+      TreeMap<String, String> sorted = new TreeMap<String, String>(params);
+
+      for (Entry<String, String> entry : sorted.entrySet())
+      {
+        appendPart(builder, entry.getKey());
+        appendPart(builder, entry.getValue());
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private static void appendPart(StringBuilder builder, String part)
+  {
+    if (part == null)
+    {
+      builder.append("-1:");
+    }
+    else
+    {
+      builder.append(part.length());
+      builder.append(':');
+      builder.append(part);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-route concurrency limit for the {@link AbstractHttpConnector}, on top of
+ * the platform {@link HttpURLConnection} keep-alive cache.
+ * 
+ * This class does not own any sockets. The keep-alive cache of the platform
+ * decides which socket a request uses and keeps a socket for reuse whenever
+ * the previous response on it was read to the end without the connection
+ * being disconnected. The pool only bounds the number of requests in flight
+ * per route (protocol, host and port), and disconnects connections whose
+ * response was not read to the end, so that they are never handed back to
+ * the keep-alive cache.
+ * 
+ * How many idle sockets are kept per destination is governed by the
+ * <code>http.maxConnections</code> system property (default 5), and how long
+ * they are kept by the Keep-Alive header of the server. To reuse a socket for
+ * every request in flight, <code>http.maxConnections</code> should be at least
+ * {@link #getMaxConnectionsPerRoute()}.
+ * 
+ * @author terraframe
+ */
+public class ConnectionPool
+{
+  public static final int    DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+
+  public static final long   DEFAULT_ACQUIRE_TIMEOUT           = 60000;
+
+  /**
+   * Maximum number of requests which may be in flight at once for a single
+   * route.
+   */
+  private int                maxConnectionsPerRoute;
+
+  /**
+   * Time in milliseconds a request will wait for a free slot before failing.
+   */
+  private long               acquireTimeout;
+
+  private volatile boolean   shutdown;
+
+  private Map<String, Route> routes;
+
+  public ConnectionPool()
+  {
+    this(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+  }
+
+  public ConnectionPool(int maxConnectionsPerRoute)
+  {
+    if (maxConnectionsPerRoute < 1)
+    {
+      throw new IllegalArgumentException("The maximum number of connections per route must be positive");
+    }
+
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    this.acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+    this.shutdown = false;
+    this.routes = new ConcurrentHashMap<String, Route>();
+  }
+
+  public int getMaxConnectionsPerRoute()
+  {
+    return maxConnectionsPerRoute;
+  }
+
+  public long getAcquireTimeout()
+  {
+    return acquireTimeout;
+  }
+
+  public void setAcquireTimeout(long acquireTimeout)
+  {
+    this.acquireTimeout = acquireTimeout;
+  }
+
+  /**
+   * Reserves a slot on the route of the given URL, blocking until a slot is
+   * free or the acquire timeout elapses.
+   * 
+   * @param url
+   * @throws IOException
+   *           if no slot became available in time, or the pool has been shut
+   *           down
+   */
+  public void acquire(URL url) throws IOException
+  {
+    if (this.shutdown)
+    {
+      throw new IOException("The connection pool has been shut down");
+    }
+
+    Route route = this.getRoute(url);
+
+    try
+    {
+      if (!route.permits.tryAcquire(this.acquireTimeout, TimeUnit.MILLISECONDS))
+      {
+        throw new IOException("Timed out waiting for a connection to [" + route.key + "]");
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Returns the slot to the route. A connection whose response was not read to
+   * the end is disconnected, otherwise its socket stays in the keep-alive
+   * cache of the platform.
+   * 
+   * @param url
+   * @param con
+   *          the connection, or null if it could not be opened
+   * @param reusable
+   *          true if the response body was read to the end of the stream
+   */
+  public void release(URL url, HttpURLConnection con, boolean reusable)
+  {
+    Route route = this.getRoute(url);
+
+    try
+    {
+      if (!reusable && con != null)
+      {
+        con.disconnect();
+      }
+    }
+    finally
+    {
+      route.permits.release();
+    }
+  }
+
+  /**
+   * Rejects all further requests. Requests in flight are not affected.
+   */
+  public void shutdown()
+  {
+    this.shutdown = true;
+  }
+
+  /**
+   * @return number of requests currently in flight on the route of the URL
+   */
+  public int getLeasedCount(URL url)
+  {
+    Route route = this.getRoute(url);
+
+    return this.maxConnectionsPerRoute - route.permits.availablePermits();
+  }
+
+  private Route getRoute(URL url)
+  {
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    String key = url.getProtocol() + "://" + url.getHost() + ":" + port;
+
+    Route route = this.routes.get(key);
+
+    if (route == null)
+    {
+      synchronized (this.routes)
+      {
+        route = this.routes.get(key);
+
+        if (route == null)
+        {
+          route = new Route(key, this.maxConnectionsPerRoute);
+
+          this.routes.put(key, route);
+        }
+      }
+    }
+
+    return route;
+  }
+
+  private static class Route
+  {
+    private String    key;
+
+    private Semaphore permits;
+
+    public Route(String key, int maxConnections)
+    {
+      this.key = key;
+      this.permits = new Semaphore(maxConnections, true);
+    }
+  }
+}
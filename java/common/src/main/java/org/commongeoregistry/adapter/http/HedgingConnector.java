@@ -0,0 +1,486 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.commongeoregistry.adapter.constants.RegistryUrls;
+
+/**
+ * {@link Connector} which hedges GET requests to reduce tail latency. If a GET
+ * has not completed within the configured percentile of recently observed
+ * latencies, an identical request is sent and whichever response arrives
+ * first is returned. Only GET requests are hedged as they are idempotent, POST
+ * requests are passed through. GET requests which return a different result on
+ * every call, such as {@link RegistryUrls#GEO_OBJECT_GET_UIDS}, are not hedged
+ * either.
+ * 
+ * The latencies are those of the primary requests, measured when they
+ * complete. A primary request which loses against its hedge is left to finish
+ * so that slow responses are still accounted for.
+ * 
+ * Streamed GET responses are not hedged, as the losing stream would hold a
+ * connection open until it is drained. They are passed on as streams when the
+ * wrapped connector is a {@link StreamingConnector}.
+ * 
+ * The number of hedged requests is capped by a budget: every request earns
+ * {@link #getBudgetRatio()} of a hedge, up to {@link #getMaxBudget()}, and
+ * every hedge spends one. With the default ratio of 0.05 at most about 5% extra
+ * requests are sent to the server.
+ * 
+ * Requests run on a bounded executor. When all of its threads are busy, GET
+ * requests run on the calling thread without being hedged, and hedges are not
+ * sent.
+ * 
+ * @author terraframe
+ */
+public class HedgingConnector implements StreamingConnector
+{
+  /**
+   * GET requests which must not be sent twice.
+   */
+  public static final Set<String> NOT_HEDGED = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(RegistryUrls.GEO_OBJECT_GET_UIDS)));
+
+  public static final double DEFAULT_PERCENTILE    = 0.95;
+
+  public static final long   DEFAULT_INITIAL_DELAY = 1000;
+
+  public static final long   DEFAULT_MIN_DELAY     = 10;
+
+  public static final double DEFAULT_BUDGET_RATIO  = 0.05;
+
+  public static final double DEFAULT_MAX_BUDGET    = 10;
+
+  public static final int    DEFAULT_MAX_THREADS   = 32;
+
+  private static final int   WINDOW_SIZE           = 128;
+
+  private Connector          connector;
+
+  private ExecutorService    executor;
+
+  /**
+   * Percentile of the recent latencies after which a request is hedged.
+   */
+  private double             percentile;
+
+  /**
+   * Delay in milliseconds used until enough latencies have been observed.
+   */
+  private long               initialDelay;
+
+  /**
+   * Lower bound of the hedging delay in milliseconds.
+   */
+  private long               minDelay;
+
+  private double             budgetRatio;
+
+  private double             maxBudget;
+
+  private double             budget;
+
+  /**
+   * Ring buffer of the most recent latencies in milliseconds
+   */
+  private long[]             latencies;
+
+  /**
+   * Index of the next sample in the ring buffer
+   */
+  private int                position;
+
+  /**
+   * Number of samples in the ring buffer
+   */
+  private int                samples;
+
+  private AtomicLong         hedged;
+
+  public HedgingConnector(Connector connector)
+  {
+    this(connector, DEFAULT_MAX_THREADS);
+  }
+
+  /**
+   * @param connector
+   * @param maxThreads
+   *          Maximum number of primary and hedged requests executed
+   *          concurrently
+   */
+  public HedgingConnector(Connector connector, int maxThreads)
+  {
+    this(connector, createExecutor(maxThreads));
+  }
+
+  /**
+   * @param connector
+   * @param executor
+   *          Executor on which the primary and hedged requests are executed.
+   *          Requests which it rejects are executed on the calling thread
+   *          without being hedged, and hedges which it rejects are not sent.
+   */
+  public HedgingConnector(Connector connector, ExecutorService executor)
+  {
+    this.connector = connector;
+    this.executor = executor;
+    this.percentile = DEFAULT_PERCENTILE;
+    this.initialDelay = DEFAULT_INITIAL_DELAY;
+    this.minDelay = DEFAULT_MIN_DELAY;
+    this.budgetRatio = DEFAULT_BUDGET_RATIO;
+    this.maxBudget = DEFAULT_MAX_BUDGET;
+    this.budget = 0;
+    this.latencies = new long[WINDOW_SIZE];
+    this.position = 0;
+    this.samples = 0;
+    this.hedged = new AtomicLong();
+  }
+
+  public Connector getConnector()
+  {
+    return connector;
+  }
+
+  public double getPercentile()
+  {
+    return percentile;
+  }
+
+  public void setPercentile(double percentile)
+  {
+    this.percentile = percentile;
+  }
+
+  public long getInitialDelay()
+  {
+    return initialDelay;
+  }
+
+  public void setInitialDelay(long initialDelay)
+  {
+    this.initialDelay = initialDelay;
+  }
+
+  public long getMinDelay()
+  {
+    return minDelay;
+  }
+
+  public void setMinDelay(long minDelay)
+  {
+    this.minDelay = minDelay;
+  }
+
+  public synchronized double getBudgetRatio()
+  {
+    return budgetRatio;
+  }
+
+  public synchronized void setBudgetRatio(double budgetRatio)
+  {
+    this.budgetRatio = budgetRatio;
+  }
+
+  public synchronized double getMaxBudget()
+  {
+    return maxBudget;
+  }
+
+  public synchronized void setMaxBudget(double maxBudget)
+  {
+    this.maxBudget = maxBudget;
+  }
+
+  /**
+   * @return Number of hedged requests which have been sent
+   */
+  public long getHedgedCount()
+  {
+    return this.hedged.get();
+  }
+
+  /**
+   * @return The current hedging delay in milliseconds
+   */
+  public synchronized long getDelay()
+  {
+    int count = this.samples;
+
+    if (count < WINDOW_SIZE / 4)
+    {
+      return this.initialDelay;
+    }
+
+    long[] sorted = Arrays.copyOf(this.latencies, count);
+    Arrays.sort(sorted);
+
+    int index = Math.min(count - 1, (int) Math.ceil(this.percentile * count) - 1);
+
+    return Math.max(this.minDelay, sorted[Math.max(0, index)]);
+  }
+
+  public void shutdown()
+  {
+    this.executor.shutdown();
+  }
+
+  /**
+   * @return True if a slow GET request to the given URL may be sent a second
+   *         time.
+   */
+  protected boolean isHedged(String url)
+  {
+    return !NOT_HEDGED.contains(url);
+  }
+
+  @Override
+  public HttpResponse httpGet(final String url, final Map<String, String> params) throws AuthenticationException, IOException
+  {
+    if (!this.isHedged(url))
+    {
+      return this.connector.httpGet(url, params);
+    }
+
+    Callable<HttpResponse> request = new Callable<HttpResponse>()
+    {
+      @Override
+      public HttpResponse call() throws Exception
+      {
+        return connector.httpGet(url, params);
+      }
+    };
+
+    this.earnBudget();
+
+    long delay = this.getDelay();
+
+    ExecutorCompletionService<HttpResponse> service = new ExecutorCompletionService<HttpResponse>(this.executor);
+
+    Future<HttpResponse> primary;
+
+    try
+    {
+      primary = service.submit(new Callable<HttpResponse>()
+      {
+        @Override
+        public HttpResponse call() throws Exception
+        {
+          long start = System.nanoTime();
+
+          HttpResponse response = connector.httpGet(url, params);
+
+          record(start);
+
+          return response;
+        }
+      });
+    }
+    catch (RejectedExecutionException e)
+    {
+      return this.connector.httpGet(url, params);
+    }
+
+    Future<HttpResponse> hedge = null;
+
+    try
+    {
+      Future<HttpResponse> completed = service.poll(delay, TimeUnit.MILLISECONDS);
+
+      if (completed == null)
+      {
+        if (this.spendBudget())
+        {
+          try
+          {
+            hedge = service.submit(request);
+
+            this.hedged.incrementAndGet();
+          }
+          catch (RejectedExecutionException e)
+          {
+            this.refundBudget();
+          }
+        }
+
+        completed = service.take();
+      }
+
+      try
+      {
+        return completed.get();
+      }
+      catch (ExecutionException e)
+      {
+        if (hedge == null)
+        {
+          throw e;
+        }
+
+        /*
+         * One of the two requests failed, fall back to the other one
+         */
+        return service.take().get();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+
+      InterruptedIOException ex = new InterruptedIOException();
+      ex.initCause(e);
+
+      throw ex;
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+
+      if (cause instanceof AuthenticationException)
+      {
+        throw (AuthenticationException) cause;
+      }
+      else if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+
+      throw new IOException(cause);
+    }
+    finally
+    {
+      if (hedge == null)
+      {
+        primary.cancel(true);
+      }
+      else
+      {
+        /*
+         * The primary request is left to complete so that its latency is
+         * recorded even if the hedge was faster
+         */
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  @Override
+  public HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpGetStream(url, params);
+    }
+
+    return this.httpGet(url, params);
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+  {
+    return this.connector.httpPost(url, body);
+  }
+
+  @Override
+  public HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException
+  {
+    if (this.connector instanceof StreamingConnector)
+    {
+      return ( (StreamingConnector) this.connector ).httpPost(url, body);
+    }
+
+    StringWriter writer = new StringWriter();
+    body.write(writer);
+
+    return this.connector.httpPost(url, writer.toString());
+  }
+
+  private synchronized void earnBudget()
+  {
+    this.budget = Math.min(this.maxBudget, this.budget + this.budgetRatio);
+  }
+
+  private synchronized boolean spendBudget()
+  {
+    if (this.budget >= 1)
+    {
+      this.budget -= 1;
+
+      return true;
+    }
+
+    return false;
+  }
+
+  private synchronized void refundBudget()
+  {
+    this.budget = Math.min(this.maxBudget, this.budget + 1);
+  }
+
+  private synchronized void record(long start)
+  {
+    this.latencies[this.position] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    this.position = ( this.position + 1 ) % WINDOW_SIZE;
+    this.samples = Math.min(this.samples + 1, WINDOW_SIZE);
+  }
+
+  private static ExecutorService createExecutor(int maxThreads)
+  {
+    final AtomicInteger count = new AtomicInteger();
+
+    // Requests are handed off directly, a queued hedge would be of no use
+    return new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread thread = new Thread(r, "registry-hedge-" + count.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+      }
+    });
+  }
+}
@@ -18,14 +18,28 @@
  */
 package org.commongeoregistry.adapter.http;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
 import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
-public class HttpResponse
+/**
+ * Response of a request to the registry. The body is either fully buffered as
+ * a string, or streamed from the connection. Streamed responses must be closed
+ * once they have been consumed.
+ */
+public class HttpResponse implements Closeable
 {
   private String response;
 
+  private Reader reader;
+
   private int    statusCode;
 
   public HttpResponse(String sResp, int statusCode)
@@ -34,10 +48,37 @@ public class HttpResponse
     this.statusCode = statusCode;
   }
 
+  /**
+   * Creates a streamed response. The body is read from the given reader when
+   * requested, and the reader is closed when the response is closed.
+   * 
+   * @param reader
+   * @param statusCode
+   */
+  public HttpResponse(Reader reader, int statusCode)
+  {
+    this.reader = reader;
+    this.statusCode = statusCode;
+  }
+
+  /**
+   * @return true if the body has not been buffered and is read from the
+   *         connection.
+   */
+  public boolean isStreaming()
+  {
+    return this.reader != null;
+  }
+
   public JsonObject getAsJsonObject()
   {
     JsonParser parser = new JsonParser();
 
+    if (this.isStreaming())
+    {
+      return parser.parse(this.getAsJsonReader()).getAsJsonObject();
+    }
+
     return parser.parse(this.response).getAsJsonObject();
   }
 
@@ -45,11 +86,62 @@ public class HttpResponse
   {
     JsonParser parser = new JsonParser();
 
+    if (this.isStreaming())
+    {
+      return parser.parse(this.getAsJsonReader()).getAsJsonArray();
+    }
+
     return parser.parse(this.response).getAsJsonArray();
   }
 
+  /**
+   * Returns a {@link JsonReader} over the body of the response. For a streamed
+   * response the tokens are read directly from the connection, and the body
+   * can only be read once.
+   * 
+   * @return
+   */
+  public JsonReader getAsJsonReader()
+  {
+    if (this.isStreaming())
+    {
+      return new JsonReader(this.reader);
+    }
+
+    return new JsonReader(new StringReader(this.response));
+  }
+
+  /**
+   * Returns the body of the response. A streamed response is buffered in full
+   * and closed.
+   * 
+   * @return
+   */
   public String getAsString()
   {
+    if (this.isStreaming())
+    {
+      try
+      {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[4096];
+        int count;
+
+        while ( ( count = this.reader.read(buffer) ) != -1)
+        {
+          builder.append(buffer, 0, count);
+        }
+
+        this.close();
+
+        this.response = builder.toString();
+      }
+      catch (IOException e)
+      {
+        throw new JsonIOException(e);
+      }
+    }
+
     return this.response;
   }
 
@@ -62,13 +154,30 @@ public class HttpResponse
   {
     this.statusCode = statusCode;
   }
-  
+
+  /**
+   * Closes the stream of a streamed response. Has no effect on a buffered
+   * response.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (this.reader != null)
+    {
+      Reader reader = this.reader;
+
+      this.reader = null;
+
+      reader.close();
+    }
+  }
+
   @Override
   public String toString()
   {
     String status = "HTTPResponse [" + this.statusCode + "]";
     
-    if (this.response.length() > 300)
+    if (this.response == null || this.response.length() > 300)
     {
       return status;
     }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded store of GET responses which carried an ETag or Last-Modified
+ * validator. When configured on an {@link AbstractHttpConnector} the validators
+ * are sent with subsequent GET requests of the same URL and a 304 Not Modified
+ * response is served from the stored body. This applies to streamed GET
+ * requests as well, whose body is stored once the caller has read it to the
+ * end.
+ * 
+ * The size is measured in characters of the stored bodies. The least recently
+ * used entries are evicted once the maximum size is exceeded.
+ * 
+ * @author terraframe
+ */
+public class HttpResponseCache
+{
+  public static final long                    DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+  private long                                maxSize;
+
+  private long                                size;
+
+  private long                                hitCount;
+
+  private LinkedHashMap<String, CachedResponse> entries;
+
+  public HttpResponseCache()
+  {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public HttpResponseCache(long maxSize)
+  {
+    this.maxSize = maxSize;
+    this.size = 0;
+    this.hitCount = 0;
+    this.entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+  }
+
+  public synchronized long getMaxSize()
+  {
+    return maxSize;
+  }
+
+  public synchronized void setMaxSize(long maxSize)
+  {
+    this.maxSize = maxSize;
+
+    this.trim();
+  }
+
+  /**
+   * @return Total number of characters of the stored bodies
+   */
+  public synchronized long getSize()
+  {
+    return size;
+  }
+
+  /**
+   * @return Number of responses which have been served from the cache
+   */
+  public synchronized long getHitCount()
+  {
+    return hitCount;
+  }
+
+  public synchronized int getEntryCount()
+  {
+    return this.entries.size();
+  }
+
+  public synchronized CachedResponse get(String url)
+  {
+    return this.entries.get(url);
+  }
+
+  /**
+   * Stores the body of a response. Responses without a validator or larger
+   * than the maximum size are not stored, and any previous entry of the URL is
+   * removed.
+   */
+  public synchronized void put(String url, String etag, String lastModified, String body)
+  {
+    this.remove(url);
+
+    if ( ( etag != null || lastModified != null ) && body.length() <= this.maxSize)
+    {
+      this.entries.put(url, new CachedResponse(etag, lastModified, body));
+      this.size += body.length();
+
+      this.trim();
+    }
+  }
+
+  public synchronized void remove(String url)
+  {
+    CachedResponse entry = this.entries.remove(url);
+
+    if (entry != null)
+    {
+      this.size -= entry.getBody().length();
+    }
+  }
+
+  public synchronized void clear()
+  {
+    this.entries.clear();
+    this.size = 0;
+  }
+
+  synchronized void hit()
+  {
+    this.hitCount++;
+  }
+
+  private void trim()
+  {
+    Iterator<Map.Entry<String, CachedResponse>> iterator = this.entries.entrySet().iterator();
+
+    while (this.size > this.maxSize && iterator.hasNext())
+    {
+      CachedResponse entry = iterator.next().getValue();
+
+      this.size -= entry.getBody().length();
+
+      iterator.remove();
+    }
+  }
+
+  public static class CachedResponse
+  {
+    private String etag;
+
+    private String lastModified;
+
+    private String body;
+
+    public CachedResponse(String etag, String lastModified, String body)
+    {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.body = body;
+    }
+
+    public String getEtag()
+    {
+      return etag;
+    }
+
+    public String getLastModified()
+    {
+      return lastModified;
+    }
+
+    public String getBody()
+    {
+      return body;
+    }
+  }
+}
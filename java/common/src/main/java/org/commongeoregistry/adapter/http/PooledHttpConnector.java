@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+/**
+ * {@link HttpCredentialConnector} which leaves connections to the registry in
+ * the keep-alive cache of the platform between requests instead of
+ * disconnecting them after every call, and limits the number of requests in
+ * flight with a {@link ConnectionPool}. Can be used as a drop-in replacement
+ * when constructing an {@link org.commongeoregistry.adapter.HttpRegistryClient}.
+ * 
+ * @author terraframe
+ */
+public class PooledHttpConnector extends HttpCredentialConnector
+{
+  public PooledHttpConnector()
+  {
+    this(new ConnectionPool());
+  }
+
+  /**
+   * @param maxConnectionsPerRoute
+   *          maximum number of concurrent requests to the registry
+   */
+  public PooledHttpConnector(int maxConnectionsPerRoute)
+  {
+    this(new ConnectionPool(maxConnectionsPerRoute));
+  }
+
+  public PooledHttpConnector(ConnectionPool pool)
+  {
+    this.setConnectionPool(pool);
+  }
+
+  /**
+   * Rejects all further requests of this connector.
+   */
+  public void shutdown()
+  {
+    this.getConnectionPool().shutdown();
+  }
+}
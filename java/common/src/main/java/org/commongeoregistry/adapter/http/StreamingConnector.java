@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.http;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * {@link Connector} which can hand the body of a response to the caller as a
+ * stream instead of buffering it into a string first, and which can write the
+ * body of a request directly to the connection.
+ * 
+ * @author terraframe
+ */
+public interface StreamingConnector extends Connector
+{
+
+  /**
+   * Executes a GET request. If the request was successful the body of the
+   * returned {@link HttpResponse} is read directly from the connection, in
+   * which case the response must be closed when done.
+   */
+  public HttpResponse httpGetStream(String url, Map<String, String> params) throws AuthenticationException, IOException;
+
+  /**
+   * Executes a POST request whose body is written by the given
+   * {@link BodyWriter} as it is sent, without materializing it first.
+   */
+  public HttpResponse httpPost(String url, BodyWriter body) throws AuthenticationException, IOException;
+
+}
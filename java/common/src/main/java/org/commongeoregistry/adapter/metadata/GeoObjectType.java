@@ -29,6 +29,7 @@ import org.commongeoregistry.adapter.constants.DefaultAttribute;
 import org.commongeoregistry.adapter.constants.GeometryType;
 import org.commongeoregistry.adapter.dataaccess.GeoObject;
 import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.dataaccess.SerializationPlan;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -135,6 +136,12 @@ public class GeoObjectType implements Serializable
    */
   private Map<String, AttributeType> attributeMap;
 
+  /**
+   * Serialization plan compiled from the attributes of this type. Compiled
+   * lazily and discarded when the attributes change.
+   */
+  private transient volatile SerializationPlan serializationPlan;
+
   /**
    * 
    * Precondition: The organization code is valid.
@@ -433,6 +440,7 @@ public class GeoObjectType implements Serializable
   public void addAttribute(AttributeType attributeType)
   {
     this.attributeMap.put(attributeType.getName(), attributeType);
+    this.serializationPlan = null;
   }
 
   /**
@@ -445,6 +453,7 @@ public class GeoObjectType implements Serializable
   public void removeAttribute(String attributeName)
   {
     this.attributeMap.remove(attributeName);
+    this.serializationPlan = null;
   }
 
   /**
@@ -459,6 +468,28 @@ public class GeoObjectType implements Serializable
     return this.attributeMap;
   }
 
+  /**
+   * Returns the {@link SerializationPlan} of the attributes currently defined
+   * on this {@link GeoObjectType}.
+   * 
+   * @return {@link SerializationPlan} of this {@link GeoObjectType}.
+   */
+  public SerializationPlan getSerializationPlan()
+  {
+    SerializationPlan plan = this.serializationPlan;
+
+    // The attribute map and the attributes are mutable, so the plan is checked
+    // against every attribute and recompiled when any of them has changed
+    if (plan == null || !plan.isCurrent(this))
+    {
+      plan = new SerializationPlan(this);
+
+      this.serializationPlan = plan;
+    }
+
+    return plan;
+  }
+
   /**
    * Defines the standard set of {@link AttributeType} defined on
    * all{@link GeoObjectType}s.
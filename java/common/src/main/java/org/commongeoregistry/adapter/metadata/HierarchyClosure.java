@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.metadata;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frozen closure of the nodes of a hierarchy. Every {@link GeoObjectType} of
+ * the hierarchy is numbered with an ordinal, and the ancestors and
+ * descendants of each type are held as bitsets of ordinals, so ancestry
+ * checks do not walk the nodes. Nodes which are inherited from another
+ * hierarchy (see {@link HierarchyNode#getInheritedHierarchyCode()}) are part
+ * of the closure; the types which only appear in inherited nodes are marked
+ * as inherited.
+ * 
+ * A closure is cached by its {@link HierarchyType} or {@link HierarchyNode}
+ * and built again once the nodes of that hierarchy have changed.
+ */
+public class HierarchyClosure
+{
+  private final AtomicLong           counter;
+
+  private final long                 version;
+
+  private final Map<String, Integer> ordinals;
+
+  private final String[]             codes;
+
+  private final BitSet[]             ancestors;
+
+  private final BitSet[]             descendants;
+
+  private final BitSet               own;
+
+  private final List<HierarchyNode>  nodes;
+
+  HierarchyClosure(AtomicLong counter, HierarchyNode[] roots)
+  {
+    this.counter = counter;
+    this.version = counter.get();
+
+    Builder builder = new Builder();
+
+    for (HierarchyNode root : roots)
+    {
+      builder.visit(root, new BitSet());
+    }
+
+    int size = builder.codes.size();
+
+    this.ordinals = builder.ordinals;
+    this.codes = builder.codes.toArray(new String[size]);
+    this.ancestors = builder.ancestors.toArray(new BitSet[size]);
+    this.descendants = builder.descendants.toArray(new BitSet[size]);
+    this.own = builder.own;
+    this.nodes = Collections.unmodifiableList(builder.nodes);
+  }
+
+  /**
+   * @return false if the nodes of the hierarchy, whose version is given, have
+   *         changed since the closure was built
+   */
+  boolean isCurrent(AtomicLong counter)
+  {
+    return this.counter == counter && this.version == counter.get();
+  }
+
+  /**
+   * @return The number of distinct types in the hierarchy
+   */
+  public int size()
+  {
+    return this.codes.length;
+  }
+
+  /**
+   * @return The ordinal of the type, or -1 if the type is not in the
+   *         hierarchy
+   */
+  public int getOrdinal(String typeCode)
+  {
+    Integer ordinal = this.ordinals.get(typeCode);
+
+    return ordinal != null ? ordinal : -1;
+  }
+
+  public String getCode(int ordinal)
+  {
+    return this.codes[ordinal];
+  }
+
+  /**
+   * @return The nodes of the hierarchy in depth first order
+   */
+  public List<HierarchyNode> getNodes()
+  {
+    return this.nodes;
+  }
+
+  /**
+   * @return true if the type is in the hierarchy. Types which only appear in
+   *         inherited nodes are ignored when excludeInherited is true.
+   */
+  public boolean contains(String typeCode, boolean excludeInherited)
+  {
+    int ordinal = this.getOrdinal(typeCode);
+
+    return ordinal != -1 && ( !excludeInherited || this.own.get(ordinal) );
+  }
+
+  /**
+   * @return true if the type only appears in nodes inherited from other
+   *         hierarchies
+   */
+  public boolean isInherited(String typeCode)
+  {
+    int ordinal = this.getOrdinal(typeCode);
+
+    return ordinal != -1 && !this.own.get(ordinal);
+  }
+
+  /**
+   * @return true if a node of the ancestor type has a node of the descendant
+   *         type below it
+   */
+  public boolean isAncestor(String ancestorCode, String descendantCode)
+  {
+    int ancestor = this.getOrdinal(ancestorCode);
+    int descendant = this.getOrdinal(descendantCode);
+
+    return ancestor != -1 && descendant != -1 && this.isAncestor(ancestor, descendant);
+  }
+
+  public boolean isAncestor(int ancestor, int descendant)
+  {
+    return this.ancestors[descendant].get(ancestor);
+  }
+
+  public boolean isDescendant(String descendantCode, String ancestorCode)
+  {
+    return this.isAncestor(ancestorCode, descendantCode);
+  }
+
+  public boolean isDescendant(int descendant, int ancestor)
+  {
+    return this.descendants[ancestor].get(descendant);
+  }
+
+  /**
+   * @return A copy of the ordinals of the ancestors of the type
+   */
+  public BitSet getAncestors(int ordinal)
+  {
+    return (BitSet) this.ancestors[ordinal].clone();
+  }
+
+  /**
+   * @return A copy of the ordinals of the descendants of the type
+   */
+  public BitSet getDescendants(int ordinal)
+  {
+    return (BitSet) this.descendants[ordinal].clone();
+  }
+
+  private static class Builder
+  {
+    private Map<String, Integer> ordinals    = new HashMap<String, Integer>();
+
+    private List<String>         codes       = new ArrayList<String>();
+
+    private List<BitSet>         ancestors   = new ArrayList<BitSet>();
+
+    private List<BitSet>         descendants = new ArrayList<BitSet>();
+
+    private BitSet               own         = new BitSet();
+
+    private List<HierarchyNode>  nodes       = new ArrayList<HierarchyNode>();
+
+    private int ordinal(String code)
+    {
+      Integer ordinal = this.ordinals.get(code);
+
+      if (ordinal == null)
+      {
+        ordinal = this.codes.size();
+
+        this.ordinals.put(code, ordinal);
+        this.codes.add(code);
+        this.ancestors.add(new BitSet());
+        this.descendants.add(new BitSet());
+      }
+
+      return ordinal;
+    }
+
+    /**
+     * @param path
+     *          Ordinals of the types of the nodes above the node
+     */
+    private void visit(HierarchyNode node, BitSet path)
+    {
+      int ordinal = this.ordinal(node.getGeoObjectType().getCode());
+
+      this.nodes.add(node);
+
+      if (node.getInheritedHierarchyCode() == null)
+      {
+        this.own.set(ordinal);
+      }
+
+      this.ancestors.get(ordinal).or(path);
+
+      for (int i = path.nextSetBit(0); i >= 0; i = path.nextSetBit(i + 1))
+      {
+        this.descendants.get(i).set(ordinal);
+      }
+
+      HierarchyNode[] children = node.getChildNodes();
+
+      if (children.length > 0)
+      {
+        BitSet below = (BitSet) path.clone();
+        below.set(ordinal);
+
+        for (HierarchyNode child : children)
+        {
+          this.visit(child, below);
+        }
+      }
+    }
+  }
+}
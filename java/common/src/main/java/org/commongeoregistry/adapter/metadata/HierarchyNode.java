@@ -19,10 +19,9 @@
 package org.commongeoregistry.adapter.metadata;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.commongeoregistry.adapter.RegistryAdapter;
 
@@ -44,18 +43,23 @@ public class HierarchyNode
   /**
    * {@link GeoObjectType} in the hierarchies node.
    */
-  private GeoObjectType       geoObjectType;
+  private GeoObjectType             geoObjectType;
 
   /**
    * Children {@link GeoObjectType}s in the hierarchy.
    */
-  private List<HierarchyNode> children;
+  private HierarchyNodeList         children;
 
   /**
    * If the node is from an inherited hierarchy, this is the code of that
    * hierarchy. If the node is not inherited, this field will be null.
    */
-  private String              inheritedHierarchyCode;
+  private String                    inheritedHierarchyCode;
+
+  /**
+   * Closure of this node and its descendants, built on first use.
+   */
+  private volatile HierarchyClosure closure;
 
   /**
    * 
@@ -76,7 +80,7 @@ public class HierarchyNode
   {
     this.geoObjectType = _geoObjectType;
     this.inheritedHierarchyCode = _inheritedHierarchyCode;
-    this.children = Collections.synchronizedList(new LinkedList<HierarchyNode>());
+    this.children = new HierarchyNodeList();
   }
 
   /**
@@ -92,6 +96,8 @@ public class HierarchyNode
   public void setGeoObjectType(GeoObjectType _geoObjectType)
   {
     this.geoObjectType = _geoObjectType;
+
+    this.children.modified();
   }
 
   /**
@@ -100,20 +106,40 @@ public class HierarchyNode
    */
   public boolean hierarchyHasGeoObjectType(String typeCode, boolean excludeInherited)
   {
-    if ( ( !excludeInherited || ( excludeInherited && this.inheritedHierarchyCode == null ) ) && this.geoObjectType.getCode().equals(typeCode))
-    {
-      return true;
-    }
+    return this.getClosure().contains(typeCode, excludeInherited);
+  }
+
+  /**
+   * Returns the {@link HierarchyClosure} of this node and its descendants.
+   * The closure is cached until the nodes of the hierarchy change.
+   */
+  public HierarchyClosure getClosure()
+  {
+    AtomicLong version = this.children.getVersion();
+    HierarchyClosure closure = this.closure;
 
-    for (HierarchyNode node : this.children)
+    if (closure == null || !closure.isCurrent(version))
     {
-      if (node.hierarchyHasGeoObjectType(typeCode, excludeInherited))
-      {
-        return true;
-      }
+      closure = new HierarchyClosure(version, new HierarchyNode[] { this });
+
+      this.closure = closure;
     }
 
-    return false;
+    return closure;
+  }
+
+  HierarchyNode[] getChildNodes()
+  {
+    return this.children.toNodeArray();
+  }
+
+  /**
+   * Moves this node and its descendants to the version of the hierarchy it is
+   * added to.
+   */
+  void adopt(AtomicLong version)
+  {
+    this.children.adopt(version);
   }
 
   /**
@@ -199,12 +225,27 @@ public class HierarchyNode
    * @return JSON for the Hierarchy Node.
    */
   protected static HierarchyNode fromJSON(String sJson, RegistryAdapter registry)
+  {
+    return fromJSON(sJson, registry, null);
+  }
+
+  /**
+   * Generates the Hierarchy Node from JSON, resolving the types against the
+   * given update of the metadata cache if there is one.
+   * 
+   * @param sJson
+   * @param registry
+   * @param update
+   * @return Hierarchy Node of the JSON.
+   */
+  protected static HierarchyNode fromJSON(String sJson, RegistryAdapter registry, MetadataCache.Update update)
   {
     JsonParser parser = new JsonParser();
 
     JsonObject oJson = parser.parse(sJson).getAsJsonObject();
 
-    GeoObjectType got = registry.getMetadataCache().getGeoObjectType(oJson.get(HierarchyType.JSON_GEOOBJECTTYPE).getAsString()).get();
+    String typeCode = oJson.get(HierarchyType.JSON_GEOOBJECTTYPE).getAsString();
+    GeoObjectType got = ( update != null ? update.getGeoObjectType(typeCode) : registry.getMetadataCache().getGeoObjectType(typeCode) ).get();
 
     String inheritedHierarchyCode = null;
     if (oJson.has(HierarchyType.JSON_INHERITED_HIER_CODE) && !oJson.get(HierarchyType.JSON_INHERITED_HIER_CODE).isJsonNull())
@@ -219,7 +260,7 @@ public class HierarchyNode
     {
       JsonObject joChild = jaChildren.get(i).getAsJsonObject();
 
-      HierarchyNode hnChild = HierarchyNode.fromJSON(joChild.toString(), registry);
+      HierarchyNode hnChild = HierarchyNode.fromJSON(joChild.toString(), registry, update);
 
       node.addChild(hnChild);
     }
@@ -251,16 +292,9 @@ public class HierarchyNode
   
   public List<HierarchyNode> getAllDescendants()
   {
-    ArrayList<HierarchyNode> descends = new ArrayList<HierarchyNode>();
-    
-    for (HierarchyNode child : this.getChildren())
-    {
-      descends.add(child);
-      
-      descends.addAll(child.getAllDescendants());
-    }
-    
-    return descends;
+    List<HierarchyNode> nodes = this.getClosure().getNodes();
+
+    return new ArrayList<HierarchyNode>(nodes.subList(1, nodes.size()));
   }
   
 //  public class DescendantsIterator implements Iterator<HierarchyNode>
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.metadata;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synchronized list of the nodes of a {@link HierarchyType} or the children of
+ * a {@link HierarchyNode}. All lists of one hierarchy share a version, which
+ * every change to any of them increments and which tells a
+ * {@link HierarchyClosure} whether the nodes it was built from may have
+ * changed. A node added to a list joins the version of the list together with
+ * its descendants, so a node belongs to one hierarchy at a time.
+ */
+class HierarchyNodeList extends AbstractList<HierarchyNode> implements RandomAccess, Serializable
+{
+  private static final long         serialVersionUID = -1503366409561883306L;
+
+  private final List<HierarchyNode> nodes            = new ArrayList<HierarchyNode>();
+
+  /**
+   * Number of changes made to the nodes of the hierarchy of this list
+   */
+  private AtomicLong                version          = new AtomicLong();
+
+  synchronized AtomicLong getVersion()
+  {
+    return this.version;
+  }
+
+  synchronized void modified()
+  {
+    this.version.incrementAndGet();
+  }
+
+  /**
+   * Moves this list and the nodes below it to the version of another
+   * hierarchy.
+   */
+  synchronized void adopt(AtomicLong version)
+  {
+    if (this.version != version)
+    {
+      this.version = version;
+
+      for (HierarchyNode node : this.nodes)
+      {
+        node.adopt(version);
+      }
+    }
+  }
+
+  @Override
+  public synchronized HierarchyNode get(int index)
+  {
+    return this.nodes.get(index);
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return this.nodes.size();
+  }
+
+  @Override
+  public synchronized HierarchyNode set(int index, HierarchyNode node)
+  {
+    node.adopt(this.version);
+
+    HierarchyNode previous = this.nodes.set(index, node);
+
+    modified();
+
+    return previous;
+  }
+
+  @Override
+  public synchronized void add(int index, HierarchyNode node)
+  {
+    node.adopt(this.version);
+
+    this.nodes.add(index, node);
+    this.modCount++;
+
+    modified();
+  }
+
+  @Override
+  public synchronized HierarchyNode remove(int index)
+  {
+    HierarchyNode node = this.nodes.remove(index);
+    this.modCount++;
+
+    modified();
+
+    return node;
+  }
+
+  @Override
+  public synchronized Object[] toArray()
+  {
+    return this.nodes.toArray();
+  }
+
+  /**
+   * @return A copy of the nodes, which can be iterated without holding the
+   *         lock of the list
+   */
+  synchronized HierarchyNode[] toNodeArray()
+  {
+    return this.nodes.toArray(new HierarchyNode[this.nodes.size()]);
+  }
+}
@@ -20,10 +20,9 @@ package org.commongeoregistry.adapter.metadata;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
@@ -122,7 +121,9 @@ public class HierarchyType implements Serializable
 
   private String              email;
 
-  private List<HierarchyNode> rootGeoObjectTypes;
+  private HierarchyNodeList   rootGeoObjectTypes;
+
+  private transient volatile HierarchyClosure closure;
 
   public HierarchyType(String code, LocalizedValue label, LocalizedValue description, String organizationCode)
   {
@@ -130,7 +131,7 @@ public class HierarchyType implements Serializable
     this.label = label;
     this.description = description;
     this.organizationCode = organizationCode;
-    this.rootGeoObjectTypes = Collections.synchronizedList(new LinkedList<HierarchyNode>());
+    this.rootGeoObjectTypes = new HierarchyNodeList();
   }
 
   public String getCode()
@@ -281,21 +282,32 @@ public class HierarchyType implements Serializable
   
   public Iterator<HierarchyNode> getAllNodesIterator()
   {
-    return this.getAllNodes().iterator(); // TODO : There's definitely a better way to do this but I don't really have time
+    return this.getClosure().getNodes().iterator();
   }
   
   public List<HierarchyNode> getAllNodes()
   {
-    ArrayList<HierarchyNode> descends = new ArrayList<HierarchyNode>();
-    
-    for (HierarchyNode child : this.getRootGeoObjectTypes())
+    return new ArrayList<HierarchyNode>(this.getClosure().getNodes());
+  }
+
+  /**
+   * Returns the {@link HierarchyClosure} of the nodes of this hierarchy, used
+   * for ancestry checks between its types. The closure is cached until the
+   * nodes of this hierarchy change.
+   */
+  public HierarchyClosure getClosure()
+  {
+    AtomicLong version = this.rootGeoObjectTypes.getVersion();
+    HierarchyClosure closure = this.closure;
+
+    if (closure == null || !closure.isCurrent(version))
     {
-      descends.add(child);
-      
-      descends.addAll(child.getAllDescendants());
+      closure = new HierarchyClosure(version, this.rootGeoObjectTypes.toNodeArray());
+
+      this.closure = closure;
     }
-    
-    return descends;
+
+    return closure;
   }
 
   /**
@@ -362,6 +374,20 @@ public class HierarchyType implements Serializable
    * @return
    */
   public static HierarchyType fromJSON(String _sJson, RegistryAdapter _registry)
+  {
+    return fromJSON(_sJson, _registry, null);
+  }
+
+  /**
+   * Creates a {@link HierarchyType} from JSON whose {@link GeoObjectType}s are
+   * resolved against the given update of the metadata cache.
+   * 
+   * @param _sJson
+   * @param _registry
+   * @param _update
+   * @return
+   */
+  public static HierarchyType fromJSON(String _sJson, RegistryAdapter _registry, MetadataCache.Update _update)
   {
     JsonParser parser = new JsonParser();
 
@@ -405,7 +431,7 @@ public class HierarchyType implements Serializable
     {
       for (int i = 0; i < rootGeoObjectTypes.size(); ++i)
       {
-        HierarchyNode node = HierarchyNode.fromJSON(rootGeoObjectTypes.get(i).getAsJsonObject().toString(), _registry);
+        HierarchyNode node = HierarchyNode.fromJSON(rootGeoObjectTypes.get(i).getAsJsonObject().toString(), _registry, _update);
 
         ht.addRootGeoObjects(node);
       }
@@ -415,6 +441,11 @@ public class HierarchyType implements Serializable
   }
 
   public static HierarchyType[] fromJSONArray(String saJson, RegistryAdapter adapter)
+  {
+    return fromJSONArray(saJson, adapter, null);
+  }
+
+  public static HierarchyType[] fromJSONArray(String saJson, RegistryAdapter adapter, MetadataCache.Update update)
   {
     JsonParser parser = new JsonParser();
 
@@ -422,7 +453,7 @@ public class HierarchyType implements Serializable
     HierarchyType[] hts = new HierarchyType[jaHts.size()];
     for (int i = 0; i < jaHts.size(); ++i)
     {
-      HierarchyType ht = HierarchyType.fromJSON(jaHts.get(i).toString(), adapter);
+      HierarchyType ht = HierarchyType.fromJSON(jaHts.get(i).toString(), adapter, update);
       hts[i] = ht;
     }
 
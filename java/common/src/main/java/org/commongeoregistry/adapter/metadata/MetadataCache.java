@@ -18,21 +18,32 @@
  */
 package org.commongeoregistry.adapter.metadata;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.commongeoregistry.adapter.Optional;
 import org.commongeoregistry.adapter.RegistryAdapter;
 import org.commongeoregistry.adapter.Term;
 import org.commongeoregistry.adapter.dataaccess.GeoObject;
+import org.commongeoregistry.adapter.dataaccess.SerializationPlan;
 
 /**
  * This is a singleton instance that caches {@link GeoObjectType} objects for creating {@link GeoObject}s and 
  * that caches {@link HierarchyType}.
  * 
+ * The cached metadata is held in a snapshot which is replaced as a whole when
+ * an {@link Update} is published, so readers never observe a partially
+ * refreshed cache. Every change to the cache increments its version.
+ * 
  * @author nathan
  *
  */
@@ -43,95 +54,176 @@ public class MetadataCache implements Serializable
    */
   private static final long serialVersionUID = -8829469298178067536L;
   
-  private Map<String, OrganizationDTO> organizationMap;
-  private Map<String, GeoObjectType> geoGeoObjectTypeMap;
-  private Map<String, HierarchyType> hierarchyTypeMap;
-  private Map<String, Term> termMap;
+  private volatile Snapshot snapshot;
+  private volatile long version;
   private RegistryAdapter adapter;
   
   public MetadataCache(RegistryAdapter adapter)
   {
     this.adapter = adapter;
+    this.snapshot = new Snapshot();
   }
   
   /** 
    * Clears the metadata cache.
    */
-  public void rebuild()
+  public synchronized void rebuild()
+  {
+    this.snapshot = new Snapshot();
+    this.version++;
+  }
+  
+  /**
+   * @return The version of the cached metadata, which is incremented every
+   *         time the cache changes
+   */
+  public long getVersion()
+  {
+    return this.version;
+  }
+  
+  /**
+   * Starts an {@link Update} of the cache. The changes of the update are not
+   * visible until it is published.
+   */
+  public Update update()
+  {
+    return new Update();
+  }
+  
+  /**
+   * Writes the cached metadata to the given file, see {@link #load(File)}.
+   */
+  public void save(File file) throws IOException
+  {
+    Snapshot snapshot;
+    long version;
+    
+    synchronized (this)
+    {
+      snapshot = this.snapshot;
+      version = this.version;
+    }
+    
+    MetadataCacheFile.write(file, version, snapshot.organizationMap.values(), snapshot.geoGeoObjectTypeMap.values(), snapshot.hierarchyTypeMap.values(), snapshot.termMap.values());
+  }
+  
+  /**
+   * Adds the metadata of a file written by {@link #save(File)} to the cache.
+   * The metadata is published in a single step.
+   * 
+   * @return false if the file does not exist
+   * @throws IOException
+   *           if the file is not a metadata file of a supported version
+   */
+  public boolean load(File file) throws IOException
   {
-    this.organizationMap = new ConcurrentHashMap<String, OrganizationDTO>();
-    this.geoGeoObjectTypeMap = new ConcurrentHashMap<String, GeoObjectType>();
-    this.hierarchyTypeMap = new ConcurrentHashMap<String, HierarchyType>();
-    this.termMap = new ConcurrentHashMap<String, Term>();
+    if (!file.isFile())
+    {
+      return false;
+    }
+    
+    Update update = this.update();
+    
+    MetadataCacheFile.read(file, this.adapter, update);
+    
+    update.publish();
+    
+    return true;
   }
   
-  public void addTerm(Term term) 
+  public synchronized void addTerm(Term term) 
   {
-    this.termMap.put(term.getCode(), term);
+    this.snapshot.termMap.put(term.getCode(), term);
+    this.version++;
   }
     
   public Optional<Term> getTerm(String code) 
   {
-    return Optional.of(this.termMap.get(code));
+    return Optional.of(this.snapshot.termMap.get(code));
+  }
+  
+  public synchronized void removeTerm(String code)
+  {
+    this.snapshot.termMap.remove(code);
+    this.version++;
   }
 
-  public void addOrganization(OrganizationDTO organization) 
+  public synchronized void addOrganization(OrganizationDTO organization) 
   {
-    this.organizationMap.put(organization.getCode(), organization);
+    this.snapshot.organizationMap.put(organization.getCode(), organization);
+    this.version++;
   }
     
   public Optional<OrganizationDTO> getOrganization(String code) 
   {
-    return Optional.of(this.organizationMap.get(code));
+    return Optional.of(this.snapshot.organizationMap.get(code));
   }
   
   public List<OrganizationDTO> getAllOrganizations()
   {
 //    return this.organizationMap.values().toArray(new OrganizationDTO[this.organizationMap.values().size()]);
     
-    return new ArrayList<OrganizationDTO>(this.organizationMap.values());
+    return new ArrayList<OrganizationDTO>(this.snapshot.organizationMap.values());
   }
   
-  public void removeOrganization(String code)
+  public synchronized void removeOrganization(String code)
   {
-    this.organizationMap.remove(code);
+    this.snapshot.organizationMap.remove(code);
+    this.version++;
   }
   
-  public void addGeoObjectType(GeoObjectType geoObjectType) 
+  public synchronized void addGeoObjectType(GeoObjectType geoObjectType) 
   {
-    this.geoGeoObjectTypeMap.put(geoObjectType.getCode(), geoObjectType);
+    this.snapshot.geoGeoObjectTypeMap.put(geoObjectType.getCode(), geoObjectType);
+    this.version++;
   }
     
   public Optional<GeoObjectType> getGeoObjectType(String code) 
   {
-    return Optional.of(this.geoGeoObjectTypeMap.get(code));
+    return Optional.of(this.snapshot.geoGeoObjectTypeMap.get(code));
+  }
+  
+  public synchronized void removeGeoObjectType(String code)
+  {
+    this.snapshot.geoGeoObjectTypeMap.remove(code);
+    this.version++;
   }
   
-  public void removeGeoObjectType(String code)
+  /**
+   * Returns the {@link SerializationPlan} of the cached {@link GeoObjectType}
+   * with the given code. The plan is cached with the type and replaced when
+   * the type or its attributes change.
+   */
+  public Optional<SerializationPlan> getSerializationPlan(String code)
   {
-    this.geoGeoObjectTypeMap.remove(code);
+    GeoObjectType type = this.snapshot.geoGeoObjectTypeMap.get(code);
+    
+    return Optional.of(type != null ? type.getSerializationPlan() : null);
   }
   
-  public void addHierarchyType(HierarchyType hierarchyType) 
+  public synchronized void addHierarchyType(HierarchyType hierarchyType) 
   {
-    this.hierarchyTypeMap.put(hierarchyType.getCode(), hierarchyType);
+    this.snapshot.hierarchyTypeMap.put(hierarchyType.getCode(), hierarchyType);
+    this.version++;
   }
   
   public Optional<HierarchyType> getHierachyType(String code) 
   {
-    return Optional.of(this.hierarchyTypeMap.get(code));
+    return Optional.of(this.snapshot.hierarchyTypeMap.get(code));
   }
   
-  public void removeHierarchyType(String code)
+  public synchronized void removeHierarchyType(String code)
   {
-    this.hierarchyTypeMap.remove(code);
+    this.snapshot.hierarchyTypeMap.remove(code);
+    this.version++;
   }
 
   public List<OrganizationDTO> getAllOrganizationsTypes()
   {
 //    return this.organizationMap.values().toArray(new OrganizationDTO[this.organizationMap.values().size()]);
     
-    return new ArrayList<OrganizationDTO>(this.organizationMap.values());
+    return new ArrayList<OrganizationDTO>(this.snapshot.organizationMap.values());
   }
   
   public List<String> getAllOrganizationCodes()
@@ -152,7 +244,7 @@ public class MetadataCache implements Serializable
   {
 //    return this.geoGeoObjectTypeMap.values().toArray(new GeoObjectType[this.geoGeoObjectTypeMap.values().size()]);
     
-    return new ArrayList<GeoObjectType>(this.geoGeoObjectTypeMap.values());
+    return new ArrayList<GeoObjectType>(this.snapshot.geoGeoObjectTypeMap.values());
   }
   
   public List<String> getAllGeoObjectTypeCodes()
@@ -173,6 +265,369 @@ public class MetadataCache implements Serializable
   {
 //    return this.hierarchyTypeMap.values().toArray(new HierarchyType[this.hierarchyTypeMap.values().size()]);
     
-    return new ArrayList<HierarchyType>(this.hierarchyTypeMap.values());
+    return new ArrayList<HierarchyType>(this.snapshot.hierarchyTypeMap.values());
+  }
+  
+  /**
+   * Replaces the snapshot with a copy of the current snapshot with the
+   * changes of the update applied.
+   */
+  private synchronized long publish(Update update)
+  {
+    Snapshot current = this.snapshot;
+    Snapshot next = new Snapshot();
+    
+    update.organizations.apply(current.organizationMap, next.organizationMap);
+    update.geoObjectTypes.apply(current.geoGeoObjectTypeMap, next.geoGeoObjectTypeMap);
+    update.hierarchyTypes.apply(current.hierarchyTypeMap, next.hierarchyTypeMap);
+    update.terms.apply(current.termMap, next.termMap);
+    
+    this.snapshot = next;
+    
+    return ++this.version;
+  }
+  
+  /**
+   * The maps of the cache. A snapshot is never emptied: the cache is refreshed
+   * by publishing a new snapshot.
+   */
+  private static class Snapshot implements Serializable
+  {
+    private static final long serialVersionUID = 6120365431979270829L;
+    
+    private final Map<String, OrganizationDTO> organizationMap = new ConcurrentHashMap<String, OrganizationDTO>();
+    private final Map<String, GeoObjectType> geoGeoObjectTypeMap = new ConcurrentHashMap<String, GeoObjectType>();
+    private final Map<String, HierarchyType> hierarchyTypeMap = new ConcurrentHashMap<String, HierarchyType>();
+    private final Map<String, Term> termMap = new ConcurrentHashMap<String, Term>();
+  }
+  
+  /**
+   * The pending changes of one kind of metadata.
+   */
+  private static abstract class Changes<T>
+  {
+    private final Map<String, T> put = new HashMap<String, T>();
+    private final Set<String> removed = new HashSet<String>();
+    
+    abstract String getCode(T value);
+    
+    abstract String getFingerprint(T value);
+    
+    void put(T value)
+    {
+      String code = this.getCode(value);
+      
+      this.put.put(code, value);
+      this.removed.remove(code);
+    }
+    
+    void remove(String code)
+    {
+      this.put.remove(code);
+      this.removed.add(code);
+    }
+    
+    T get(Map<String, T> current, String code)
+    {
+      if (this.removed.contains(code))
+      {
+        return null;
+      }
+      
+      T value = this.put.get(code);
+      
+      return value != null ? value : current.get(code);
+    }
+    
+    /**
+     * Stages the given values as the complete contents: values which are not
+     * in the current map or which differ from the current value are put, and
+     * current values which are not given are removed. Unchanged values keep
+     * their current instance.
+     */
+    void replace(Map<String, T> current, Collection<T> values)
+    {
+      Set<String> codes = new HashSet<String>();
+      
+      for (T value : values)
+      {
+        String code = this.getCode(value);
+        T existing = current.get(code);
+        
+        codes.add(code);
+        
+        if (existing == null || !this.isSame(existing, value))
+        {
+          this.put(value);
+        }
+        else
+        {
+          this.put.remove(code);
+          this.removed.remove(code);
+        }
+      }
+      
+      for (String code : current.keySet())
+      {
+        if (!codes.contains(code))
+        {
+          this.remove(code);
+        }
+      }
+    }
+    
+    boolean isSame(T existing, T value)
+    {
+      return this.getFingerprint(existing).equals(this.getFingerprint(value));
+    }
+    
+    void apply(Map<String, T> current, Map<String, T> target)
+    {
+      target.putAll(current);
+      target.putAll(this.put);
+      
+      for (String code : this.removed)
+      {
+        target.remove(code);
+      }
+    }
+    
+    int size()
+    {
+      return this.put.size() + this.removed.size();
+    }
+  }
+  
+  /**
+   * A set of changes to the cache which is published atomically. Changes are
+   * staged against the current contents of the cache, and are applied to
+   * the contents of the cache at the time of {@link #publish()}, so changes
+   * made directly to the cache in the meantime are kept.
+   * 
+   * The replace methods diff the given metadata against the cache by
+   * comparing JSON, so that only added, changed and removed entries are
+   * applied and unchanged entries keep their instance.
+   */
+  public class Update
+  {
+    private final Changes<OrganizationDTO> organizations = new Changes<OrganizationDTO>()
+    {
+      @Override
+      String getCode(OrganizationDTO value)
+      {
+        return value.getCode();
+      }
+      
+      @Override
+      String getFingerprint(OrganizationDTO value)
+      {
+        return value.toJSON().toString();
+      }
+    };
+    
+    private final Changes<GeoObjectType> geoObjectTypes = new Changes<GeoObjectType>()
+    {
+      @Override
+      String getCode(GeoObjectType value)
+      {
+        return value.getCode();
+      }
+      
+      @Override
+      String getFingerprint(GeoObjectType value)
+      {
+        return value.toJSON().toString();
+      }
+    };
+    
+    private final Changes<HierarchyType> hierarchyTypes = new Changes<HierarchyType>()
+    {
+      @Override
+      String getCode(HierarchyType value)
+      {
+        return value.getCode();
+      }
+      
+      @Override
+      String getFingerprint(HierarchyType value)
+      {
+        return value.toJSON().toString();
+      }
+      
+      /**
+       * A hierarchy is also replaced when one of its types is replaced, so
+       * that the cached hierarchies reference the cached types.
+       */
+      @Override
+      boolean isSame(HierarchyType existing, HierarchyType value)
+      {
+        for (HierarchyNode node : existing.getAllNodes())
+        {
+          if (getGeoObjectType(node.getGeoObjectType().getCode()).orElse(null) != node.getGeoObjectType())
+          {
+            return false;
+          }
+        }
+        
+        return super.isSame(existing, value);
+      }
+    };
+    
+    private final Changes<Term> terms = new Changes<Term>()
+    {
+      @Override
+      String getCode(Term value)
+      {
+        return value.getCode();
+      }
+      
+      @Override
+      String getFingerprint(Term value)
+      {
+        return value.toJSON().toString();
+      }
+    };
+    
+    private final long baseVersion;
+    
+    private Update()
+    {
+      this.baseVersion = MetadataCache.this.version;
+    }
+    
+    /**
+     * @return The version of the cache when the update was started
+     */
+    public long getBaseVersion()
+    {
+      return this.baseVersion;
+    }
+    
+    public Update addOrganization(OrganizationDTO organization)
+    {
+      this.organizations.put(organization);
+      
+      return this;
+    }
+    
+    public Update removeOrganization(String code)
+    {
+      this.organizations.remove(code);
+      
+      return this;
+    }
+    
+    public Update replaceOrganizations(Collection<OrganizationDTO> organizations)
+    {
+      this.organizations.replace(MetadataCache.this.snapshot.organizationMap, organizations);
+      
+      return this;
+    }
+    
+    public Update addGeoObjectType(GeoObjectType geoObjectType)
+    {
+      this.geoObjectTypes.put(geoObjectType);
+      
+      return this;
+    }
+    
+    public Update removeGeoObjectType(String code)
+    {
+      this.geoObjectTypes.remove(code);
+      
+      return this;
+    }
+    
+    public Update replaceGeoObjectTypes(Collection<GeoObjectType> geoObjectTypes)
+    {
+      this.geoObjectTypes.replace(MetadataCache.this.snapshot.geoGeoObjectTypeMap, geoObjectTypes);
+      
+      return this;
+    }
+    
+    /**
+     * @return The {@link GeoObjectType} as it will be cached once the update
+     *         is published
+     */
+    public Optional<GeoObjectType> getGeoObjectType(String code)
+    {
+      return Optional.of(this.geoObjectTypes.get(MetadataCache.this.snapshot.geoGeoObjectTypeMap, code));
+    }
+    
+    public Update addHierarchyType(HierarchyType hierarchyType)
+    {
+      this.hierarchyTypes.put(hierarchyType);
+      
+      return this;
+    }
+    
+    public Update removeHierarchyType(String code)
+    {
+      this.hierarchyTypes.remove(code);
+      
+      return this;
+    }
+    
+    /**
+     * Hierarchies should be replaced after the types, as a hierarchy is
+     * compared against the types staged in this update.
+     */
+    public Update replaceHierarchyTypes(Collection<HierarchyType> hierarchyTypes)
+    {
+      this.hierarchyTypes.replace(MetadataCache.this.snapshot.hierarchyTypeMap, hierarchyTypes);
+      
+      return this;
+    }
+    
+    public Update addTerm(Term term)
+    {
+      this.terms.put(term);
+      
+      return this;
+    }
+    
+    public Update removeTerm(String code)
+    {
+      this.terms.remove(code);
+      
+      return this;
+    }
+    
+    public Update replaceTerms(Collection<Term> terms)
+    {
+      this.terms.replace(MetadataCache.this.snapshot.termMap, terms);
+      
+      return this;
+    }
+    
+    /**
+     * @return The number of entries which are added, changed or removed by
+     *         the update
+     */
+    public int size()
+    {
+      return this.organizations.size() + this.geoObjectTypes.size() + this.hierarchyTypes.size() + this.terms.size();
+    }
+    
+    public boolean isEmpty()
+    {
+      return this.size() == 0;
+    }
+    
+    /**
+     * Publishes the changes to the cache in a single step. An empty update
+     * leaves the cache untouched.
+     * 
+     * @return The version of the cache after the update
+     */
+    public long publish()
+    {
+      if (this.isEmpty())
+      {
+        return MetadataCache.this.version;
+      }
+      
+      return MetadataCache.this.publish(this);
+    }
   }
 }
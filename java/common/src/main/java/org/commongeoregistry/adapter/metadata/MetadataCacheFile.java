@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+import org.commongeoregistry.adapter.RegistryAdapter;
+import org.commongeoregistry.adapter.Term;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Binary file layout of a {@link MetadataCache} snapshot, used to start a
+ * client from local metadata instead of fetching it from the registry.
+ * 
+ * <pre>
+ * file    := int32(MAGIC) int16(VERSION) int64(cache version) int64(saved at) section{4}
+ * section := byte(kind) int32(count) { entry }
+ * entry   := bytes(code) bytes(JSON)
+ * bytes   := int32(length) byte{length}
+ * </pre>
+ * 
+ * Sections are written in the order organizations, types, hierarchies and
+ * terms, so that the types are known when the hierarchies are read. Every
+ * entry is the UTF-8 text of the JSON representation of the metadata object.
+ * The file is read through a buffered stream, which is closed before the
+ * cache is saved again, so the file can be replaced on every platform.
+ */
+class MetadataCacheFile
+{
+  private static final int     MAGIC                = 0x4347524D;
+
+  private static final int     VERSION              = 1;
+
+  private static final int     KIND_ORGANIZATION    = 1;
+
+  private static final int     KIND_GEO_OBJECT_TYPE = 2;
+
+  private static final int     KIND_HIERARCHY_TYPE  = 3;
+
+  private static final int     KIND_TERM            = 4;
+
+  private static final Charset UTF_8                = Charset.forName("UTF-8");
+
+  private MetadataCacheFile()
+  {
+  }
+
+  /**
+   * Writes the metadata to a temporary file next to the given file, which is
+   * then renamed, so that readers never see a partially written file.
+   */
+  static void write(File file, long version, Collection<OrganizationDTO> organizations, Collection<GeoObjectType> types, Collection<HierarchyType> hierarchies, Collection<Term> terms) throws IOException
+  {
+    File directory = file.getAbsoluteFile().getParentFile();
+
+    if (directory != null && !directory.exists() && !directory.mkdirs())
+    {
+      throw new IOException("Unable to create the directory [" + directory + "]");
+    }
+
+    File temp = File.createTempFile(file.getName(), ".tmp", directory);
+
+    try
+    {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+      try
+      {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(version);
+        out.writeLong(System.currentTimeMillis());
+
+        out.writeByte(KIND_ORGANIZATION);
+        out.writeInt(organizations.size());
+
+        for (OrganizationDTO organization : organizations)
+        {
+          writeEntry(out, organization.getCode(), organization.toJSON().toString());
+        }
+
+        out.writeByte(KIND_GEO_OBJECT_TYPE);
+        out.writeInt(types.size());
+
+        for (GeoObjectType type : types)
+        {
+          writeEntry(out, type.getCode(), type.toJSON().toString());
+        }
+
+        out.writeByte(KIND_HIERARCHY_TYPE);
+        out.writeInt(hierarchies.size());
+
+        for (HierarchyType hierarchy : hierarchies)
+        {
+          writeEntry(out, hierarchy.getCode(), hierarchy.toJSON().toString());
+        }
+
+        out.writeByte(KIND_TERM);
+        out.writeInt(terms.size());
+
+        for (Term term : terms)
+        {
+          writeEntry(out, term.getCode(), term.toJSON().toString());
+        }
+      }
+      finally
+      {
+        out.close();
+      }
+
+      if (!temp.renameTo(file) && ! ( file.delete() && temp.renameTo(file) ))
+      {
+        throw new IOException("Unable to replace the metadata file [" + file + "]");
+      }
+    }
+    finally
+    {
+      if (temp.exists())
+      {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Stages the metadata of the file in the given update.
+   */
+  static void read(File file, RegistryAdapter registry, MetadataCache.Update update) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+    try
+    {
+      read(in, registry, update);
+    }
+    catch (EOFException e)
+    {
+      throw new IOException("The metadata file [" + file + "] is truncated", e);
+    }
+    catch (RuntimeException e)
+    {
+      throw new IOException("The metadata file [" + file + "] is corrupt", e);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private static void read(DataInputStream in, RegistryAdapter registry, MetadataCache.Update update) throws IOException
+  {
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("The file does not contain metadata of the registry");
+    }
+
+    int version = in.readShort();
+
+    if (version != VERSION)
+    {
+      throw new IOException("Unsupported metadata file version [" + version + "]");
+    }
+
+    // Cache version and time of the snapshot
+    in.readLong();
+    in.readLong();
+
+    JsonParser parser = new JsonParser();
+
+    for (int section = 0; section < 4; section++)
+    {
+      int kind = in.readByte();
+      int count = in.readInt();
+
+      for (int i = 0; i < count; i++)
+      {
+        // The code is stored for tools which inspect the file
+        in.readFully(new byte[readLength(in)]);
+
+        String json = readString(in);
+
+        if (kind == KIND_ORGANIZATION)
+        {
+          update.addOrganization(OrganizationDTO.fromJSON(json));
+        }
+        else if (kind == KIND_GEO_OBJECT_TYPE)
+        {
+          update.addGeoObjectType(GeoObjectType.fromJSON(json, registry));
+        }
+        else if (kind == KIND_HIERARCHY_TYPE)
+        {
+          update.addHierarchyType(HierarchyType.fromJSON(json, registry, update));
+        }
+        else if (kind == KIND_TERM)
+        {
+          update.addTerm(Term.fromJSON((JsonObject) parser.parse(json)));
+        }
+        else
+        {
+          throw new IOException("Unknown metadata section [" + kind + "]");
+        }
+      }
+    }
+  }
+
+  private static void writeEntry(DataOutputStream out, String code, String json) throws IOException
+  {
+    byte[] bytes = code.getBytes(UTF_8);
+
+    out.writeInt(bytes.length);
+    out.write(bytes);
+
+    bytes = json.getBytes(UTF_8);
+
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static int readLength(DataInputStream in) throws IOException
+  {
+    int length = in.readInt();
+
+    if (length < 0)
+    {
+      throw new IOException("Invalid entry length [" + length + "]");
+    }
+
+    return length;
+  }
+
+  private static String readString(DataInputStream in) throws IOException
+  {
+    byte[] bytes = new byte[readLength(in)];
+    in.readFully(bytes);
+
+    return new String(bytes, UTF_8);
+  }
+}
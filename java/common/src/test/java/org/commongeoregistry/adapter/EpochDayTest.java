@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.dataaccess.ValueOverTimeCollectionDTO;
+import org.commongeoregistry.adapter.dataaccess.ValueOverTimeDTO;
+import org.commongeoregistry.adapter.metadata.AttributeCharacterType;
+import org.commongeoregistry.adapter.metadata.AttributeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EpochDayTest
+{
+  @Test
+  public void testFormatAndParse() throws ParseException
+  {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+    for (long day = -200000; day < 1200000; day += 97)
+    {
+      String expected = format.format(EpochDay.toDate(day));
+
+      Assert.assertEquals(expected, EpochDay.format(day));
+      Assert.assertEquals(day, EpochDay.parse(expected));
+    }
+
+    // Lenient fields and trailing text are handled like SimpleDateFormat
+    for (String text : new String[] { "2020-13-01", "2020-02-30", "2020-00-00", "2020-1-5", "2020-01-01T10:00:00Z", "1582-10-04" })
+    {
+      Assert.assertEquals(text, format.parse(text), EpochDay.toDate(EpochDay.parse(text)));
+    }
+  }
+
+  @Test(expected = ParseException.class)
+  public void testParseInvalid() throws ParseException
+  {
+    EpochDay.parse("not a date");
+  }
+
+  @Test
+  public void testOf()
+  {
+    Assert.assertEquals(0, EpochDay.of(1970, 1, 1));
+    Assert.assertEquals(-1, EpochDay.of(-1));
+    Assert.assertEquals(-1, EpochDay.of(-EpochDay.MILLIS_PER_DAY));
+    Assert.assertEquals(0, EpochDay.of(EpochDay.MILLIS_PER_DAY - 1));
+    Assert.assertEquals(EpochDay.of(2021, 3, 1), EpochDay.of(2021, 2, 29));
+  }
+
+  @Test
+  public void testValueOverTime()
+  {
+    AttributeType type = AttributeType.factory("testChar", new LocalizedValue("testChar"), new LocalizedValue("testChar"), AttributeCharacterType.TYPE, false, false, false);
+
+    ValueOverTimeCollectionDTO votc = new ValueOverTimeCollectionDTO(type);
+    ValueOverTimeDTO vot = new ValueOverTimeDTO(null, new Date(EpochDay.toMillis(100) + 5000), new Date(EpochDay.toMillis(200) + 5000), votc);
+
+    Assert.assertEquals(EpochDay.toDate(100), vot.getStartDate());
+    Assert.assertEquals(200, vot.getEndDay());
+    Assert.assertTrue(vot.between(new Date(EpochDay.toMillis(200) + 86399999)));
+    Assert.assertFalse(vot.between(new Date(EpochDay.toMillis(100) - 1)));
+    Assert.assertSame(ValueOverTimeDTO.INFINITY_END_DATE, new ValueOverTimeDTO(null, new Date(), null, votc).getEndDate());
+    Assert.assertEquals(ValueOverTimeDTO.INFINITY_END_DATE, EpochDay.toDate(EpochDay.of(5000, 12, 31)));
+  }
+}
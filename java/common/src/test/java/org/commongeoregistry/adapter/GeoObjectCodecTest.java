@@ -0,0 +1,352 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import org.commongeoregistry.adapter.constants.DefaultAttribute;
+import org.commongeoregistry.adapter.constants.GeometryType;
+import org.commongeoregistry.adapter.dataaccess.Attribute;
+import org.commongeoregistry.adapter.dataaccess.BinaryGeoObjectCodec;
+import org.commongeoregistry.adapter.dataaccess.GeoObject;
+import org.commongeoregistry.adapter.dataaccess.GeoObjectCodec;
+import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTime;
+import org.commongeoregistry.adapter.dataaccess.JsonGeoObjectCodec;
+import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.dataaccess.SerializationPlan;
+import org.commongeoregistry.adapter.metadata.AttributeBooleanType;
+import org.commongeoregistry.adapter.metadata.AttributeCharacterType;
+import org.commongeoregistry.adapter.metadata.AttributeClassificationType;
+import org.commongeoregistry.adapter.metadata.AttributeDateType;
+import org.commongeoregistry.adapter.metadata.AttributeFloatType;
+import org.commongeoregistry.adapter.metadata.AttributeIntegerType;
+import org.commongeoregistry.adapter.metadata.AttributeTermType;
+import org.commongeoregistry.adapter.metadata.AttributeType;
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+import org.commongeoregistry.adapter.metadata.MetadataFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GeoObjectCodecTest
+{
+  private static final String   GEOMETRY = "POLYGON ((10000 10000, 12300 40000, 16800 50000, 12354 60000, 13354 60000, 17800 50000, 13300 40000, 11000 10000, 10000 10000))";
+
+  private RegistryAdapterServer registry;
+
+  private GeoObjectType         state;
+
+  private Term                  testChild;
+
+  @Before
+  public void setUp()
+  {
+    this.registry = new RegistryAdapterServer(new MockIdService());
+
+    this.state = MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+
+    Term testRoot = MetadataFactory.newTerm("testRoot", new LocalizedValue("testRoot"), new LocalizedValue("testRoot"), registry);
+    this.testChild = MetadataFactory.newTerm("testChild", new LocalizedValue("testChild"), new LocalizedValue("testChild"), registry);
+    testRoot.addChild(this.testChild);
+
+    AttributeTermType testTerm = (AttributeTermType) AttributeType.factory("testTerm", new LocalizedValue("testTerm"), new LocalizedValue("testTerm"), AttributeTermType.TYPE, false, false, false);
+    testTerm.setRootTerm(testRoot);
+
+    AttributeClassificationType testClassification = (AttributeClassificationType) AttributeType.factory("testClassification", new LocalizedValue("testClassification"), new LocalizedValue("testClassification"), AttributeClassificationType.TYPE, false, false, false);
+    testClassification.setClassificationType("test.classification.Test");
+    testClassification.setRootTerm(testRoot);
+
+    this.state.addAttribute(AttributeType.factory("testChar", new LocalizedValue("testChar"), new LocalizedValue("testChar"), AttributeCharacterType.TYPE, false, false, false));
+    this.state.addAttribute(AttributeType.factory("testDate", new LocalizedValue("testDate"), new LocalizedValue("testDate"), AttributeDateType.TYPE, false, false, false));
+    this.state.addAttribute(AttributeType.factory("testInteger", new LocalizedValue("testInteger"), new LocalizedValue("testInteger"), AttributeIntegerType.TYPE, false, false, false));
+    this.state.addAttribute(AttributeType.factory("testFloat", new LocalizedValue("testFloat"), new LocalizedValue("testFloat"), AttributeFloatType.TYPE, false, false, false));
+    this.state.addAttribute(AttributeType.factory("testBoolean", new LocalizedValue("testBoolean"), new LocalizedValue("testBoolean"), AttributeBooleanType.TYPE, false, false, false));
+    this.state.addAttribute(testTerm);
+    this.state.addAttribute(testClassification);
+  }
+
+  private GeoObject newGeoObject()
+  {
+    GeoObject geoObject = registry.newGeoObjectInstance("State");
+
+    geoObject.setWKTGeometry(GEOMETRY);
+    geoObject.setCode("Colorado");
+    geoObject.setUid("CO");
+    geoObject.setDisplayLabel(LocalizedValue.DEFAULT_LOCALE, "Colorado Display Label");
+    geoObject.setWritable(true);
+
+    geoObject.setValue("testChar", "Test Character Value é");
+    geoObject.setValue("testDate", new Date(1234567890123L));
+    geoObject.setValue("testInteger", -3L);
+    geoObject.setValue("testFloat", 2.5D);
+    geoObject.setValue("testBoolean", false);
+    geoObject.setValue("testTerm", this.testChild);
+    geoObject.setValue("testClassification", this.testChild);
+
+    return geoObject;
+  }
+
+  private GeoObjectOverTime newGeoObjectOverTime()
+  {
+    GeoObjectOverTime geoObject = registry.newGeoObjectOverTimeInstance("State");
+
+    geoObject.setWKTGeometry(GEOMETRY, null);
+    geoObject.setCode("Colorado");
+    geoObject.setUid("CO");
+    geoObject.setDisplayLabel(new LocalizedValue("Colorado Display Label"), null, null);
+    geoObject.setExists(true, null, null);
+
+    geoObject.setValue("testChar", "Test Character Value");
+    geoObject.setValue("testInteger", 42L);
+
+    return geoObject;
+  }
+
+  private static byte[] encode(GeoObjectCodec codec, GeoObject geoObject) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.write(geoObject, out);
+
+    return out.toByteArray();
+  }
+
+  private static byte[] encode(GeoObjectCodec codec, GeoObjectOverTime geoObject) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.write(geoObject, out);
+
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testGeoObject() throws IOException
+  {
+    GeoObject geoObject = this.newGeoObject();
+
+    byte[] json = encode(new JsonGeoObjectCodec(registry), geoObject);
+    byte[] binary = encode(new BinaryGeoObjectCodec(registry), geoObject);
+
+    GeoObject fromJson = new JsonGeoObjectCodec(registry).readGeoObject(new ByteArrayInputStream(json));
+    GeoObject fromBinary = new BinaryGeoObjectCodec(registry).readGeoObject(new ByteArrayInputStream(binary));
+
+    Assert.assertEquals(geoObject.toJSON().toString(), new String(json, "UTF-8"));
+
+    // Only the binary format reads the writable flag back
+    Assert.assertNull(fromJson.getWritable());
+    fromJson.setWritable(true);
+
+    Assert.assertEquals(fromJson.toJSON().toString(), fromBinary.toJSON().toString());
+    Assert.assertEquals(geoObject.getGeometry(), fromBinary.getGeometry());
+    Assert.assertEquals(Boolean.TRUE, fromBinary.getWritable());
+    Assert.assertEquals(geoObject.getValue("testDate"), fromBinary.getValue("testDate"));
+    Assert.assertTrue(binary.length < json.length * 3 / 4);
+  }
+
+  @Test
+  public void testGeoObjectOverTime() throws IOException
+  {
+    GeoObjectOverTime geoObject = this.newGeoObjectOverTime();
+
+    byte[] json = encode(new JsonGeoObjectCodec(registry), geoObject);
+    byte[] binary = encode(new BinaryGeoObjectCodec(registry), geoObject);
+
+    GeoObjectOverTime fromJson = new JsonGeoObjectCodec(registry).readGeoObjectOverTime(new ByteArrayInputStream(json));
+    GeoObjectOverTime fromBinary = new BinaryGeoObjectCodec(registry).readGeoObjectOverTime(new ByteArrayInputStream(binary));
+
+    Assert.assertEquals(geoObject.toJSON().toString(), new String(json, "UTF-8"));
+    Assert.assertEquals(fromJson.toJSON().toString(), fromBinary.toJSON().toString());
+    Assert.assertEquals("Colorado Display Label", fromBinary.getDisplayLabel(null).getValue());
+    Assert.assertTrue(binary.length < json.length * 3 / 4);
+  }
+
+  @Test
+  public void testStream() throws IOException
+  {
+    BinaryGeoObjectCodec codec = new BinaryGeoObjectCodec(registry);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    codec.write(this.newGeoObject(), out);
+    codec.write(this.newGeoObjectOverTime(), out);
+
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+    Assert.assertEquals("Colorado", codec.readGeoObject(in).getCode());
+    Assert.assertEquals("Colorado", codec.readGeoObjectOverTime(in).getCode());
+    Assert.assertEquals(0, in.available());
+  }
+
+  @Test
+  public void testAttributeAdded() throws IOException
+  {
+    BinaryGeoObjectCodec codec = new BinaryGeoObjectCodec(registry);
+
+    GeoObject geoObject = this.newGeoObject();
+    byte[] binary = encode(codec, geoObject);
+    byte[] overTime = encode(codec, this.newGeoObjectOverTime());
+
+    this.state.addAttribute(AttributeType.factory("testAdded", new LocalizedValue("testAdded"), new LocalizedValue("testAdded"), AttributeCharacterType.TYPE, false, false, false));
+
+    GeoObject fromBinary = codec.readGeoObject(new ByteArrayInputStream(binary));
+
+    Assert.assertEquals("CO", fromBinary.getUid());
+    Assert.assertEquals(geoObject.getGeometry(), fromBinary.getGeometry());
+    Assert.assertEquals("Test Character Value é", fromBinary.getValue("testChar"));
+    Assert.assertEquals(-3L, fromBinary.getValue("testInteger"));
+    Assert.assertEquals(geoObject.getValue("testDate"), fromBinary.getValue("testDate"));
+    Assert.assertNull(fromBinary.getValue("testAdded"));
+
+    GeoObjectOverTime fromOverTime = codec.readGeoObjectOverTime(new ByteArrayInputStream(overTime));
+
+    Assert.assertEquals("Colorado", fromOverTime.getCode());
+    Assert.assertEquals("Colorado Display Label", fromOverTime.getDisplayLabel(null).getValue());
+    Assert.assertEquals(42L, fromOverTime.getValue("testInteger"));
+  }
+
+  @Test
+  public void testAttributeTypeChanged() throws IOException
+  {
+    BinaryGeoObjectCodec codec = new BinaryGeoObjectCodec(registry);
+
+    byte[] binary = encode(codec, this.newGeoObject());
+
+    this.state.removeAttribute("testInteger");
+    this.state.addAttribute(AttributeType.factory("testInteger", new LocalizedValue("testInteger"), new LocalizedValue("testInteger"), AttributeCharacterType.TYPE, false, false, false));
+
+    GeoObject fromBinary = codec.readGeoObject(new ByteArrayInputStream(binary));
+
+    /*
+     * The value written for the old type is skipped instead of being misread
+     */
+    Assert.assertNull(fromBinary.getValue("testInteger"));
+    Assert.assertEquals("Test Character Value é", fromBinary.getValue("testChar"));
+    Assert.assertEquals(2.5D, fromBinary.getValue("testFloat"));
+  }
+
+  @Test
+  public void testUnknownSerializationPlan() throws IOException
+  {
+    SerializationPlan plan = this.state.getSerializationPlan();
+    byte[] binary = encode(new BinaryGeoObjectCodec(registry), this.newGeoObject());
+
+    this.state.addAttribute(AttributeType.factory("testAdded", new LocalizedValue("testAdded"), new LocalizedValue("testAdded"), AttributeCharacterType.TYPE, false, false, false));
+
+    BinaryGeoObjectCodec codec = new BinaryGeoObjectCodec(registry);
+
+    try
+    {
+      codec.readGeoObject(new ByteArrayInputStream(binary));
+
+      Assert.fail("Read an object written with an unknown plan");
+    }
+    catch (IOException e)
+    {
+      // Expected
+    }
+
+    codec.addSerializationPlan(plan);
+
+    Assert.assertEquals(-3L, codec.readGeoObject(new ByteArrayInputStream(binary)).getValue("testInteger"));
+  }
+
+  @Test
+  public void testSerializationPlan()
+  {
+    SerializationPlan plan = this.state.getSerializationPlan();
+
+    Assert.assertSame(plan, this.state.getSerializationPlan());
+    Assert.assertSame(plan, this.registry.getMetadataCache().getSerializationPlan("State").get());
+    Assert.assertEquals(DefaultAttribute.TYPE.getName(), plan.getName(plan.getSlot(DefaultAttribute.TYPE.getName())));
+    Assert.assertTrue(plan.isChangeOverTime(plan.getSlot(DefaultAttribute.GEOMETRY.getName())));
+    Assert.assertEquals(-1, plan.getSlot("testAdded"));
+
+    this.state.addAttribute(AttributeType.factory("testAdded", new LocalizedValue("testAdded"), new LocalizedValue("testAdded"), AttributeCharacterType.TYPE, false, false, false));
+
+    SerializationPlan updated = this.state.getSerializationPlan();
+
+    Assert.assertNotSame(plan, updated);
+    Assert.assertNotEquals(plan.getFingerprint(), updated.getFingerprint());
+    Assert.assertTrue(updated.getSlot("testAdded") >= 0);
+  }
+
+  @Test
+  public void testSerializationPlanAttributeChanged()
+  {
+    SerializationPlan plan = this.state.getSerializationPlan();
+    int slot = plan.getSlot("testChar");
+
+    Assert.assertFalse(plan.isChangeOverTime(slot));
+
+    this.state.getAttribute("testChar").get().setIsChangeOverTime(true);
+
+    SerializationPlan updated = this.state.getSerializationPlan();
+
+    Assert.assertNotSame(plan, updated);
+    Assert.assertTrue(updated.isChangeOverTime(slot));
+    Assert.assertNotEquals(plan.getFingerprint(), updated.getFingerprint());
+
+    /*
+     * Replacing an attribute in the map without changing its size
+     */
+    this.state.getAttributeMap().put("testChar", AttributeType.factory("testChar", new LocalizedValue("testChar"), new LocalizedValue("testChar"), AttributeIntegerType.TYPE, false, false, false));
+
+    Assert.assertNotSame(updated, this.state.getSerializationPlan());
+    Assert.assertSame(this.state.getSerializationPlan(), this.state.getSerializationPlan());
+  }
+
+  @Test
+  public void testSlotAttributeMap()
+  {
+    Map<String, Attribute> attributes = GeoObject.buildAttributeMap(this.state);
+
+    Assert.assertFalse(attributes.containsKey(DefaultAttribute.GEOMETRY.getName()));
+    Assert.assertTrue(attributes.keySet().containsAll(Arrays.asList("testChar", "testTerm", DefaultAttribute.CODE.getName())));
+    Assert.assertEquals(this.state.getAttributeMap().size(), attributes.size());
+    Assert.assertSame(attributes.get("testChar"), attributes.get("testChar"));
+    Assert.assertNull(attributes.get("testMissing"));
+
+    /*
+     * Removing an attribute of the type resets it to its default value
+     */
+    Attribute testChar = attributes.get("testChar");
+    testChar.setValue("Test Character Value");
+
+    Assert.assertSame(testChar, attributes.remove("testChar"));
+    Assert.assertTrue(attributes.containsKey("testChar"));
+    Assert.assertNull(attributes.get("testChar").getValue());
+    Assert.assertEquals(this.state.getAttributeMap().size(), attributes.size());
+
+    Map<String, Attribute> overTime = GeoObjectOverTime.buildAttributeMap(this.state);
+
+    Assert.assertFalse(overTime.containsKey(DefaultAttribute.DISPLAY_LABEL.getName()));
+    Assert.assertTrue(overTime.containsKey(DefaultAttribute.CODE.getName()));
+
+    GeoObject geoObject = this.registry.newGeoObjectInstance("State");
+    String json = geoObject.toJSON().toString();
+
+    geoObject.getValue("testTerm");
+    geoObject.getValue("testClassification");
+
+    Assert.assertEquals(json, geoObject.toJSON().toString());
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import org.commongeoregistry.adapter.constants.GeometryType;
+import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+import org.commongeoregistry.adapter.metadata.HierarchyClosure;
+import org.commongeoregistry.adapter.metadata.HierarchyNode;
+import org.commongeoregistry.adapter.metadata.HierarchyType;
+import org.commongeoregistry.adapter.metadata.MetadataFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HierarchyClosureTest
+{
+  private RegistryAdapterServer registry;
+
+  private HierarchyType         hierarchy;
+
+  private HierarchyNode         state;
+
+  @Before
+  public void setUp()
+  {
+    this.registry = new RegistryAdapterServer(new MockIdService());
+
+    this.hierarchy = MetadataFactory.newHierarchyType("LocatedIn", new LocalizedValue("Located In"), new LocalizedValue("Located In"), "", this.registry);
+
+    // Continent is inherited from another hierarchy
+    HierarchyNode continent = new HierarchyNode(this.newType("Continent"), "Geographic");
+    HierarchyNode country = new HierarchyNode(this.newType("Country"));
+    this.state = new HierarchyNode(this.newType("State"));
+
+    continent.addChild(country);
+    country.addChild(this.state);
+    country.addChild(new HierarchyNode(this.newType("District")));
+    this.state.addChild(new HierarchyNode(this.newType("County")));
+
+    this.hierarchy.addRootGeoObjects(continent);
+  }
+
+  private GeoObjectType newType(String code)
+  {
+    return MetadataFactory.newGeoObjectType(code, GeometryType.MULTIPOLYGON, new LocalizedValue(code), new LocalizedValue(code), true, null, this.registry);
+  }
+
+  @Test
+  public void testClosure()
+  {
+    HierarchyClosure closure = this.hierarchy.getClosure();
+
+    Assert.assertSame(closure, this.hierarchy.getClosure());
+    Assert.assertEquals(5, closure.size());
+    Assert.assertEquals(5, this.hierarchy.getAllNodes().size());
+
+    Assert.assertTrue(closure.isAncestor("Country", "County"));
+    Assert.assertTrue(closure.isAncestor("Continent", "District"));
+    Assert.assertTrue(closure.isDescendant("County", "State"));
+    Assert.assertFalse(closure.isAncestor("County", "Country"));
+    Assert.assertFalse(closure.isAncestor("State", "District"));
+    Assert.assertFalse(closure.isAncestor("State", "Unknown"));
+
+    Assert.assertTrue(closure.contains("Continent", false));
+    Assert.assertFalse(closure.contains("Continent", true));
+    Assert.assertTrue(closure.isInherited("Continent"));
+    Assert.assertFalse(closure.isInherited("State"));
+
+    int country = closure.getOrdinal("Country");
+
+    Assert.assertEquals("Country", closure.getCode(country));
+    Assert.assertEquals(3, closure.getDescendants(country).cardinality());
+    Assert.assertEquals(1, closure.getAncestors(country).cardinality());
+    Assert.assertEquals(-1, closure.getOrdinal("Unknown"));
+
+    Assert.assertTrue(this.state.hierarchyHasGeoObjectType("County", true));
+    Assert.assertFalse(this.state.hierarchyHasGeoObjectType("Country", false));
+    Assert.assertEquals(1, this.state.getAllDescendants().size());
+  }
+
+  @Test
+  public void testRebuiltOnChange()
+  {
+    HierarchyClosure closure = this.hierarchy.getClosure();
+
+    this.state.addChild(new HierarchyNode(this.newType("City")));
+
+    HierarchyClosure updated = this.hierarchy.getClosure();
+
+    Assert.assertNotSame(closure, updated);
+    Assert.assertTrue(updated.isAncestor("Country", "City"));
+    Assert.assertTrue(this.state.hierarchyHasGeoObjectType("City", true));
+
+    this.state.getChildren().remove(1);
+
+    Assert.assertFalse(this.hierarchy.getClosure().contains("City", false));
+  }
+
+  @Test
+  public void testIndependentHierarchies()
+  {
+    HierarchyType other = MetadataFactory.newHierarchyType("PartOf", new LocalizedValue("Part Of"), new LocalizedValue("Part Of"), "", this.registry);
+    HierarchyNode region = new HierarchyNode(this.newType("Region"));
+    other.addRootGeoObjects(region);
+
+    HierarchyClosure closure = this.hierarchy.getClosure();
+    HierarchyClosure otherClosure = other.getClosure();
+
+    /*
+     * Changes to one hierarchy do not invalidate the closure of another
+     */
+    region.addChild(new HierarchyNode(this.newType("Province")));
+
+    Assert.assertSame(closure, this.hierarchy.getClosure());
+    Assert.assertNotSame(otherClosure, other.getClosure());
+    Assert.assertTrue(other.getClosure().isAncestor("Region", "Province"));
+
+    /*
+     * A subtree added to a hierarchy joins its version
+     */
+    HierarchyNode city = new HierarchyNode(this.newType("City"));
+    HierarchyClosure cityClosure = city.getClosure();
+
+    this.state.addChild(city);
+
+    Assert.assertNotSame(cityClosure, city.getClosure());
+
+    closure = this.hierarchy.getClosure();
+
+    city.addChild(new HierarchyNode(this.newType("Ward")));
+
+    Assert.assertNotSame(closure, this.hierarchy.getClosure());
+    Assert.assertTrue(this.hierarchy.getClosure().isAncestor("State", "Ward"));
+  }
+}
@@ -0,0 +1,1387 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.commongeoregistry.adapter.constants.RegistryUrls;
+import org.commongeoregistry.adapter.http.AdaptiveLimitConnector;
+import org.commongeoregistry.adapter.http.AsyncHttpConnector;
+import org.commongeoregistry.adapter.http.AuthenticationException;
+import org.commongeoregistry.adapter.http.BodyWriter;
+import org.commongeoregistry.adapter.http.Callback;
+import org.commongeoregistry.adapter.http.CoalescingConnector;
+import org.commongeoregistry.adapter.http.ConcurrencyLimitException;
+import org.commongeoregistry.adapter.http.Connector;
+import org.commongeoregistry.adapter.http.ConnectionPool;
+import org.commongeoregistry.adapter.http.HedgingConnector;
+import org.commongeoregistry.adapter.http.HttpResponse;
+import org.commongeoregistry.adapter.http.HttpResponseCache;
+import org.commongeoregistry.adapter.http.PooledHttpConnector;
+import org.commongeoregistry.adapter.http.StreamingConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpConnectorTest
+{
+  private HttpServer    server;
+
+  private Set<String>   clients;
+
+  private AtomicInteger requests;
+
+  private String        body;
+
+  private String        received;
+
+  private String        requestEncoding;
+
+  private String        responseEncoding;
+
+  private String        etag;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    this.clients = Collections.synchronizedSet(new HashSet<String>());
+    this.requests = new AtomicInteger();
+    this.body = "{\"code\":\"US\"}";
+
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.server.createContext("/", new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        clients.add(exchange.getRemoteAddress().toString());
+        requests.incrementAndGet();
+
+        requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+
+        InputStream in = exchange.getRequestBody();
+
+        if ("gzip".equals(requestEncoding))
+        {
+          in = new GZIPInputStream(in);
+        }
+
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream())
+        {
+          int b;
+
+          while ( ( b = in.read() ) != -1)
+          {
+            out.write(b);
+          }
+
+          received = out.toString("UTF-8");
+        }
+        finally
+        {
+          in.close();
+        }
+
+        if (etag != null)
+        {
+          exchange.getResponseHeaders().set("ETag", etag);
+
+          if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+          {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+
+            return;
+          }
+        }
+
+        byte[] bytes = body.getBytes("UTF-8");
+
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+        if (accept != null && accept.contains("gzip"))
+        {
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+          try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+          {
+            gzip.write(bytes);
+          }
+
+          bytes = out.toByteArray();
+          responseEncoding = "gzip";
+
+          exchange.getResponseHeaders().set("Content-Encoding", responseEncoding);
+        }
+        else
+        {
+          responseEncoding = null;
+        }
+
+        exchange.sendResponseHeaders(200, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody())
+        {
+          out.write(bytes);
+        }
+      }
+    });
+    this.server.start();
+  }
+
+  @After
+  public void tearDown()
+  {
+    this.server.stop(0);
+  }
+
+  /**
+   * Asserts that the given connector passes streamed GET responses and
+   * streamed POST bodies through to the connector it wraps.
+   */
+  private void assertStreams(StreamingConnector connector) throws AuthenticationException, IOException
+  {
+    try (HttpResponse response = connector.httpGetStream(RegistryUrls.GEO_OBJECT_GET_CHILDREN, new HashMap<String, String>()))
+    {
+      Assert.assertTrue(response.isStreaming());
+
+      JsonReader reader = response.getAsJsonReader();
+      reader.beginObject();
+
+      Assert.assertEquals("code", reader.nextName());
+      Assert.assertEquals("US", reader.nextString());
+
+      reader.endObject();
+    }
+
+    HttpResponse response = connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, new BodyWriter()
+    {
+      @Override
+      public void write(Writer writer) throws IOException
+      {
+        writer.write("{\"code\":\"US\"}");
+      }
+    });
+
+    Assert.assertEquals(200, response.getStatusCode());
+    Assert.assertEquals("{\"code\":\"US\"}", this.received);
+  }
+
+  private String getServerUrl()
+  {
+    return "http://localhost:" + this.server.getAddress().getPort() + "/";
+  }
+
+  @Test
+  public void testPooledConnectorReusesConnection() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector connector = new PooledHttpConnector(2);
+    connector.setServerUrl(this.getServerUrl());
+
+    try
+    {
+      for (int i = 0; i < 20; i++)
+      {
+        HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(this.body, response.getAsString());
+      }
+
+      HttpResponse response = connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, "{}");
+
+      Assert.assertEquals(200, response.getStatusCode());
+      Assert.assertEquals(21, this.requests.get());
+      Assert.assertEquals(1, this.clients.size());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testPoolLimitsRequests() throws Exception
+  {
+    final ConnectionPool pool = new ConnectionPool(1);
+    pool.setAcquireTimeout(100);
+
+    final URL url = new URL(this.getServerUrl());
+
+    PooledHttpConnector connector = new PooledHttpConnector(pool);
+    connector.setServerUrl(this.getServerUrl());
+
+    connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+    Assert.assertEquals(0, pool.getLeasedCount(url));
+
+    /*
+     * While the only slot of the route is taken other requests time out
+     */
+    pool.acquire(url);
+
+    try
+    {
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.fail("Expected the request to time out");
+    }
+    catch (IOException e)
+    {
+      // Expected
+    }
+    finally
+    {
+      pool.release(url, null, true);
+    }
+
+    connector.shutdown();
+
+    try
+    {
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.fail("Expected the request to be rejected");
+    }
+    catch (IOException e)
+    {
+      // Expected
+    }
+
+    Assert.assertEquals(0, pool.getLeasedCount(url));
+  }
+
+  @Test
+  public void testStreamingResponse() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector connector = new PooledHttpConnector(1);
+    connector.setServerUrl(this.getServerUrl());
+
+    try
+    {
+      for (int i = 0; i < 3; i++)
+      {
+        try (HttpResponse response = connector.httpGetStream(RegistryUrls.GEO_OBJECT_GET_CHILDREN, new HashMap<String, String>()))
+        {
+          Assert.assertTrue(response.isStreaming());
+
+          JsonReader reader = response.getAsJsonReader();
+          reader.beginObject();
+
+          Assert.assertEquals("code", reader.nextName());
+          Assert.assertEquals("US", reader.nextString());
+
+          reader.endObject();
+
+          Assert.assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+        }
+      }
+
+      Assert.assertEquals(1, this.clients.size());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testCompressedResponse() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector connector = new PooledHttpConnector(1);
+    connector.setServerUrl(this.getServerUrl());
+
+    try
+    {
+      for (int i = 0; i < 3; i++)
+      {
+        HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+        Assert.assertEquals("gzip", this.responseEncoding);
+        Assert.assertEquals(this.body, response.getAsString());
+      }
+
+      Assert.assertEquals(1, this.clients.size());
+
+      connector.setAcceptCompression(false);
+
+      HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.assertNull(this.responseEncoding);
+      Assert.assertEquals(this.body, response.getAsString());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testCompressedRequest() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector connector = new PooledHttpConnector(1);
+    connector.setServerUrl(this.getServerUrl());
+    connector.setCompressRequests(true);
+    connector.setCompressionThreshold(64);
+
+    try
+    {
+      StringBuilder large = new StringBuilder("[");
+
+      for (int i = 0; i < 100; i++)
+      {
+        large.append(i > 0 ? "," : "").append("{\"code\":\"US\"}");
+      }
+
+      large.append("]");
+
+      connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, large.toString());
+
+      Assert.assertEquals("gzip", this.requestEncoding);
+      Assert.assertEquals(large.toString(), this.received);
+
+      /*
+       * Bodies below the threshold are sent as is
+       */
+      connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, "{}");
+
+      Assert.assertNull(this.requestEncoding);
+      Assert.assertEquals("{}", this.received);
+
+      /*
+       * The threshold also applies to bodies written by a BodyWriter
+       */
+      final String body = large.toString();
+
+      connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, new BodyWriter()
+      {
+        @Override
+        public void write(Writer writer) throws IOException
+        {
+          writer.write(body);
+        }
+      });
+
+      Assert.assertEquals("gzip", this.requestEncoding);
+      Assert.assertEquals(body, this.received);
+
+      connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, new BodyWriter()
+      {
+        @Override
+        public void write(Writer writer) throws IOException
+        {
+          writer.write("{}");
+        }
+      });
+
+      Assert.assertNull(this.requestEncoding);
+      Assert.assertEquals("{}", this.received);
+      Assert.assertEquals(1, this.clients.size());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testAsyncConnector() throws InterruptedException, ExecutionException
+  {
+    PooledHttpConnector pooled = new PooledHttpConnector(2);
+    pooled.setServerUrl(this.getServerUrl());
+
+    AsyncHttpConnector connector = new AsyncHttpConnector(pooled, 2);
+
+    try
+    {
+      final CountDownLatch latch = new CountDownLatch(50);
+      final AtomicInteger successes = new AtomicInteger();
+
+      Callback<HttpResponse> callback = new Callback<HttpResponse>()
+      {
+        @Override
+        public void onSuccess(HttpResponse result)
+        {
+          if (result.getStatusCode() == 200)
+          {
+            successes.incrementAndGet();
+          }
+
+          latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable t)
+        {
+          latch.countDown();
+        }
+      };
+
+      for (int i = 0; i < 50; i++)
+      {
+        connector.httpGetAsync(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>(), callback);
+      }
+
+      Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+      Assert.assertEquals(50, successes.get());
+      Assert.assertEquals(50, this.requests.get());
+      Assert.assertTrue(this.clients.size() <= 2);
+      Assert.assertEquals(0, connector.getInFlightCount());
+
+      final CountDownLatch failed = new CountDownLatch(1);
+
+      Future<String> future = connector.submit(new Callable<String>()
+      {
+        @Override
+        public String call() throws Exception
+        {
+          throw new IOException("Expected");
+        }
+      }, new Callback<String>()
+      {
+        @Override
+        public void onSuccess(String result)
+        {
+        }
+
+        @Override
+        public void onFailure(Throwable t)
+        {
+          if (t instanceof IOException)
+          {
+            failed.countDown();
+          }
+        }
+      });
+
+      try
+      {
+        future.get();
+
+        Assert.fail("Expected an ExecutionException");
+      }
+      catch (ExecutionException e)
+      {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+
+      Assert.assertTrue(failed.await(30, TimeUnit.SECONDS));
+    }
+    finally
+    {
+      connector.shutdown();
+      pooled.shutdown();
+    }
+  }
+
+  @Test
+  public void testCoalescingConnector() throws Exception
+  {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+
+    final CoalescingConnector connector = new CoalescingConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        calls.incrementAndGet();
+
+        try
+        {
+          release.await(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse(body, 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        calls.incrementAndGet();
+
+        return new HttpResponse(body, 200);
+      }
+    });
+
+    AsyncHttpConnector async = new AsyncHttpConnector(connector, 10);
+
+    try
+    {
+      Future<?>[] futures = new Future<?>[10];
+
+      for (int i = 0; i < futures.length; i++)
+      {
+        final HashMap<String, String> params = new HashMap<String, String>();
+        params.put("code", "US");
+        params.put("typeCode", "Country");
+
+        if (i % 2 == 0)
+        {
+          futures[i] = async.httpGetAsync(RegistryUrls.GEO_OBJECT_GET_CODE, params, null);
+        }
+        else
+        {
+          // Streamed requests share the response of buffered ones
+          futures[i] = async.submit(new Callable<HttpResponse>()
+          {
+            @Override
+            public HttpResponse call() throws Exception
+            {
+              return connector.httpGetStream(RegistryUrls.GEO_OBJECT_GET_CODE, params);
+            }
+          }, null);
+        }
+      }
+
+      long timeout = System.currentTimeMillis() + 30000;
+
+      while (connector.getCoalescedCount() < 9 && System.currentTimeMillis() < timeout)
+      {
+        Thread.sleep(10);
+      }
+
+      release.countDown();
+
+      Set<HttpResponse> responses = Collections.newSetFromMap(new IdentityHashMap<HttpResponse, Boolean>());
+
+      for (Future<?> future : futures)
+      {
+        HttpResponse response = (HttpResponse) future.get();
+
+        Assert.assertEquals(this.body, response.getAsString());
+
+        responses.add(response);
+      }
+
+      /*
+       * Every caller receives its own copy of the shared response
+       */
+      Assert.assertEquals(futures.length, responses.size());
+      Assert.assertEquals(1, calls.get());
+      Assert.assertEquals(9, connector.getCoalescedCount());
+
+      /*
+       * Completed requests are not cached
+       */
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.assertEquals(2, calls.get());
+    }
+    finally
+    {
+      async.shutdown();
+    }
+  }
+
+  @Test
+  public void testCoalescingConnectorSkipsUids() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(2);
+    final AtomicInteger calls = new AtomicInteger();
+
+    final CoalescingConnector connector = new CoalescingConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        int call = calls.incrementAndGet();
+
+        started.countDown();
+
+        try
+        {
+          started.await(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse("[\"uid-" + call + "\"]", 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 200);
+      }
+    });
+
+    AsyncHttpConnector async = new AsyncHttpConnector(connector, 2);
+
+    try
+    {
+      HashMap<String, String> params = new HashMap<String, String>();
+      params.put(RegistryUrls.GEO_OBJECT_GET_UIDS_PARAM_AMOUNT, "1");
+
+      Future<HttpResponse> first = async.httpGetAsync(RegistryUrls.GEO_OBJECT_GET_UIDS, params, null);
+      Future<HttpResponse> second = async.httpGetAsync(RegistryUrls.GEO_OBJECT_GET_UIDS, params, null);
+
+      /*
+       * Both requests are in flight at the same time and must each reach the
+       * server, otherwise the callers would be handed the same UIDs
+       */
+      Assert.assertNotEquals(first.get().getAsString(), second.get().getAsString());
+      Assert.assertEquals(2, calls.get());
+      Assert.assertEquals(0, connector.getCoalescedCount());
+    }
+    finally
+    {
+      async.shutdown();
+    }
+  }
+
+  @Test
+  public void testCoalescingConnectorStreams() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector pooled = new PooledHttpConnector(1);
+    pooled.setServerUrl(this.getServerUrl());
+
+    try
+    {
+      CoalescingConnector connector = new CoalescingConnector(pooled);
+
+      /*
+       * Coalesced GET requests are buffered so that they can be shared
+       */
+      HttpResponse response = connector.httpGetStream(RegistryUrls.GEO_OBJECT_GET_CHILDREN, new HashMap<String, String>());
+
+      Assert.assertFalse(response.isStreaming());
+      Assert.assertEquals(this.body, response.getAsString());
+
+      try (HttpResponse uids = connector.httpGetStream(RegistryUrls.GEO_OBJECT_GET_UIDS, new HashMap<String, String>()))
+      {
+        Assert.assertTrue(uids.isStreaming());
+        Assert.assertEquals(this.body, uids.getAsString());
+      }
+
+      response = connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, new BodyWriter()
+      {
+        @Override
+        public void write(Writer writer) throws IOException
+        {
+          writer.write("{\"code\":\"US\"}");
+        }
+      });
+
+      Assert.assertEquals(200, response.getStatusCode());
+      Assert.assertEquals("{\"code\":\"US\"}", this.received);
+    }
+    finally
+    {
+      pooled.shutdown();
+    }
+  }
+
+  @Test
+  public void testAdaptiveLimitConnector() throws AuthenticationException, IOException
+  {
+    final AtomicInteger status = new AtomicInteger(200);
+
+    AdaptiveLimitConnector connector = new AdaptiveLimitConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, status.get());
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, status.get());
+      }
+    }, 4, AdaptiveLimitConnector.UNBOUNDED);
+
+    for (int i = 0; i < 40; i++)
+    {
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+    }
+
+    int increased = connector.getLimit();
+
+    Assert.assertTrue(increased > 4);
+
+    status.set(503);
+
+    for (int i = 0; i < 5; i++)
+    {
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+    }
+
+    Assert.assertTrue(connector.getLimit() < increased);
+    Assert.assertEquals(0, connector.getInFlight());
+  }
+
+  @Test
+  public void testAdaptiveLimitConnectorOtherFailures() throws AuthenticationException, IOException
+  {
+    final AtomicInteger failure = new AtomicInteger();
+
+    AdaptiveLimitConnector connector = new AdaptiveLimitConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        switch (failure.get())
+        {
+          case 0:
+            throw new AuthenticationException();
+          case 1:
+            throw new IllegalStateException();
+          default:
+            throw new IOException();
+        }
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return this.httpGet(url, null);
+      }
+    }, 4, AdaptiveLimitConnector.UNBOUNDED);
+
+    for (int i = 0; i < 3; i++)
+    {
+      failure.set(i);
+
+      try
+      {
+        connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, "{}");
+
+        Assert.fail("Expected the request to fail");
+      }
+      catch (Exception e)
+      {
+        Assert.assertEquals(i < 2 ? 4 : 3, connector.getLimit());
+      }
+    }
+
+    Assert.assertEquals(0, connector.getInFlight());
+
+    try
+    {
+      connector.setBackoffRatio(1);
+
+      Assert.fail("Accepted a backoff ratio which does not decrease the limit");
+    }
+    catch (IllegalArgumentException e)
+    {
+      // Expected
+    }
+
+    try
+    {
+      connector.setMinLimit(connector.getMaxLimit() + 1);
+
+      Assert.fail("Accepted a minimum limit above the maximum limit");
+    }
+    catch (IllegalArgumentException e)
+    {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testAdaptiveLimitConnectorStreams() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector pooled = new PooledHttpConnector(1);
+    pooled.setServerUrl(this.getServerUrl());
+
+    try
+    {
+      AdaptiveLimitConnector connector = new AdaptiveLimitConnector(pooled);
+
+      this.assertStreams(connector);
+
+      Assert.assertEquals(0, connector.getInFlight());
+    }
+    finally
+    {
+      pooled.shutdown();
+    }
+  }
+
+  @Test
+  public void testAdaptiveLimitConnectorConcurrentFailures() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(5);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final AdaptiveLimitConnector connector = new AdaptiveLimitConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        started.countDown();
+
+        try
+        {
+          release.await(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse(body, 503);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 503);
+      }
+    }, 10, AdaptiveLimitConnector.UNBOUNDED);
+
+    AsyncHttpConnector async = new AsyncHttpConnector(connector, 5);
+
+    try
+    {
+      Future<?>[] futures = new Future<?>[5];
+
+      for (int i = 0; i < futures.length; i++)
+      {
+        futures[i] = async.httpGetAsync(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>(), null);
+      }
+
+      Assert.assertTrue(started.await(30, TimeUnit.SECONDS));
+
+      release.countDown();
+
+      for (Future<?> future : futures)
+      {
+        future.get();
+      }
+
+      /*
+       * The five failures overlapped and only back off once
+       */
+      Assert.assertEquals(9, connector.getLimit());
+
+      /*
+       * A failure of a request which started after the decrease backs off
+       * again
+       */
+      connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, "{}");
+
+      Assert.assertEquals(8, connector.getLimit());
+    }
+    finally
+    {
+      async.shutdown();
+    }
+  }
+
+  @Test
+  public void testAdaptiveLimitConnectorRejects() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final AdaptiveLimitConnector connector = new AdaptiveLimitConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        started.countDown();
+
+        try
+        {
+          release.await(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse(body, 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 200);
+      }
+    }, 1, 0);
+
+    AsyncHttpConnector async = new AsyncHttpConnector(connector, 1);
+
+    try
+    {
+      Future<HttpResponse> future = async.httpGetAsync(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>(), null);
+
+      Assert.assertTrue(started.await(30, TimeUnit.SECONDS));
+      Assert.assertEquals(1, connector.getInFlight());
+
+      try
+      {
+        connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, "{}");
+
+        Assert.fail("Expected the request to be rejected");
+      }
+      catch (ConcurrencyLimitException e)
+      {
+        // Expected
+      }
+
+      release.countDown();
+
+      Assert.assertEquals(200, future.get().getStatusCode());
+      Assert.assertEquals(0, connector.getQueueDepth());
+    }
+    finally
+    {
+      async.shutdown();
+    }
+  }
+
+  @Test
+  public void testHedgingConnector() throws AuthenticationException, IOException
+  {
+    final AtomicInteger calls = new AtomicInteger();
+
+    HedgingConnector connector = new HedgingConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        /*
+         * Every odd request is slow
+         */
+        if (calls.incrementAndGet() % 2 == 1)
+        {
+          try
+          {
+            Thread.sleep(2000);
+          }
+          catch (InterruptedException e)
+          {
+            throw new IOException(e);
+          }
+        }
+
+        return new HttpResponse(body, 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 200);
+      }
+    });
+    connector.setInitialDelay(50);
+    connector.setBudgetRatio(1);
+
+    try
+    {
+      long start = System.currentTimeMillis();
+
+      HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.assertEquals(this.body, response.getAsString());
+      Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+      Assert.assertEquals(1, connector.getHedgedCount());
+      Assert.assertEquals(2, calls.get());
+
+      /*
+       * Without any budget left the slow request is not hedged
+       */
+      connector.setBudgetRatio(0);
+      connector.setInitialDelay(10);
+
+      start = System.currentTimeMillis();
+
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.assertEquals(1, connector.getHedgedCount());
+      Assert.assertTrue(System.currentTimeMillis() - start >= 1500);
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testHedgingConnectorStreams() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector pooled = new PooledHttpConnector(1);
+    pooled.setServerUrl(this.getServerUrl());
+
+    HedgingConnector connector = new HedgingConnector(pooled);
+
+    try
+    {
+      this.assertStreams(connector);
+
+      Assert.assertEquals(0, connector.getHedgedCount());
+    }
+    finally
+    {
+      connector.shutdown();
+      pooled.shutdown();
+    }
+  }
+
+  @Test
+  public void testHedgingConnectorRecordsPrimaryLatency() throws Exception
+  {
+    final AtomicInteger calls = new AtomicInteger();
+
+    HedgingConnector connector = new HedgingConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        /*
+         * The primary requests are slow and their hedges are fast
+         */
+        if (calls.incrementAndGet() % 2 == 1)
+        {
+          try
+          {
+            Thread.sleep(300);
+          }
+          catch (InterruptedException e)
+          {
+            throw new IOException(e);
+          }
+        }
+
+        return new HttpResponse(body, 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 200);
+      }
+    });
+    connector.setInitialDelay(10);
+    connector.setBudgetRatio(1);
+
+    try
+    {
+      for (int i = 0; i < 40; i++)
+      {
+        connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+      }
+
+      Assert.assertEquals(40, connector.getHedgedCount());
+
+      /*
+       * The delay follows the latency of the primary requests which lost
+       * against their hedges, not the latency of the hedges
+       */
+      long timeout = System.currentTimeMillis() + 30000;
+
+      while (connector.getDelay() < 300 && System.currentTimeMillis() < timeout)
+      {
+        Thread.sleep(10);
+      }
+
+      Assert.assertTrue(connector.getDelay() >= 300);
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testHedgingConnectorBoundedExecutor() throws AuthenticationException, IOException
+  {
+    final AtomicInteger calls = new AtomicInteger();
+
+    HedgingConnector connector = new HedgingConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        calls.incrementAndGet();
+
+        try
+        {
+          Thread.sleep(200);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse(body, 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 200);
+      }
+    }, 1);
+    connector.setInitialDelay(10);
+    connector.setBudgetRatio(1);
+
+    try
+    {
+      /*
+       * The only thread runs the primary request, so the hedge is not sent
+       */
+      HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_GET_CODE, new HashMap<String, String>());
+
+      Assert.assertEquals(body, response.getAsString());
+      Assert.assertEquals(1, calls.get());
+      Assert.assertEquals(0, connector.getHedgedCount());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testHedgingConnectorSkipsUids() throws AuthenticationException, IOException
+  {
+    final AtomicInteger calls = new AtomicInteger();
+
+    HedgingConnector connector = new HedgingConnector(new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws AuthenticationException, IOException
+      {
+        calls.incrementAndGet();
+
+        try
+        {
+          Thread.sleep(200);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse("[\"uid\"]", 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body) throws AuthenticationException, IOException
+      {
+        return new HttpResponse(body, 200);
+      }
+    });
+    connector.setInitialDelay(10);
+    connector.setBudgetRatio(1);
+
+    try
+    {
+      connector.httpGet(RegistryUrls.GEO_OBJECT_GET_UIDS, new HashMap<String, String>());
+
+      Assert.assertEquals(1, calls.get());
+      Assert.assertEquals(0, connector.getHedgedCount());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testConditionalGet() throws AuthenticationException, IOException
+  {
+    this.etag = "\"v1\"";
+
+    HttpResponseCache cache = new HttpResponseCache();
+
+    PooledHttpConnector connector = new PooledHttpConnector(1);
+    connector.setServerUrl(this.getServerUrl());
+    connector.setResponseCache(cache);
+
+    try
+    {
+      for (int i = 0; i < 3; i++)
+      {
+        HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_TYPE_GET_ALL, new HashMap<String, String>());
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(this.body, response.getAsString());
+      }
+
+      Assert.assertEquals(2, cache.getHitCount());
+      Assert.assertEquals(1, cache.getEntryCount());
+      Assert.assertEquals(1, this.clients.size());
+
+      /*
+       * A changed resource replaces the cached body
+       */
+      this.etag = "\"v2\"";
+      this.body = "{\"code\":\"CA\"}";
+
+      HttpResponse response = connector.httpGet(RegistryUrls.GEO_OBJECT_TYPE_GET_ALL, new HashMap<String, String>());
+
+      Assert.assertEquals(this.body, response.getAsString());
+      Assert.assertEquals(2, cache.getHitCount());
+      Assert.assertEquals(this.body, connector.httpGet(RegistryUrls.GEO_OBJECT_TYPE_GET_ALL, new HashMap<String, String>()).getAsString());
+      Assert.assertEquals(3, cache.getHitCount());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testConditionalStreamedGet() throws AuthenticationException, IOException
+  {
+    this.etag = "\"v1\"";
+
+    HttpResponseCache cache = new HttpResponseCache();
+
+    PooledHttpConnector connector = new PooledHttpConnector(1);
+    connector.setServerUrl(this.getServerUrl());
+    connector.setResponseCache(cache);
+
+    try
+    {
+      HttpResponse response = connector.httpGetStream(RegistryUrls.GEO_OBJECT_TYPE_GET_ALL, new HashMap<String, String>());
+
+      Assert.assertTrue(response.isStreaming());
+      Assert.assertEquals(0, cache.getEntryCount());
+      Assert.assertEquals(this.body, response.getAsString());
+      Assert.assertEquals(1, cache.getEntryCount());
+
+      /*
+       * The stored body is revalidated by both streamed and buffered requests
+       */
+      response = connector.httpGetStream(RegistryUrls.GEO_OBJECT_TYPE_GET_ALL, new HashMap<String, String>());
+
+      Assert.assertEquals(200, response.getStatusCode());
+      Assert.assertEquals(this.body, response.getAsString());
+      Assert.assertEquals(1, cache.getHitCount());
+
+      Assert.assertEquals(this.body, connector.httpGet(RegistryUrls.GEO_OBJECT_TYPE_GET_ALL, new HashMap<String, String>()).getAsString());
+      Assert.assertEquals(2, cache.getHitCount());
+      Assert.assertEquals(1, this.clients.size());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+
+  @Test
+  public void testResponseCacheEviction()
+  {
+    HttpResponseCache cache = new HttpResponseCache(10);
+    cache.put("a", "1", null, "12345");
+    cache.put("b", "1", null, "12345");
+
+    /*
+     * Access a so that b is the least recently used
+     */
+    cache.get("a");
+    cache.put("c", null, "Mon, 01 Jan 2024 00:00:00 GMT", "123");
+
+    Assert.assertNotNull(cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertNotNull(cache.get("c"));
+    Assert.assertEquals(8, cache.getSize());
+
+    /*
+     * Responses without validators are not stored
+     */
+    cache.put("d", null, null, "1");
+
+    Assert.assertNull(cache.get("d"));
+  }
+
+  @Test
+  public void testStreamingPost() throws AuthenticationException, IOException
+  {
+    PooledHttpConnector connector = new PooledHttpConnector(1);
+    connector.setServerUrl(this.getServerUrl());
+
+    BodyWriter body = new BodyWriter()
+    {
+      @Override
+      public void write(Writer writer) throws IOException
+      {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name("code").value("US");
+        json.endObject();
+        json.flush();
+      }
+    };
+
+    try
+    {
+      HttpResponse response = connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, body);
+
+      Assert.assertEquals(200, response.getStatusCode());
+      Assert.assertNull(this.requestEncoding);
+      Assert.assertEquals("{\"code\":\"US\"}", this.received);
+
+      connector.setCompressRequests(true);
+      connector.setCompressionThreshold(0);
+
+      connector.httpPost(RegistryUrls.GEO_OBJECT_UPDATE, body);
+
+      Assert.assertEquals("gzip", this.requestEncoding);
+      Assert.assertEquals("{\"code\":\"US\"}", this.received);
+      Assert.assertEquals(1, this.clients.size());
+    }
+    finally
+    {
+      connector.shutdown();
+    }
+  }
+}
@@ -18,11 +18,17 @@
  */
 package org.commongeoregistry.adapter;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.commongeoregistry.adapter.constants.GeometryType;
 import org.commongeoregistry.adapter.constants.RegistryUrls;
@@ -31,9 +37,11 @@ import org.commongeoregistry.adapter.dataaccess.GeoObject;
 import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
 import org.commongeoregistry.adapter.dataaccess.ParentTreeNode;
 import org.commongeoregistry.adapter.http.AuthenticationException;
+import org.commongeoregistry.adapter.http.Connector;
 import org.commongeoregistry.adapter.http.HttpResponse;
 import org.commongeoregistry.adapter.http.ServerResponseException;
 import org.commongeoregistry.adapter.metadata.GeoObjectType;
+import org.commongeoregistry.adapter.metadata.HierarchyNode;
 import org.commongeoregistry.adapter.metadata.HierarchyType;
 import org.commongeoregistry.adapter.metadata.MetadataCache;
 import org.commongeoregistry.adapter.metadata.MetadataFactory;
@@ -74,6 +82,8 @@ public class HttpRegistryClientTest
      * Invoke method
      */
     HttpRegistryClient client = new HttpRegistryClient(connector);
+    // The mock connector answers the requests in the order they are made
+    client.setMetadataExecutor(null);
     client.refreshMetadataCache();
 
     MockHttpRequest req1 = connector.getRequests().get(0);
@@ -116,6 +126,265 @@ public class HttpRegistryClientTest
     Assert.assertEquals(locatedIn.getLabel().getValue(), htCache.getLabel().getValue());
   }
 
+  @Test
+  public void testRefreshMetadataCacheIncremental() throws AuthenticationException, ServerResponseException, IOException
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    GeoObjectType state = MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+    GeoObjectType county = MetadataFactory.newGeoObjectType("County", GeometryType.POLYGON, new LocalizedValue("County"), new LocalizedValue("County"), true, null, registry);
+    GeoObjectType district = MetadataFactory.newGeoObjectType("District", GeometryType.POLYGON, new LocalizedValue("District"), new LocalizedValue("District"), true, null, registry);
+
+    HierarchyType locatedIn = MetadataFactory.newHierarchyType("LocatedIn", new LocalizedValue("LOCATED_IN_LABEL"), new LocalizedValue("LOCATED_IN_DESCRIPTION"), "", registry);
+    locatedIn.addRootGeoObjects(new HierarchyNode(state));
+
+    JsonArray before = new JsonArray();
+    before.add(state.toJSON());
+    before.add(county.toJSON());
+
+    JsonArray after = new JsonArray();
+    after.add(state.toJSON());
+    after.add(district.toJSON());
+
+    JsonArray hierarchies = new JsonArray();
+    hierarchies.add(locatedIn.toJSON());
+
+    MockHttpConnector connector = new MockHttpConnector(new MockHttpRequest[] { //
+        new MockHttpRequest(new HttpResponse(before.toString(), 200)), new MockHttpRequest(new HttpResponse(hierarchies.toString(), 200)), //
+        new MockHttpRequest(new HttpResponse(after.toString(), 200)), new MockHttpRequest(new HttpResponse(hierarchies.toString(), 200)), //
+        new MockHttpRequest(new HttpResponse(after.toString(), 200)), new MockHttpRequest(new HttpResponse(hierarchies.toString(), 200)) });
+
+    HttpRegistryClient client = new HttpRegistryClient(connector);
+    client.setMetadataExecutor(null);
+    MetadataCache cache = client.getMetadataCache();
+
+    client.refreshMetadataCache();
+
+    GeoObjectType cachedState = cache.getGeoObjectType("State").get();
+    HierarchyType cachedHierarchy = cache.getHierachyType("LocatedIn").get();
+    long version = cache.getVersion();
+
+    Assert.assertTrue(cache.getGeoObjectType("County").isPresent());
+    Assert.assertSame(cachedState, cachedHierarchy.getRootGeoObjectTypes().get(0).getGeoObjectType());
+
+    client.refreshMetadataCache();
+
+    Assert.assertEquals(version + 1, cache.getVersion());
+    Assert.assertFalse(cache.getGeoObjectType("County").isPresent());
+    Assert.assertTrue(cache.getGeoObjectType("District").isPresent());
+    Assert.assertSame(cachedState, cache.getGeoObjectType("State").get());
+    Assert.assertSame(cachedHierarchy, cache.getHierachyType("LocatedIn").get());
+
+    client.refreshMetadataCache();
+
+    Assert.assertEquals(version + 1, cache.getVersion());
+  }
+
+  @Test
+  public void testRefreshMetadataCacheParallel() throws Exception
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    GeoObjectType state = MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+    HierarchyType locatedIn = MetadataFactory.newHierarchyType("LocatedIn", new LocalizedValue("LOCATED_IN_LABEL"), new LocalizedValue("LOCATED_IN_DESCRIPTION"), "", registry);
+    locatedIn.addRootGeoObjects(new HierarchyNode(state));
+
+    final JsonArray types = new JsonArray();
+    types.add(state.toJSON());
+
+    final JsonArray hierarchies = new JsonArray();
+    hierarchies.add(locatedIn.toJSON());
+
+    // The types are only returned once the hierarchies have been requested
+    final CountDownLatch requested = new CountDownLatch(1);
+
+    Connector connector = new Connector()
+    {
+      @Override
+      public HttpResponse httpGet(String url, Map<String, String> params) throws IOException
+      {
+        if (url.equals(RegistryUrls.HIERARCHY_TYPE_GET_ALL))
+        {
+          requested.countDown();
+
+          return new HttpResponse(hierarchies.toString(), 200);
+        }
+
+        try
+        {
+          Assert.assertTrue(requested.await(10, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException(e);
+        }
+
+        return new HttpResponse(types.toString(), 200);
+      }
+
+      @Override
+      public HttpResponse httpPost(String url, String body)
+      {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try
+    {
+      HttpRegistryClient client = new HttpRegistryClient(connector);
+      client.setMetadataExecutor(executor);
+      client.refreshMetadataCache();
+
+      MetadataCache cache = client.getMetadataCache();
+
+      Assert.assertSame(cache.getGeoObjectType("State").get(), cache.getHierachyType("LocatedIn").get().getRootGeoObjectTypes().get(0).getGeoObjectType());
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+
+    /*
+     * Clients without an executor use the default one
+     */
+    HttpRegistryClient client = new HttpRegistryClient(connector);
+
+    Assert.assertNotNull(client.getMetadataExecutor());
+
+    client.refreshMetadataCache();
+
+    Assert.assertTrue(client.getMetadataCache().getHierachyType("LocatedIn").isPresent());
+  }
+
+  @Test
+  public void testSaveMetadataCache() throws IOException
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    GeoObjectType state = MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, "ORG", registry);
+    HierarchyType locatedIn = MetadataFactory.newHierarchyType("LocatedIn", new LocalizedValue("LOCATED_IN_LABEL"), new LocalizedValue("LOCATED_IN_DESCRIPTION"), "ORG", registry);
+    locatedIn.addRootGeoObjects(new HierarchyNode(state));
+
+    MetadataFactory.newTerm("testTerm", new LocalizedValue("testTerm"), new LocalizedValue("testTerm"), registry);
+    MetadataFactory.newOrganization("ORG", new LocalizedValue("Organization"), new LocalizedValue("Contact"), registry);
+
+    File file = File.createTempFile("metadata", ".cgr");
+
+    try
+    {
+      registry.getMetadataCache().save(file);
+
+      HttpRegistryClient client = new HttpRegistryClient(new MockHttpConnector());
+      MetadataCache cache = client.getMetadataCache();
+
+      Assert.assertTrue(cache.load(file));
+
+      GeoObjectType loaded = cache.getGeoObjectType("State").get();
+
+      Assert.assertEquals(state.toJSON().toString(), loaded.toJSON().toString());
+      Assert.assertSame(loaded, cache.getHierachyType("LocatedIn").get().getRootGeoObjectTypes().get(0).getGeoObjectType());
+      Assert.assertTrue(cache.getTerm("testTerm").isPresent());
+      Assert.assertEquals("Organization", cache.getOrganization("ORG").get().getLabel().getValue());
+    }
+    finally
+    {
+      file.delete();
+    }
+
+    Assert.assertFalse(new HttpRegistryClient(new MockHttpConnector()).getMetadataCache().load(file));
+  }
+
+  @Test
+  public void testInitMetadataCache() throws Exception
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    GeoObjectType state = MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+    GeoObjectType county = MetadataFactory.newGeoObjectType("County", GeometryType.POLYGON, new LocalizedValue("County"), new LocalizedValue("County"), true, null, registry);
+
+    JsonArray before = new JsonArray();
+    before.add(state.toJSON());
+
+    JsonArray after = new JsonArray();
+    after.add(state.toJSON());
+    after.add(county.toJSON());
+
+    String hierarchies = new JsonArray().toString();
+
+    File file = File.createTempFile("metadata", ".cgr");
+    file.delete();
+
+    try
+    {
+      // No file: the cache is refreshed before returning
+      HttpRegistryClient client = new HttpRegistryClient(new MockHttpConnector(new MockHttpRequest[] { new MockHttpRequest(new HttpResponse(before.toString(), 200)), new MockHttpRequest(new HttpResponse(hierarchies, 200)) }));
+      client.setMetadataExecutor(null);
+
+      Assert.assertTrue(client.initMetadataCache(file).isDone());
+      Assert.assertTrue(file.isFile());
+
+      // From the file, reconciled in the background
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      CountDownLatch latch = new CountDownLatch(1);
+
+      try
+      {
+        executor.execute(new Latch(latch));
+
+        client = new HttpRegistryClient(new MockHttpConnector(new MockHttpRequest[] { new MockHttpRequest(new HttpResponse(after.toString(), 200)), new MockHttpRequest(new HttpResponse(hierarchies, 200)) }));
+        client.setMetadataExecutor(null);
+
+        Future<Void> refresh = client.initMetadataCache(file, executor);
+
+        Assert.assertTrue(client.getMetadataCache().getGeoObjectType("State").isPresent());
+        Assert.assertFalse(client.getMetadataCache().getGeoObjectType("County").isPresent());
+
+        latch.countDown();
+        refresh.get(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(client.getMetadataCache().getGeoObjectType("County").isPresent());
+      }
+      finally
+      {
+        executor.shutdown();
+      }
+
+      HttpRegistryClient reloaded = new HttpRegistryClient(new MockHttpConnector());
+      reloaded.getMetadataCache().load(file);
+
+      Assert.assertTrue(reloaded.getMetadataCache().getGeoObjectType("County").isPresent());
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+
+  private static class Latch implements Runnable
+  {
+    private CountDownLatch latch;
+
+    public Latch(CountDownLatch latch)
+    {
+      this.latch = latch;
+    }
+
+    @Override
+    public void run()
+    {
+      try
+      {
+        this.latch.await();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   @Test(expected = ServerResponseException.class)
   public void testRefreshMetadataCacheBadStatus() throws AuthenticationException, ServerResponseException, IOException
   {
@@ -126,6 +395,7 @@ public class HttpRegistryClientTest
      * Invoke method
      */
     HttpRegistryClient client = new HttpRegistryClient(connector);
+    client.setMetadataExecutor(null);
     client.refreshMetadataCache();
   }
 
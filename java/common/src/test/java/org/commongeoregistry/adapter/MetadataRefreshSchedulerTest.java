@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.commongeoregistry.adapter.constants.GeometryType;
+import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.http.HttpResponse;
+import org.commongeoregistry.adapter.metadata.GeoObjectType;
+import org.commongeoregistry.adapter.metadata.MetadataFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+
+public class MetadataRefreshSchedulerTest
+{
+  @Test
+  public void testRefreshOnMissingType() throws Exception
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    GeoObjectType county = MetadataFactory.newGeoObjectType("County", GeometryType.POLYGON, new LocalizedValue("County"), new LocalizedValue("County"), true, null, registry);
+
+    JsonArray types = new JsonArray();
+    types.add(county.toJSON());
+
+    MockHttpConnector connector = new MockHttpConnector(new MockHttpRequest[] { new MockHttpRequest(new HttpResponse(types.toString(), 200)), new MockHttpRequest(new HttpResponse(new JsonArray().toString(), 200)) });
+    HttpRegistryClient client = new HttpRegistryClient(connector);
+    // The mock connector answers the requests in the order they are made
+    client.setMetadataExecutor(null);
+
+    MetadataRefreshScheduler scheduler = new MetadataRefreshScheduler(client, 1, TimeUnit.HOURS);
+    scheduler.start();
+
+    try
+    {
+      Assert.assertSame(scheduler, client.getRefreshScheduler());
+      Assert.assertEquals(-1, scheduler.getFreshnessAge());
+
+      try
+      {
+        client.newGeoObjectInstance("County", false);
+
+        Assert.fail("Expected the type to be missing");
+      }
+      catch (GeoObjectTypeNotFoundException e)
+      {
+        Assert.assertEquals("County", e.getTypeCode());
+      }
+
+      long deadline = System.currentTimeMillis() + 10000;
+
+      while (scheduler.getRefreshCount() == 0 && System.currentTimeMillis() < deadline)
+      {
+        Thread.sleep(10);
+      }
+
+      Assert.assertEquals(1, scheduler.getRefreshCount());
+      Assert.assertEquals(0, scheduler.getFailureCount());
+      Assert.assertTrue(scheduler.getFreshnessAge() >= 0);
+      Assert.assertTrue(scheduler.getLastRefreshDuration() >= 0);
+      Assert.assertNotNull(client.newGeoObjectInstance("County", false));
+
+      // Misses within the trigger interval do not refresh again
+      Assert.assertFalse(scheduler.geoObjectTypeNotFound("State"));
+    }
+    finally
+    {
+      scheduler.stop();
+    }
+
+    Assert.assertNull(client.getRefreshScheduler());
+    Assert.assertTrue(scheduler.getExecutor().isShutdown());
+  }
+
+  @Test
+  public void testRestart() throws Exception
+  {
+    HttpRegistryClient client = new HttpRegistryClient(new MockHttpConnector(new MockHttpRequest[] { new MockHttpRequest(new HttpResponse(new JsonArray().toString(), 200)), new MockHttpRequest(new HttpResponse(new JsonArray().toString(), 200)) }));
+    client.setMetadataExecutor(null);
+
+    MetadataRefreshScheduler scheduler = new MetadataRefreshScheduler(client, 1, TimeUnit.HOURS);
+    scheduler.start();
+    scheduler.stop();
+
+    Assert.assertTrue(scheduler.getExecutor().isShutdown());
+
+    scheduler.start();
+
+    try
+    {
+      Assert.assertTrue(scheduler.isStarted());
+      Assert.assertFalse(scheduler.getExecutor().isShutdown());
+      Assert.assertSame(scheduler, client.getRefreshScheduler());
+      Assert.assertTrue(scheduler.requestRefresh().get(10, TimeUnit.SECONDS));
+    }
+    finally
+    {
+      scheduler.stop();
+    }
+  }
+}
@@ -18,11 +18,14 @@
  */
 package org.commongeoregistry.adapter;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.commongeoregistry.adapter.http.AbstractHttpConnector;
+import org.commongeoregistry.adapter.http.BodyWriter;
 import org.commongeoregistry.adapter.http.HttpResponse;
 
 public class MockHttpConnector extends AbstractHttpConnector
@@ -107,6 +110,12 @@ public class MockHttpConnector extends AbstractHttpConnector
     return resp;
   }
 
+  @Override
+  public HttpResponse httpGetStream(String url, Map<String, String> params)
+  {
+    return this.httpGet(url, params);
+  }
+
   @Override
   public HttpResponse httpPost(String url, String body)
   {
@@ -120,4 +129,13 @@ public class MockHttpConnector extends AbstractHttpConnector
     return resp;
   }
 
+  @Override
+  public HttpResponse httpPost(String url, BodyWriter body) throws IOException
+  {
+    StringWriter writer = new StringWriter();
+    body.write(writer);
+
+    return this.httpPost(url, writer.toString());
+  }
+
 }
@@ -18,6 +18,8 @@
  */
 package org.commongeoregistry.adapter;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
@@ -31,8 +33,11 @@ import org.commongeoregistry.adapter.action.tree.AddChildActionDTO;
 import org.commongeoregistry.adapter.action.tree.RemoveChildActionDTO;
 import org.commongeoregistry.adapter.constants.GeometryType;
 import org.commongeoregistry.adapter.dataaccess.ChildTreeNode;
+import org.commongeoregistry.adapter.dataaccess.GeoJsonGeometryAdapter;
 import org.commongeoregistry.adapter.dataaccess.GeoObject;
+import org.commongeoregistry.adapter.dataaccess.GeoObjectJsonAdapters;
 import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTime;
+import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTimeJsonAdapters;
 import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
 import org.commongeoregistry.adapter.dataaccess.ParentTreeNode;
 import org.commongeoregistry.adapter.dataaccess.UnknownTermException;
@@ -52,7 +57,12 @@ import org.commongeoregistry.adapter.metadata.RegistryRole;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
 
 public class SerializationTest
 {
@@ -77,7 +87,11 @@ public class SerializationTest
     GeoObjectOverTime geoObject2 = GeoObjectOverTime.fromJSON(registry, sJson);
     String sJson2 = geoObject2.toJSON().toString();
 
+    StringWriter writer = new StringWriter();
+    geoObject.toJSON(new JsonWriter(writer));
+
     Assert.assertEquals(sJson, sJson2);
+    Assert.assertEquals(sJson, writer.toString());
     Assert.assertEquals("Colorado", geoObject2.getCode());
     Assert.assertEquals("CO", geoObject2.getUid());
     Assert.assertEquals("Colorado Display Label", geoObject2.getDisplayLabel(null).getValue());
@@ -126,7 +140,11 @@ public class SerializationTest
     GeoObject geoObject2 = GeoObject.fromJSON(registry, sJson);
     String sJson2 = geoObject2.toJSON().toString();
 
+    StringWriter writer = new StringWriter();
+    geoObject.toJSON(new JsonWriter(writer));
+
     Assert.assertEquals(sJson, sJson2);
+    Assert.assertEquals(sJson, writer.toString());
     Assert.assertEquals("Colorado", geoObject2.getCode());
     Assert.assertEquals("CO", geoObject2.getUid());
     Assert.assertEquals("Colorado Display Label", geoObject2.getLocalizedDisplayLabel());
@@ -134,6 +152,117 @@ public class SerializationTest
     Assert.assertEquals(geoObject.getExists(), geoObject2.getExists());
   }
 
+  @Test
+  public void testTreeModelCompatibility()
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+
+    String geom = "POLYGON ((10000 10000, 12300 40000, 16800 50000, 12354 60000, 13354 60000, 17800 50000, 13300 40000, 11000 10000, 10000 10000))";
+
+    GeoObject geoObject = registry.newGeoObjectInstance("State");
+    geoObject.setWKTGeometry(geom);
+    geoObject.setCode("Colorado");
+    geoObject.setUid("CO");
+    geoObject.setDisplayLabel(LocalizedValue.DEFAULT_LOCALE, "Colorado Display Label");
+
+    GeoObjectOverTime geoObjectOverTime = registry.newGeoObjectOverTimeInstance("State");
+    geoObjectOverTime.setWKTGeometry(geom, null);
+    geoObjectOverTime.setCode("Colorado");
+    geoObjectOverTime.setUid("CO");
+    geoObjectOverTime.setDisplayLabel(new LocalizedValue("Colorado Display Label"), null, null);
+
+    geoObject.setWritable(true);
+
+    // JSON written by other producers does not necessarily list the type first
+    JsonObject json = geoObject.toJSON();
+    moveToEnd(json.getAsJsonObject(GeoObjectJsonAdapters.JSON_PROPERTIES), GeoObjectJsonAdapters.JSON_TYPE);
+
+    JsonObject jsonOverTime = geoObjectOverTime.toJSON();
+    moveToEnd(jsonOverTime.getAsJsonObject(GeoObjectOverTimeJsonAdapters.JSON_ATTRIBUTES), GeoObjectOverTimeJsonAdapters.JSON_TYPE);
+
+    GeoObject geoObject2 = GeoObject.fromJSON(registry, json.toString());
+    GeoObjectOverTime geoObjectOverTime2 = GeoObjectOverTime.fromJSON(registry, jsonOverTime.toString());
+
+    // The writable flag is never read back from the JSON
+    Assert.assertNull(geoObject2.getWritable());
+
+    geoObject2.setWritable(true);
+
+    Assert.assertEquals(geoObject.toJSON().toString(), geoObject2.toJSON().toString());
+    Assert.assertEquals(geoObjectOverTime.toJSON().toString(), geoObjectOverTime2.toJSON().toString());
+  }
+
+  private static void moveToEnd(JsonObject object, String name)
+  {
+    object.add(name, object.remove(name));
+  }
+
+  @Test
+  public void testLazyGeoObject()
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+
+    // Integer coordinates are written as doubles when the geometry is encoded,
+    // so they are only preserved if the raw JSON is passed through
+    String json = "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},\"properties\":{\"type\":\"State\",\"code\":\"Colorado\",\"displayLabel\":{\"localizedValue\":\"Colorado\",\"localeValues\":[]},\"uid\":\"CO\",\"exists\":true,\"invalid\":false}}";
+
+    GeoObject eager = GeoObject.fromJSON(registry, json);
+    GeoObject lazy = GeoObject.fromJSON(registry, json, true);
+
+    Assert.assertEquals(json, this.write(lazy));
+    Assert.assertEquals(eager.toJSON(), lazy.toJSON());
+
+    Assert.assertEquals("Colorado", lazy.getCode());
+    Assert.assertEquals("CO", lazy.getUid());
+    Assert.assertEquals("Colorado", lazy.getLocalizedDisplayLabel());
+    Assert.assertEquals(json, this.write(lazy));
+
+    Assert.assertEquals("POINT (1 2)", lazy.getGeometry().toText());
+
+    lazy.setCode("Utah");
+    eager.setCode("Utah");
+
+    Assert.assertEquals(eager.toJSON(), lazy.toJSON());
+    Assert.assertEquals("Utah", GeoObject.fromJSON(registry, this.write(lazy)).getCode());
+  }
+
+  private String write(GeoObject geoObject)
+  {
+    StringWriter writer = new StringWriter();
+
+    geoObject.toJSON(new JsonWriter(writer));
+
+    return writer.toString();
+  }
+
+  @Test
+  public void testGeoJsonGeometry() throws Exception
+  {
+    String[] wkts = new String[] { "POINT (1 2)", "LINESTRING (0 0, 1 1, 2 0)", "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 2))", "MULTIPOINT ((1 1), (2 2))", "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))", "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))", "GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (0 0, 1 1))", "POINT (1 2 3)" };
+
+    WKTReader reader = new WKTReader();
+
+    for (String wkt : wkts)
+    {
+      Geometry geometry = reader.read(wkt);
+
+      String json = GeoJsonGeometryAdapter.INSTANCE.toJson(geometry);
+      Geometry actual = GeoJsonGeometryAdapter.INSTANCE.fromJson(json);
+
+      Assert.assertTrue(wkt, geometry.equalsExact(actual));
+      Assert.assertEquals(wkt, json, GeoJsonGeometryAdapter.INSTANCE.toJson(actual));
+    }
+
+    Geometry point = GeoJsonGeometryAdapter.INSTANCE.fromJson("{\"coordinates\":[1.5,2.5,3.5],\"bbox\":[1.5,2.5,1.5,2.5],\"type\":\"Point\"}");
+
+    Assert.assertEquals(3.5, point.getCoordinate().z, 0);
+    Assert.assertEquals("{\"type\":\"Polygon\",\"coordinates\":[[[0.0,0.0],[1.0,0.0],[1.0,1.0],[0.0,0.0]]]}", GeoJsonGeometryAdapter.INSTANCE.toJson(reader.read("POLYGON ((0 0, 1 0, 1 1, 0 0))")));
+  }
+
   @Test
   public void testLocalizedValue()
   {
@@ -609,7 +738,89 @@ public class SerializationTest
   }
 
   @Test
-  public void testActions()
+  public void testDeepChildTreeNode()
+  {
+    RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
+
+    TestFixture.defineExampleHierarchies(registry);
+    HierarchyType geoPolitical = registry.getMetadataCache().getHierachyType(TestFixture.GEOPOLITICAL).get();
+
+    ChildTreeNode root = newChildTree(registry, geoPolitical, 7, 2, new int[] { 0 });
+    String json = root.toJSON().toString();
+
+    ChildTreeNode decoded = ChildTreeNode.fromJSON(json, registry);
+    ChildTreeNode expected = fromJSONPerSubtree(json, registry);
+
+    Assert.assertEquals(json, decoded.toJSON().toString());
+    Assert.assertEquals(expected.toJSON().toString(), decoded.toJSON().toString());
+
+    ChildTreeNode leaf = decoded;
+
+    for (int i = 1; i < 7; i++)
+    {
+      Assert.assertEquals(2, leaf.getChildren().size());
+      Assert.assertEquals(geoPolitical, leaf.getHierachyType());
+
+      leaf = leaf.getChildren().get(1);
+    }
+
+    Assert.assertEquals(0, leaf.getChildren().size());
+    Assert.assertEquals("N126", leaf.getGeoObject().getCode());
+  }
+
+  private static ChildTreeNode newChildTree(RegistryAdapter registry, HierarchyType hierarchy, int depth, int branching, int[] count)
+  {
+    String code = "N" + ( count[0]++ );
+
+    GeoObject geoObject = registry.newGeoObjectInstance(TestFixture.PROVINCE, false);
+    geoObject.setCode(code);
+    geoObject.setUid(code);
+
+    ChildTreeNode node = new ChildTreeNode(geoObject, hierarchy);
+
+    if (depth > 1)
+    {
+      for (int i = 0; i < branching; i++)
+      {
+        node.addChild(newChildTree(registry, hierarchy, depth - 1, branching, count));
+      }
+    }
+
+    return node;
+  }
+
+  /**
+   * Decodes the tree the way {@link ChildTreeNode#fromJSON(String, RegistryAdapter)}
+   * did before the single pass decoder, re-parsing every subtree on its own.
+   */
+  private static ChildTreeNode fromJSONPerSubtree(String sJson, RegistryAdapter registry)
+  {
+    JsonObject oJson = new JsonParser().parse(sJson).getAsJsonObject();
+
+    GeoObject geoObj = GeoObject.fromJSON(registry, oJson.get(ChildTreeNode.JSON_GEO_OBJECT).getAsJsonObject().toString());
+
+    HierarchyType hierarchyType = null;
+    if (oJson.has(ChildTreeNode.JSON_HIERARCHY_TYPE))
+    {
+      hierarchyType = registry.getMetadataCache().getHierachyType(oJson.get(ChildTreeNode.JSON_HIERARCHY_TYPE).getAsString()).get();
+    }
+
+    ChildTreeNode tn = new ChildTreeNode(geoObj, hierarchyType);
+
+    if (oJson.has(ChildTreeNode.JSON_CHILDREN))
+    {
+      JsonArray jaChildren = oJson.get(ChildTreeNode.JSON_CHILDREN).getAsJsonArray();
+      for (int i = 0; i < jaChildren.size(); ++i)
+      {
+        tn.addChild(fromJSONPerSubtree(jaChildren.get(i).getAsJsonObject().toString(), registry));
+      }
+    }
+
+    return tn;
+  }
+
+  @Test
+  public void testActions() throws IOException
   {
     RegistryAdapterServer registry = new RegistryAdapterServer(new MockIdService());
     TestFixture.defineExampleHierarchies(registry);
@@ -694,6 +905,19 @@ public class SerializationTest
     String sActions2 = AbstractActionDTO.serializeActions(AbstractActionDTO.parseActions(sActions)).toString();
     Assert.assertEquals(sActions, sActions2);
 
+    StringWriter writer = new StringWriter();
+    AbstractActionDTO.serializeActions(actions, new JsonWriter(writer));
+
+    Assert.assertEquals(sActions, writer.toString());
+
+    /*
+     * The array is sent to the server as the content of a JSON string
+     */
+    StringWriter string = new StringWriter();
+    AbstractActionDTO.serializeActionsAsString(actions, string);
+
+    Assert.assertEquals(sActions, new JsonParser().parse(string.toString()).getAsString());
+
     System.out.println(sActions);
   }
 }
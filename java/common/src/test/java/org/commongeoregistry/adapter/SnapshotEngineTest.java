@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.commongeoregistry.adapter.constants.GeometryType;
+import org.commongeoregistry.adapter.dataaccess.GeoObject;
+import org.commongeoregistry.adapter.dataaccess.GeoObjectOverTime;
+import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.dataaccess.SnapshotEngine;
+import org.commongeoregistry.adapter.metadata.MetadataFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotEngineTest
+{
+  private RegistryAdapterServer registry;
+
+  @Before
+  public void setUp()
+  {
+    this.registry = new RegistryAdapterServer(new MockIdService());
+
+    MetadataFactory.newGeoObjectType("State", GeometryType.POLYGON, new LocalizedValue("State"), new LocalizedValue("State"), true, null, registry);
+  }
+
+  private GeoObjectOverTime newGeoObjectOverTime(int i)
+  {
+    GeoObjectOverTime geoObject = this.registry.newGeoObjectOverTimeInstance("State");
+    geoObject.setCode("STATE_" + i);
+    geoObject.setUid("UID_" + i);
+
+    // Labels change every year from 2000 on, and the state only exists from
+    // 2005 to 2010
+    for (int year = 2000; year < 2020; year++)
+    {
+      geoObject.setDisplayLabel(new LocalizedValue(i + " " + year), date(year, 1, 1), date(year, 12, 31));
+    }
+
+    geoObject.setExists(true, date(2005, 1, 1), date(2010, 12, 31));
+    geoObject.setWKTGeometry("POLYGON ((0 0, 10 0, 10 " + ( i + 1 ) + ", 0 0))", date(2000, 1, 1));
+
+    return geoObject;
+  }
+
+  private static Date date(int year, int month, int day)
+  {
+    return EpochDay.toDate(EpochDay.of(year, month, day));
+  }
+
+  @Test
+  public void testSnapshot()
+  {
+    GeoObjectOverTime source = this.newGeoObjectOverTime(1);
+
+    GeoObject geoObject = source.toGeoObject(date(2007, 6, 1));
+
+    Assert.assertEquals("STATE_1", geoObject.getCode());
+    Assert.assertEquals("UID_1", geoObject.getUid());
+    Assert.assertEquals("State", geoObject.getType().getCode());
+    Assert.assertEquals("1 2007", geoObject.getLocalizedDisplayLabel());
+    Assert.assertEquals(Boolean.TRUE, geoObject.getExists());
+    Assert.assertEquals(source.getGeometry(date(2007, 6, 1)), geoObject.getGeometry());
+
+    Assert.assertNull(source.toGeoObject(date(2011, 1, 1)).getExists());
+    Assert.assertNull(source.toGeoObject(date(1999, 1, 1)).getGeometry());
+  }
+
+  @Test
+  public void testParallelSnapshots()
+  {
+    List<GeoObjectOverTime> sources = new ArrayList<GeoObjectOverTime>();
+
+    for (int i = 0; i < 200; i++)
+    {
+      sources.add(this.newGeoObjectOverTime(i));
+    }
+
+    List<Date> dates = Arrays.asList(date(2015, 1, 1), date(1990, 1, 1), date(2006, 3, 4), new Date(date(2015, 1, 1).getTime() + 1000));
+
+    SnapshotEngine engine = new SnapshotEngine(Executors.newFixedThreadPool(4), 4);
+    engine.setParallelThreshold(0);
+
+    try
+    {
+      Map<Date, List<GeoObject>> snapshots = engine.snapshot(sources, dates);
+
+      Assert.assertEquals(dates, new ArrayList<Date>(snapshots.keySet()));
+
+      for (Date date : dates)
+      {
+        List<GeoObject> snapshot = snapshots.get(date);
+
+        Assert.assertEquals(sources.size(), snapshot.size());
+
+        for (int i = 0; i < sources.size(); i++)
+        {
+          GeoObjectOverTime source = sources.get(i);
+          GeoObject geoObject = snapshot.get(i);
+
+          Assert.assertEquals(source.getCode(), geoObject.getCode());
+          Assert.assertEquals(source.getDisplayLabel(date), geoObject.getDisplayLabel());
+          Assert.assertEquals(source.getExists(date), geoObject.getExists());
+          Assert.assertEquals(source.getGeometry(date), geoObject.getGeometry());
+        }
+      }
+    }
+    finally
+    {
+      engine.shutdown();
+    }
+  }
+}
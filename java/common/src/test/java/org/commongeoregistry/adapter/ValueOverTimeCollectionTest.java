@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2022 TerraFrame, Inc. All rights reserved.
+ *
+ * This file is part of Common Geo Registry Adapter(tm).
+ *
+ * Common Geo Registry Adapter(tm) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Common Geo Registry Adapter(tm) is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Common Geo Registry Adapter(tm).  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.commongeoregistry.adapter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.commongeoregistry.adapter.dataaccess.LocalizedValue;
+import org.commongeoregistry.adapter.dataaccess.ValueOverTimeCollectionDTO;
+import org.commongeoregistry.adapter.dataaccess.ValueOverTimeDTO;
+import org.commongeoregistry.adapter.metadata.AttributeCharacterType;
+import org.commongeoregistry.adapter.metadata.AttributeType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValueOverTimeCollectionTest
+{
+  private ValueOverTimeCollectionDTO votc;
+
+  @Before
+  public void setUp()
+  {
+    AttributeType type = AttributeType.factory("testChar", new LocalizedValue("testChar"), new LocalizedValue("testChar"), AttributeCharacterType.TYPE, false, false, false);
+
+    this.votc = new ValueOverTimeCollectionDTO(type);
+  }
+
+  private ValueOverTimeDTO add(long startDay, long endDay, String value)
+  {
+    ValueOverTimeDTO vot = new ValueOverTimeDTO(null, EpochDay.toDate(startDay), EpochDay.toDate(endDay), this.votc);
+    vot.setValue(value);
+
+    this.votc.add(vot);
+
+    return vot;
+  }
+
+  @Test
+  public void testLookup()
+  {
+    this.add(20, 29, "b");
+    this.add(0, 9, "a");
+    this.add(30, 39, "c");
+
+    Assert.assertEquals("a", this.votc.get(0).getValue());
+    Assert.assertEquals("a", this.votc.getValueOnDate(EpochDay.toDate(5)));
+    Assert.assertEquals("b", this.votc.getValueOnDate(new Date(EpochDay.toMillis(29) + 1000)));
+    Assert.assertNull(this.votc.getValueOnDate(EpochDay.toDate(15)));
+    Assert.assertNull(this.votc.getValueOnDate(EpochDay.toDate(40)));
+    Assert.assertEquals("c", this.votc.getAtStartDate(EpochDay.toDate(30)).getValue());
+    Assert.assertNull(this.votc.getAtStartDate(EpochDay.toDate(31)));
+    Assert.assertFalse(this.votc.hasOverlaps());
+    Assert.assertTrue(this.votc.overlaps(EpochDay.toDate(9), EpochDay.toDate(12)));
+    Assert.assertFalse(this.votc.overlaps(EpochDay.toDate(10), EpochDay.toDate(19)));
+
+    this.votc.setValue("d", EpochDay.toDate(25));
+
+    Assert.assertEquals("d", this.votc.getValueOnDate(EpochDay.toDate(20)));
+  }
+
+  @Test
+  public void testChangedDates()
+  {
+    ValueOverTimeDTO a = this.add(0, 9, "a");
+    this.add(10, 19, "b");
+
+    a.setStartDate(EpochDay.toDate(20));
+    a.setEndDate(EpochDay.toDate(29));
+
+    Assert.assertEquals("a", this.votc.getValueOnDate(EpochDay.toDate(25)));
+    Assert.assertNull(this.votc.getValueOnDate(EpochDay.toDate(5)));
+    Assert.assertEquals("b", this.votc.get(0).getValue());
+
+    Iterator<ValueOverTimeDTO> iterator = this.votc.iterator();
+    iterator.next();
+    iterator.remove();
+
+    Assert.assertEquals(1, this.votc.size());
+    Assert.assertNull(this.votc.getValueOnDate(EpochDay.toDate(15)));
+  }
+
+  @Test
+  public void testOverlaps()
+  {
+    Random random = new Random(7);
+    List<ValueOverTimeDTO> inserted = new ArrayList<ValueOverTimeDTO>();
+
+    for (int i = 0; i < 200; i++)
+    {
+      long start = random.nextInt(1000);
+
+      inserted.add(this.add(start, start + random.nextInt(50), Integer.toString(i)));
+    }
+
+    Assert.assertTrue(this.votc.hasOverlaps());
+
+    for (long day = -5; day < 1060; day++)
+    {
+      // The expected value is the one with the earliest start, and the first
+      // one added for equal starts
+      ValueOverTimeDTO expected = null;
+
+      for (ValueOverTimeDTO vot : inserted)
+      {
+        if (vot.between(day) && ( expected == null || vot.getStartDay() < expected.getStartDay() ))
+        {
+          expected = vot;
+        }
+      }
+
+      Assert.assertSame(expected, this.votc.getOnDay(day));
+    }
+  }
+}